@@ -0,0 +1,80 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import util.IdManager;
+import util.MoveList;
+import core.Board;
+import core.Constellation;
+
+/**
+ * Measures the steps the map builder performs for every new constellation:
+ * copying the board, creating the following constellation and calculating
+ * its moves.<br/>
+ * <br/>
+ * <b>Enhanced description:</b><br/>
+ * Every benchmark runs on the starting position and on "Kiwipete", a
+ * middlegame with castling, en passant and promotions.<br/>
+ * The moves are calculated by {@link Board#generateMoves(MoveList)}, which
+ * is what the private calculateAllPossibleMoves of {@link Constellation}
+ * calls. The list is cleared and reused, so only the generation is measured.
+ * <br/>
+ * 
+ * @author Andy
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConstellationBenchmark {
+    
+    @Param({ "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+	    "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1" })
+    public String fen;
+    
+    private Board board;
+    private Constellation constellation;
+    private final MoveList moves = new MoveList();
+    
+    @Setup
+    public void setUp() {
+	this.board = new Board(this.fen);
+	IdManager idManager = new IdManager();
+	this.constellation = new Constellation(idManager, this.board.getId());
+    }
+    
+    @Benchmark
+    public Board copyBoard() {
+	return new Board(this.board);
+    }
+    
+    /**
+     * Creates the constellation which follows out of the next move. The move
+     * isn't removed, so every invocation creates the same constellation.
+     */
+    @Benchmark
+    public Constellation createFollowingConstellation() throws Exception {
+	return new Constellation(this.constellation);
+    }
+    
+    @Benchmark
+    public MoveList calculateAllPossibleMoves() {
+	this.moves.clear();
+	this.board.generateMoves(this.moves);
+	return this.moves;
+    }
+}
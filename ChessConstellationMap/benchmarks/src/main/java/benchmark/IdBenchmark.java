@@ -0,0 +1,56 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import util.IdManager;
+import util.PositionKey;
+import core.Board;
+
+/**
+ * Measures the creation of the Id of a constellation.<br/>
+ * <br/>
+ * <b>Enhanced description:</b><br/>
+ * {@link IdManager#generateId(pieces.ChessPiece[][], int)} scans all
+ * 64 tiles of the boardArray, while {@link Board#getId()} only wraps the
+ * incrementally maintained packed tiles and hash.<br/>
+ * 
+ * @author Andy
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IdBenchmark {
+    
+    private IdManager idManager;
+    private Board board;
+    
+    @Setup
+    public void setUp() {
+	this.idManager = new IdManager();
+	this.board = new Board("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+    }
+    
+    @Benchmark
+    public PositionKey generateId() {
+	return this.idManager.generateId(this.board.getBoardArray(), this.board.getState());
+    }
+    
+    @Benchmark
+    public PositionKey incrementalId() {
+	return this.board.getId();
+    }
+}
@@ -0,0 +1,143 @@
+package benchmark;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import util.IdManager;
+import util.MoveList;
+import util.PositionKey;
+import core.Board;
+import core.Constellation;
+
+/**
+ * Measures inserting into and looking up the index of the {@link IdManager}
+ * at different table sizes, on the heap and off the heap.<br/>
+ * <br/>
+ * <b>Enhanced description:</b><br/>
+ * The keys are the real constellations of the first plies, collected once
+ * by a breadth-first walk from the starting position.<br/>
+ * Every constellation can only be added once (it keeps its index), therefore
+ * {@link #insert(InsertState)} fills an empty idManager with all keys per
+ * invocation and the constellations are created beforehand. Its score is the
+ * time of one fill, divided by the size it is the time per insert.<br/>
+ * 
+ * @author Andy
+ */
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdManagerBenchmark {
+    
+    @State(Scope.Thread)
+    public static class LookupState {
+	
+	@Param({ "1000", "10000", "100000" })
+	public int size;
+	
+	@Param({ "false", "true" })
+	public boolean offHeapIndex;
+	
+	private PositionKey[] keys;
+	private IdManager idManager;
+	private int next;
+	
+	@Setup
+	public void setUp() {
+	    this.keys = IdManagerBenchmark.collectKeys(this.size);
+	    this.idManager = new IdManager(this.size, this.offHeapIndex);
+	    for (PositionKey key : this.keys) {
+		this.idManager.addConstellation(key, new Constellation(this.idManager, key));
+	    }
+	}
+    }
+    
+    @State(Scope.Thread)
+    public static class InsertState {
+	
+	@Param({ "1000", "10000", "100000" })
+	public int size;
+	
+	@Param({ "false", "true" })
+	public boolean offHeapIndex;
+	
+	private PositionKey[] keys;
+	private Constellation[] constellations;
+	private IdManager idManager;
+	
+	@Setup
+	public void collectKeys() {
+	    this.keys = IdManagerBenchmark.collectKeys(this.size);
+	    this.constellations = new Constellation[this.keys.length];
+	}
+	
+	@Setup(Level.Invocation)
+	public void setUp() {
+	    // The idManager starts small, so that it grows like during a build
+	    this.idManager = new IdManager(16, this.offHeapIndex);
+	    for (int index = 0; index < this.keys.length; index++) {
+		this.constellations[index] = new Constellation(this.idManager, this.keys[index]);
+	    }
+	}
+    }
+    
+    /**
+     * Collects the Ids of the first constellations reachable from the
+     * starting position, ply by ply.
+     */
+    private static PositionKey[] collectKeys(int count) {
+	Set<PositionKey> keys = new LinkedHashSet<PositionKey>();
+	ArrayDeque<Board> queue = new ArrayDeque<Board>();
+	queue.add(new Board());
+	MoveList moves = new MoveList();
+	
+	while (keys.size() < count && !queue.isEmpty()) {
+	    Board board = queue.poll();
+	    moves.clear();
+	    board.generateMoves(moves);
+	    for (int index = 0; index < moves.size() && keys.size() < count; index++) {
+		Board followingBoard = new Board(board);
+		followingBoard.makeMove(moves.get(index));
+		if (keys.add(followingBoard.getId())) {
+		    queue.add(followingBoard);
+		}
+	    }
+	}
+	return keys.toArray(new PositionKey[keys.size()]);
+    }
+    
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public int lookup(LookupState state) {
+	PositionKey key = state.keys[state.next];
+	state.next = state.next + 1 == state.keys.length ? 0 : state.next + 1;
+	return state.idManager.getIndex(key);
+    }
+    
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Measurement(iterations = 20)
+    @Warmup(iterations = 10)
+    public IdManager insert(InsertState state) {
+	for (int index = 0; index < state.keys.length; index++) {
+	    state.idManager.addConstellation(state.keys[index], state.constellations[index]);
+	}
+	return state.idManager;
+    }
+}
@@ -0,0 +1,341 @@
+package core;
+
+import pieces.AttackTables;
+import pieces.ChessPiece;
+import pieces.ChessPieceContainer;
+import util.Color;
+import util.IdManager;
+import util.Move;
+import util.MoveList;
+
+/**
+ * Bitboard representation of a {@link Board}.<br/>
+ * <br/>
+ * <b>Enhanced description:</b><br/>
+ * The board is represented by twelve longs, one per kind of piece and color.
+ * Bit {@code row * 8 + col} of a bitboard is set if the tile [row][col] of the
+ * boardArray contains such a piece. Two additional bitboards contain all
+ * pieces of each color.<br/>
+ * This allows to generate all moves of a player with a few bitwise operations
+ * per piece (see {@link AttackTables}) instead of probing all 64 tiles of the
+ * boardArray.<br/>
+ * The bitboards are kept in sync with the boardArray by {@link Board}.<br/>
+ * 
+ * @author Andy
+ */
+public class BitBoard {
+    
+    /**
+     * Creates the bitboards of the given boardArray.
+     * 
+     * @param boardArray
+     *        - the boardArray of a board
+     */
+    public BitBoard(ChessPiece[][] boardArray) {
+	for (int row = 0; row < boardArray.length; row++) {
+	    for (int col = 0; col < boardArray[row].length; col++) {
+		if (boardArray[row][col] != null) {
+		    this.addPiece(boardArray[row][col], (row << 3) + col);
+		}
+	    }
+	}
+    }
+    
+    /**
+     * Copy constructor, see {@link Board#Board(Board)}.
+     * 
+     * @param formerBitBoard
+     *        - the bitboards of the former board
+     */
+    public BitBoard(BitBoard formerBitBoard) {
+	System.arraycopy(formerBitBoard.pieceBitboards, 0, this.pieceBitboards, 0, this.pieceBitboards.length);
+	this.whitePieces = formerBitBoard.whitePieces;
+	this.blackPieces = formerBitBoard.blackPieces;
+    }
+    
+    /**
+     * One bitboard per kind of piece, indexed by {@link #getIndex(int)}.
+     */
+    private final long[] pieceBitboards = new long[12];
+    
+    private long whitePieces;
+    private long blackPieces;
+    
+    /**
+     * Maps the code of a piece (see {@link ChessPiece#getCode()}) onto
+     * 0-5 (White) and 6-11 (Black).
+     */
+    private static int getIndex(int code) {
+	return (code & 7) - 1 + ((code & IdManager.BLACK_PIECE) != 0 ? 6 : 0);
+    }
+    
+    /**
+     * Places a piece on an empty tile.
+     */
+    public final void addPiece(ChessPiece piece, int square) {
+	long tile = 1L << square;
+	this.pieceBitboards[BitBoard.getIndex(piece.getCode())] |= tile;
+	if (piece.getColor() == Color.WHITE) {
+	    this.whitePieces |= tile;
+	} else {
+	    this.blackPieces |= tile;
+	}
+    }
+    
+    /**
+     * Removes a piece from its tile.
+     */
+    public final void removePiece(ChessPiece piece, int square) {
+	long tile = 1L << square;
+	this.pieceBitboards[BitBoard.getIndex(piece.getCode())] &= ~tile;
+	if (piece.getColor() == Color.WHITE) {
+	    this.whitePieces &= ~tile;
+	} else {
+	    this.blackPieces &= ~tile;
+	}
+    }
+    
+    /**
+     * @return bitboard of all tiles containing the given piece
+     */
+    public long getPieces(ChessPiece piece) {
+	return this.pieceBitboards[BitBoard.getIndex(piece.getCode())];
+    }
+    
+    /**
+     * @return bitboard of all tiles containing a piece of the given color
+     */
+    public long getPieces(Color color) {
+	return color == Color.WHITE ? this.whitePieces : this.blackPieces;
+    }
+    
+    /**
+     * @return bitboard of all occupied tiles
+     */
+    public long getOccupancy() {
+	return this.whitePieces | this.blackPieces;
+    }
+    
+    /**
+     * @return bitboard of all tiles containing a piece of the given kind and
+     *         color
+     */
+    private long getPieces(int type, Color color) {
+	return this.pieceBitboards[type - 1 + (color == Color.WHITE ? 0 : 6)];
+    }
+    
+    /**
+     * @return the tile of the king of the given color, 64 if there is none
+     */
+    public int getKingSquare(Color color) {
+	return Long.numberOfTrailingZeros(this.getPieces(IdManager.KNG, color));
+    }
+    
+    /**
+     * @param square
+     *        - the attacked tile
+     * @param attacker
+     *        - the color of the attacking pieces
+     * @param occupancy
+     *        - the occupied tiles which block sliding pieces
+     * @return bitboard of all pieces of the attacker which attack the tile
+     */
+    public long getAttackers(int square, Color attacker, long occupancy) {
+	Color defender = attacker == Color.WHITE ? Color.BLACK : Color.WHITE;
+	long queens = this.getPieces(IdManager.QUN, attacker);
+	return (AttackTables.getPawnAttacks(defender, square) & this.getPieces(IdManager.PWN, attacker))
+	       | (AttackTables.getKnightAttacks(square) & this.getPieces(IdManager.KNT, attacker))
+	       | (AttackTables.getKingAttacks(square) & this.getPieces(IdManager.KNG, attacker))
+	       | (AttackTables.getRookAttacks(square, occupancy) & (this.getPieces(IdManager.ROK, attacker) | queens))
+	       | (AttackTables.getBishopAttacks(square, occupancy) & (this.getPieces(IdManager.BSH, attacker) | queens));
+    }
+    
+    /**
+     * @return true if the king of the given color is attacked, false if it is
+     *         not or if there is no such king
+     */
+    public boolean isInCheck(Color color) {
+	int kingSquare = this.getKingSquare(color);
+	Color enemy = color == Color.WHITE ? Color.BLACK : Color.WHITE;
+	return kingSquare < 64 && this.getAttackers(kingSquare, enemy, this.getOccupancy()) != 0;
+    }
+    
+    /**
+     * Generates the moves of a constellation without castling rights and
+     * en passant square, see {@link #generateMoves(Color, int, int, MoveList)}.
+     */
+    public void generateMoves(Color movingPlayer, MoveList moves) {
+	this.generateMoves(movingPlayer, 0, -1, moves);
+    }
+    
+    /**
+     * Adds a packed move (see {@link util.Move}) for every legal move of the
+     * moving player.<br/>
+     * <br/>
+     * <b>Enhanced description:</b><br/>
+     * Only the twelve bitboards are read, the targets of a piece are computed
+     * by {@link ChessPiece#getTargets(int, long, long)} and then restricted,
+     * so that no move leaves the own king attacked:<br/>
+     * <ul>
+     * <li>The king may only move onto tiles which aren't attacked once it has
+     * left its tile (so it can't step back along the ray of a slider).</li>
+     * <li>If the king is attacked by two pieces only king moves remain.</li>
+     * <li>If it is attacked by one piece, all other pieces must capture the
+     * attacker or block its ray (the check mask).</li>
+     * <li>A pinned piece may only move along the line through the king and
+     * itself.</li>
+     * <li>En passant removes two pieces from a row, therefore its legality is
+     * tested on the resulting occupancy.</li>
+     * </ul>
+     * If the moving player has no king (e.g. in test constellations) the
+     * pseudo-legal moves are generated.
+     * 
+     * @param movingPlayer
+     *        - the player whose moves are generated
+     * @param castlingRights
+     *        - the castling rights of the constellation, see
+     *        {@link Board#WHITE_KINGSIDE}
+     * @param enPassantSquare
+     *        - the tile a pawn may capture en passant, -1 if there is none
+     * @param moves
+     *        - the list the moves are added to
+     */
+    public void generateMoves(Color movingPlayer, int castlingRights, int enPassantSquare, MoveList moves) {
+	Color enemy = movingPlayer == Color.WHITE ? Color.BLACK : Color.WHITE;
+	long ownPieces = this.getPieces(movingPlayer);
+	long enemyPieces = this.getPieces(enemy);
+	long occupancy = ownPieces | enemyPieces;
+	int firstIndex = movingPlayer == Color.WHITE ? 0 : 6;
+	int kingIndex = firstIndex + IdManager.KNG - 1;
+	
+	int kingSquare = this.getKingSquare(movingPlayer);
+	long checkMask = ~0L;
+	long pinned = 0L;
+	
+	if (kingSquare < 64) {
+	    long checkers = this.getAttackers(kingSquare, enemy, occupancy);
+	    
+	    long kingTargets = AttackTables.getKingAttacks(kingSquare) & ~ownPieces;
+	    long occupancyWithoutKing = occupancy & ~(1L << kingSquare);
+	    long safeTargets = 0L;
+	    while (kingTargets != 0) {
+		int toSquare = Long.numberOfTrailingZeros(kingTargets);
+		kingTargets &= kingTargets - 1;
+		if (this.getAttackers(toSquare, enemy, occupancyWithoutKing) == 0) {
+		    safeTargets |= 1L << toSquare;
+		}
+	    }
+	    ChessPieceContainer.getPiece(IdManager.KNG | (firstIndex == 0 ? 0 : IdManager.BLACK_PIECE))
+			       .addMoves(kingSquare, safeTargets, moves);
+	    
+	    if (Long.bitCount(checkers) > 1) {
+		return;
+	    }
+	    if (checkers != 0) {
+		checkMask = AttackTables.getBetween(kingSquare, Long.numberOfTrailingZeros(checkers)) | checkers;
+	    } else {
+		this.addCastlingMoves(movingPlayer, enemy, castlingRights, kingSquare, occupancy, moves);
+	    }
+	    pinned = this.getPinnedPieces(kingSquare, enemy, ownPieces, enemyPieces);
+	}
+	
+	for (int index = firstIndex; index < firstIndex + 6; index++) {
+	    if (index == kingIndex && kingSquare < 64) {
+		continue;
+	    }
+	    ChessPiece piece = ChessPieceContainer.getPiece((index % 6 + 1) | (index < 6 ? 0 : IdManager.BLACK_PIECE));
+	    long pieces = this.pieceBitboards[index];
+	    
+	    while (pieces != 0) {
+		int fromSquare = Long.numberOfTrailingZeros(pieces);
+		pieces &= pieces - 1;
+		
+		long targets = piece.getTargets(fromSquare, ownPieces, enemyPieces) & checkMask;
+		if ((pinned & (1L << fromSquare)) != 0) {
+		    targets &= AttackTables.getLine(kingSquare, fromSquare);
+		}
+		piece.addMoves(fromSquare, targets, moves);
+	    }
+	}
+	
+	if (enPassantSquare >= 0) {
+	    this.addEnPassantMoves(movingPlayer, enemy, enPassantSquare, kingSquare, occupancy, moves);
+	}
+    }
+    
+    /**
+     * @return bitboard of all own pieces which are the only piece between the
+     *         own king and an enemy rook, bishop or queen on a common line
+     */
+    private long getPinnedPieces(int kingSquare, Color enemy, long ownPieces, long enemyPieces) {
+	long queens = this.getPieces(IdManager.QUN, enemy);
+	// Rays which stop at the first enemy piece and pass through own pieces
+	long snipers = (AttackTables.getRookAttacks(kingSquare, enemyPieces) & (this.getPieces(IdManager.ROK, enemy) | queens))
+		       | (AttackTables.getBishopAttacks(kingSquare, enemyPieces) & (this.getPieces(IdManager.BSH, enemy) | queens));
+	
+	long pinned = 0L;
+	while (snipers != 0) {
+	    int sniperSquare = Long.numberOfTrailingZeros(snipers);
+	    snipers &= snipers - 1;
+	    
+	    long blockers = AttackTables.getBetween(kingSquare, sniperSquare) & (ownPieces | enemyPieces);
+	    if (Long.bitCount(blockers) == 1 && (blockers & ownPieces) != 0) {
+		pinned |= blockers;
+	    }
+	}
+	return pinned;
+    }
+    
+    /**
+     * Adds the castling moves (encoded as move of the king by two tiles) of a
+     * player who isn't in check. The tiles between king and rook must be
+     * empty and the king must not pass or reach an attacked tile.
+     */
+    private void addCastlingMoves(Color movingPlayer, Color enemy, int castlingRights, int kingSquare, long occupancy, MoveList moves) {
+	int baseSquare = movingPlayer == Color.WHITE ? 0 : 56;
+	int kingsideRight = movingPlayer == Color.WHITE ? Board.WHITE_KINGSIDE : Board.BLACK_KINGSIDE;
+	int queensideRight = movingPlayer == Color.WHITE ? Board.WHITE_QUEENSIDE : Board.BLACK_QUEENSIDE;
+	long rooks = this.getPieces(IdManager.ROK, movingPlayer);
+	
+	if (kingSquare != baseSquare + 4) {
+	    return;
+	}
+	if ((castlingRights & kingsideRight) != 0
+	    && (rooks & (1L << (baseSquare + 7))) != 0
+	    && (occupancy & (3L << (baseSquare + 5))) == 0
+	    && this.getAttackers(baseSquare + 5, enemy, occupancy) == 0
+	    && this.getAttackers(baseSquare + 6, enemy, occupancy) == 0) {
+	    moves.add(Move.encode(kingSquare, baseSquare + 6, Move.CASTLING, 0));
+	}
+	if ((castlingRights & queensideRight) != 0
+	    && (rooks & (1L << baseSquare)) != 0
+	    && (occupancy & (7L << (baseSquare + 1))) == 0
+	    && this.getAttackers(baseSquare + 3, enemy, occupancy) == 0
+	    && this.getAttackers(baseSquare + 2, enemy, occupancy) == 0) {
+	    moves.add(Move.encode(kingSquare, baseSquare + 2, Move.CASTLING, 0));
+	}
+    }
+    
+    /**
+     * Adds the en passant captures onto the given tile. Each capture is
+     * played on the occupancy first, because it may uncover an attack on the
+     * own king (e.g. along the row of both pawns).
+     */
+    private void addEnPassantMoves(Color movingPlayer, Color enemy, int enPassantSquare, int kingSquare, long occupancy, MoveList moves) {
+	int capturedSquare = enPassantSquare - (AttackTables.getPawnDirection(movingPlayer) << 3);
+	long capturers = AttackTables.getPawnAttacks(enemy, enPassantSquare) & this.getPieces(IdManager.PWN, movingPlayer);
+	
+	while (capturers != 0) {
+	    int fromSquare = Long.numberOfTrailingZeros(capturers);
+	    capturers &= capturers - 1;
+	    
+	    if (kingSquare < 64) {
+		long resultingOccupancy = (occupancy & ~(1L << fromSquare) & ~(1L << capturedSquare)) | (1L << enPassantSquare);
+		if ((this.getAttackers(kingSquare, enemy, resultingOccupancy) & ~(1L << capturedSquare)) != 0) {
+		    continue;
+		}
+	    }
+	    moves.add(Move.encode(fromSquare, enPassantSquare, Move.EN_PASSANT, 0));
+	}
+    }
+}
@@ -1,7 +1,16 @@
 package core;
 
+import java.util.Arrays;
+
+import pieces.AttackTables;
 import pieces.ChessPiece;
 import pieces.ChessPieceContainer;
+import util.Color;
+import util.IdManager;
+import util.Move;
+import util.MoveList;
+import util.PositionKey;
+import util.Zobrist;
 
 /**
  * Representation of the chess board within a constellation.
@@ -17,38 +26,262 @@ public class Board {
     public Board() {
 	// First board contains the starting positions
 	this.generateStartingPosition();
+	this.castlingRights = WHITE_KINGSIDE | WHITE_QUEENSIDE | BLACK_KINGSIDE | BLACK_QUEENSIDE;
+	
+	// The bitboards and the Id are derived from the boardArray once
+	this.bitBoard = new BitBoard(this.boardArray);
+	this.initializeId();
     }
     
     /**
-     * Deep copy constructor for Board which mirrors the board simultaneously.<br/>
+     * Deep copy constructor for Board.<br/>
      * <br/>
      * <b>Enhanced description:</b><br/>
      * The new board is a deep copy of the old board, while the new boardArray
-     * is basically a mirrored shallow copy of the old boardArray. <br/>
+     * is basically a shallow copy of the old boardArray. <br/>
      * In other words: Since the chess pieces are each only instantiated twice
      * (once for each color) the new board only needs to point to the pieces
-     * shared by all boards instead of instantiating each piece anew. The board
-     * is simultaneously mirrored (therefore [7 - row] and [7 - col]), so that
-     * the new board is "viewed" from the side of the player who's turn it is in
-     * the new constellation.<br/>
+     * shared by all boards instead of instantiating each piece anew.<br/>
+     * The board is <b>not</b> mirrored: Every board is seen from White's point
+     * of view, the pieces themselves know in which direction they move (see
+     * {@link pieces.AttackTables}). A view from the moving player's side can be
+     * retrieved with {@link #getMirroredBoardArray()}.<br/>
      * 
      * @param constellation
      *        - The former constellation.
      */
     public Board(Board formerBoard) {
-	// Copy the old board and mirror it
+	// Copy the old board row by row
 	for (int row = 0; row < this.boardArray.length; row++) {
-	    for (int col = 0; col < this.boardArray[row].length; col++) {
-		this.boardArray[row][col] = formerBoard.boardArray[7 - row][7 - col];
+	    System.arraycopy(formerBoard.boardArray[row], 0, this.boardArray[row], 0, this.boardArray[row].length);
+	}
+	
+	// Copy the bitboards and the incrementally maintained Id as well
+	this.bitBoard = new BitBoard(formerBoard.bitBoard);
+	System.arraycopy(formerBoard.squares, 0, this.squares, 0, this.squares.length);
+	this.hash = formerBoard.hash;
+	this.movingPlayer = formerBoard.movingPlayer;
+	this.castlingRights = formerBoard.castlingRights;
+	this.enPassantSquare = formerBoard.enPassantSquare;
+	this.halfmoveClock = formerBoard.halfmoveClock;
+	this.repetition = formerBoard.repetition;
+    }
+    
+    /**
+     * Restores the board of a constellation from its Id, e.g. from a
+     * {@link util.ConstellationFile}.<br/>
+     * The game state of the Id (castling rights, en passant file, halfmove
+     * clock and repetition marker) is restored as well.<br/>
+     * 
+     * @param id
+     *        - the Id of the constellation
+     */
+    public Board(PositionKey id) {
+	for (int square = 0; square < 64; square++) {
+	    this.boardArray[square >> 3][square & 7] = ChessPieceContainer.getPiece(id.getNibble(square));
+	}
+	this.movingPlayer = id.getMovingPlayer();
+	this.castlingRights = id.getCastlingRights();
+	if (id.getEnPassantFile() >= 0) {
+	    // The en passant tile was skipped by a pawn of the waiting player
+	    this.enPassantSquare = ((this.movingPlayer == Color.WHITE ? 5 : 2) << 3) + id.getEnPassantFile();
+	}
+	this.halfmoveClock = id.getHalfmoveClock();
+	this.repetition = id.isRepetition();
+	
+	this.bitBoard = new BitBoard(this.boardArray);
+	this.initializeId();
+    }
+    
+    /**
+     * Creates a board from the Forsyth-Edwards Notation of a position, e.g.
+     * {@code "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1"}.
+     * <br/>
+     * The placement, the moving player, the castling rights, the en passant
+     * tile and the halfmove clock are read, the move number is ignored.<br/>
+     * 
+     * @param fen
+     *        - the position in Forsyth-Edwards Notation
+     * @throws IllegalArgumentException
+     *         if the notation is malformed
+     */
+    public Board(String fen) throws IllegalArgumentException {
+	String[] fields = fen.trim().split("\\s+");
+	if (fields.length < 2) {
+	    throw new IllegalArgumentException("Incomplete FEN: " + fen);
+	}
+	
+	// The placement starts with the 8th row (row 7 of the boardArray)
+	int row = 7;
+	int col = 0;
+	for (char symbol : fields[0].toCharArray()) {
+	    if (symbol == '/') {
+		if (col != 8) {
+		    throw new IllegalArgumentException("Invalid placement in FEN: " + fen);
+		}
+		row--;
+		col = 0;
+	    } else if (symbol >= '1' && symbol <= '8') {
+		col += symbol - '0';
+		if (col > 8) {
+		    throw new IllegalArgumentException("Invalid placement in FEN: " + fen);
+		}
+	    } else {
+		int type = "pnbrqk".indexOf(Character.toLowerCase(symbol));
+		if (type < 0 || row < 0 || col > 7) {
+		    throw new IllegalArgumentException("Invalid placement in FEN: " + fen);
+		}
+		int code = Board.FEN_TYPES[type] | (Character.isLowerCase(symbol) ? IdManager.BLACK_PIECE : 0);
+		this.boardArray[row][col++] = ChessPieceContainer.getPiece(code);
+	    }
+	}
+	if (row != 0 || col != 8) {
+	    throw new IllegalArgumentException("Invalid placement in FEN: " + fen);
+	}
+	
+	if (!fields[1].equals("w") && !fields[1].equals("b")) {
+	    throw new IllegalArgumentException("Invalid moving player in FEN: " + fen);
+	}
+	this.movingPlayer = fields[1].equals("w") ? Color.WHITE : Color.BLACK;
+	
+	if (fields.length > 2) {
+	    for (char symbol : fields[2].toCharArray()) {
+		int right = "KQkq-".indexOf(symbol);
+		if (right < 0) {
+		    throw new IllegalArgumentException("Invalid castling rights in FEN: " + fen);
+		}
+		this.castlingRights |= right < 4 ? 1 << right : 0;
+	    }
+	}
+	if (fields.length > 3 && !fields[3].equals("-")) {
+	    // The tile is skipped by the pawn of the player who has just moved
+	    if (!fields[3].matches(this.movingPlayer == Color.BLACK ? "[a-h]3" : "[a-h]6")) {
+		throw new IllegalArgumentException("Invalid en passant tile in FEN: " + fen);
 	    }
+	    this.enPassantSquare = ((fields[3].charAt(1) - '1') << 3) + (fields[3].charAt(0) - 'a');
 	}
+	if (fields.length > 4) {
+	    if (!fields[4].matches("\\d{1,4}")) {
+		throw new IllegalArgumentException("Invalid halfmove clock in FEN: " + fen);
+	    }
+	    this.halfmoveClock = Math.min(Integer.parseInt(fields[4]), PositionKey.HALFMOVE_CLOCK_LIMIT);
+	}
+	
+	this.bitBoard = new BitBoard(this.boardArray);
+	// Like makeMove, only keeps the tile if a pawn can capture en passant
+	if (this.enPassantSquare >= 0) {
+	    Color formerPlayer = this.movingPlayer == Color.WHITE ? Color.BLACK : Color.WHITE;
+	    ChessPiece pawn = ChessPieceContainer.getPiece(IdManager.PWN | (this.movingPlayer == Color.BLACK ? IdManager.BLACK_PIECE : 0));
+	    if ((AttackTables.getPawnAttacks(formerPlayer, this.enPassantSquare) & this.bitBoard.getPieces(pawn)) == 0) {
+		this.enPassantSquare = -1;
+	    }
+	}
+	this.initializeId();
     }
     
+    /**
+     * The piece types of the FEN symbols "pnbrqk".
+     */
+    private static final int[] FEN_TYPES = { IdManager.PWN, IdManager.KNT, IdManager.BSH, IdManager.ROK, IdManager.QUN, IdManager.KNG };
+    
     /**
      * Represents the chess board and contains pointers to the pieces.
      */
     private final ChessPiece[][] boardArray = new ChessPiece[8][8];
     
+    /**
+     * Bitboard representation of the {@link #boardArray} which is used for
+     * move generation. Has to be kept in sync with the boardArray, therefore
+     * pieces should only be moved by {@link #makeMove(short)}.
+     */
+    private final BitBoard bitBoard;
+    
+    /**
+     * The player who has to do the next move on this board. Flipped by every
+     * {@link #makeMove(short)}.
+     */
+    private Color movingPlayer = Color.WHITE;
+    
+    /**
+     * The tiles packed into nibbles, see {@link PositionKey}.
+     */
+    private final long[] squares = new long[4];
+    
+    /**
+     * The Zobrist hash of the board and the game state, see {@link Zobrist}.
+     */
+    private long hash;
+    
+    /**
+     * Bits of {@link #castlingRights}.
+     */
+    public static final int WHITE_KINGSIDE = 1, WHITE_QUEENSIDE = 2, BLACK_KINGSIDE = 4, BLACK_QUEENSIDE = 8;
+    
+    /**
+     * The castling rights which remain after a piece moved from or to a tile,
+     * indexed by the tile. A right is lost as soon as the king or the rook
+     * moves or the rook is captured.
+     */
+    private static final int[] CASTLING_MASKS = new int[64];
+    
+    static {
+	Arrays.fill(CASTLING_MASKS, 0xF);
+	CASTLING_MASKS[0] = ~WHITE_QUEENSIDE & 0xF;
+	CASTLING_MASKS[4] = ~(WHITE_KINGSIDE | WHITE_QUEENSIDE) & 0xF;
+	CASTLING_MASKS[7] = ~WHITE_KINGSIDE & 0xF;
+	CASTLING_MASKS[56] = ~BLACK_QUEENSIDE & 0xF;
+	CASTLING_MASKS[60] = ~(BLACK_KINGSIDE | BLACK_QUEENSIDE) & 0xF;
+	CASTLING_MASKS[63] = ~BLACK_KINGSIDE & 0xF;
+    }
+    
+    /**
+     * The remaining castling rights of both players, see
+     * {@link #WHITE_KINGSIDE}.
+     */
+    private int castlingRights = 0;
+    
+    /**
+     * The tile a pawn has skipped with its last move, -1 if there is none.
+     * Only set if a pawn of the moving player could actually capture en
+     * passant.
+     */
+    private int enPassantSquare = -1;
+    
+    /**
+     * The number of plies since the last capture or pawn move, counted up to
+     * {@link PositionKey#HALFMOVE_CLOCK_LIMIT}.
+     */
+    private int halfmoveClock = 0;
+    
+    /**
+     * Marks a board whose position has already occurred before in the same
+     * line of play, see {@link PositionKey#REPETITION}.
+     */
+    private boolean repetition = false;
+    
+    /**
+     * Layout of the undo record returned by {@link #makeMove(short)}:<br/>
+     * <ul>
+     * <li><b>bits 0-15</b>: the packed move (see {@link Move})</li>
+     * <li><b>bits 16-19</b>: the code of the captured piece, 0 if none</li>
+     * <li><b>bits 20-23</b>: the former castling rights</li>
+     * <li><b>bits 24-27</b>: the column of the former en passant tile + 1, 0 if
+     * none</li>
+     * <li><b>bits 28-34</b>: the former halfmove clock</li>
+     * <li><b>bit 35</b>: the former repetition marker</li>
+     * </ul>
+     */
+    private static final int UNDO_CAPTURED_SHIFT = 16, UNDO_CASTLING_SHIFT = 20, UNDO_EN_PASSANT_SHIFT = 24,
+	    UNDO_HALFMOVE_CLOCK_SHIFT = 28, UNDO_REPETITION_SHIFT = 35;
+    
+    /**
+     * The {@link #boardArray} mirrored ([7 - row][7 - col]), i.e. seen from
+     * Black's point of view.<br/>
+     * Only computed when requested by {@link #getMirroredBoardArray()} and
+     * discarded whenever a piece is moved.
+     */
+    private ChessPiece[][] mirroredBoardArray = null;
+    
     /**
      * Generates the starting position of a match of chess on the
      * {@link #boardArray} .<br/>
@@ -71,7 +304,7 @@ public class Board {
 	this.boardArray[row][1] = ChessPieceContainer.getWhiteHorse();
 	this.boardArray[row][2] = ChessPieceContainer.getWhiteBishop();
 	this.boardArray[row][3] = ChessPieceContainer.getWhiteQueen();
-	this.boardArray[row][4] = ChessPieceContainer.getWhiteHorse();
+	this.boardArray[row][4] = ChessPieceContainer.getWhiteKing();
 	this.boardArray[row][5] = ChessPieceContainer.getWhiteBishop();
 	this.boardArray[row][6] = ChessPieceContainer.getWhiteHorse();
 	this.boardArray[row][7] = ChessPieceContainer.getWhiteRook();
@@ -88,12 +321,245 @@ public class Board {
 	this.boardArray[row][1] = ChessPieceContainer.getBlackHorse();
 	this.boardArray[row][2] = ChessPieceContainer.getBlackBishop();
 	this.boardArray[row][3] = ChessPieceContainer.getBlackQueen();
-	this.boardArray[row][4] = ChessPieceContainer.getBlackHorse();
+	this.boardArray[row][4] = ChessPieceContainer.getBlackKing();
 	this.boardArray[row][5] = ChessPieceContainer.getBlackBishop();
 	this.boardArray[row][6] = ChessPieceContainer.getBlackHorse();
 	this.boardArray[row][7] = ChessPieceContainer.getBlackRook();
     }
     
+    /**
+     * Packs all pieces of the {@link #boardArray} into {@link #squares} and
+     * computes the {@link #hash} from scratch. Every following change is
+     * applied incrementally.
+     */
+    private final void initializeId() {
+	this.hash = Zobrist.getStateKey(this.getState());
+	for (int row = 0; row < this.boardArray.length; row++) {
+	    for (int col = 0; col < this.boardArray[row].length; col++) {
+		if (this.boardArray[row][col] != null) {
+		    int square = (row << 3) + col;
+		    this.squares[square >> 4] |= (long) this.boardArray[row][col].getCode() << ((square & 15) << 2);
+		    this.hash ^= Zobrist.getPieceSquareKey(this.boardArray[row][col].getCode(), square);
+		}
+	    }
+	}
+    }
+    
+    /**
+     * Places a piece on an empty tile and updates the bitboards, the packed
+     * tiles and the hash.
+     */
+    private final void putPiece(ChessPiece piece, int square) {
+	this.boardArray[square >> 3][square & 7] = piece;
+	this.bitBoard.addPiece(piece, square);
+	this.squares[square >> 4] |= (long) piece.getCode() << ((square & 15) << 2);
+	this.hash ^= Zobrist.getPieceSquareKey(piece.getCode(), square);
+    }
+    
+    /**
+     * Removes the piece from a tile and updates the bitboards, the packed
+     * tiles and the hash.
+     * 
+     * @return the removed piece, null if the tile was empty
+     */
+    private final ChessPiece takePiece(int square) {
+	ChessPiece piece = this.boardArray[square >> 3][square & 7];
+	if (piece != null) {
+	    this.boardArray[square >> 3][square & 7] = null;
+	    this.bitBoard.removePiece(piece, square);
+	    this.squares[square >> 4] &= ~(0xFL << ((square & 15) << 2));
+	    this.hash ^= Zobrist.getPieceSquareKey(piece.getCode(), square);
+	}
+	return piece;
+    }
+    
+    /**
+     * Calls {@link #makeMove(short)} with a {@link Move#NORMAL} move.
+     * 
+     * @param fromSquare
+     *        - the tile the piece is moved from (row * 8 + col)
+     * @param toSquare
+     *        - the tile the piece is moved to (row * 8 + col)
+     * @return a compact undo record which has to be passed to
+     *         {@link #unmakeMove(long)} to restore the board
+     */
+    public final long makeMove(int fromSquare, int toSquare) {
+	return this.makeMove(Move.encode(fromSquare, toSquare));
+    }
+    
+    /**
+     * Executes a packed move (see {@link Move}) in place: The piece on its
+     * from-tile is moved to its destination, a piece on the destination (or
+     * the pawn passed by an en passant capture) is captured, a pawn is
+     * promoted if the move is a promotion, the rook follows the king if the
+     * move is a castling, the game state is updated and the turn is passed to
+     * the other player.<br/>
+     * The repetition marker is cleared, it is up to the caller to detect
+     * repetitions (see {@link #setRepetition(boolean)}).<br/>
+     * The {@link #boardArray}, the {@link #bitBoard} and the Id (see
+     * {@link #getId()}) are updated incrementally, nothing is allocated.<br/>
+     * 
+     * @param move
+     *        - the packed move
+     * @return a compact undo record which has to be passed to
+     *         {@link #unmakeMove(long)} to restore the board
+     */
+    public final long makeMove(short move) {
+	int fromSquare = Move.getFromSquare(move);
+	int toSquare = Move.getToSquare(move);
+	int flag = Move.getFlag(move);
+	
+	long undo = (move & 0xFFFF)
+		    | (this.castlingRights << UNDO_CASTLING_SHIFT)
+		    | ((this.enPassantSquare < 0 ? 0 : (this.enPassantSquare & 7) + 1) << UNDO_EN_PASSANT_SHIFT)
+		    | ((long) this.halfmoveClock << UNDO_HALFMOVE_CLOCK_SHIFT)
+		    | ((this.repetition ? 1L : 0L) << UNDO_REPETITION_SHIFT);
+	// The former state is replaced as a whole
+	this.hash ^= Zobrist.getStateKey(this.getState());
+	
+	ChessPiece capturedPiece = this.takePiece(flag == Move.EN_PASSANT ? Board.getEnPassantVictim(fromSquare, toSquare) : toSquare);
+	ChessPiece movedPiece = this.takePiece(fromSquare);
+	
+	if (movedPiece == null) {
+	    throw new IllegalArgumentException("There is no piece to move on square " + fromSquare);
+	}
+	
+	switch (flag) {
+	    case Move.NORMAL:
+	    case Move.EN_PASSANT:
+		this.putPiece(movedPiece, toSquare);
+		break;
+	    
+	    case Move.PROMOTION:
+		this.putPiece(ChessPieceContainer.getPiece((movedPiece.getCode() & IdManager.BLACK_PIECE)
+							   | Move.getPromotionType(move)), toSquare);
+		break;
+	    
+	    case Move.CASTLING:
+		this.putPiece(movedPiece, toSquare);
+		this.putPiece(this.takePiece(Board.getCastlingRookSquare(toSquare, false)), Board.getCastlingRookSquare(toSquare, true));
+		break;
+	    
+	    default:
+		throw new IllegalArgumentException("Unsupported move " + Move.toString(move));
+	}
+	
+	this.castlingRights &= CASTLING_MASKS[fromSquare] & CASTLING_MASKS[toSquare];
+	boolean irreversible = capturedPiece != null || (movedPiece.getCode() & 7) == IdManager.PWN;
+	this.halfmoveClock = irreversible ? 0 : Math.min(this.halfmoveClock + 1, PositionKey.HALFMOVE_CLOCK_LIMIT);
+	this.repetition = false;
+	this.enPassantSquare = -1;
+	if ((movedPiece.getCode() & 7) == IdManager.PWN && Math.abs(toSquare - fromSquare) == 16) {
+	    int skippedSquare = (fromSquare + toSquare) >> 1;
+	    ChessPiece enemyPawn = ChessPieceContainer.getPiece(IdManager.PWN | (~movedPiece.getCode() & IdManager.BLACK_PIECE));
+	    if ((AttackTables.getPawnAttacks(movedPiece.getColor(), skippedSquare) & this.bitBoard.getPieces(enemyPawn)) != 0) {
+		this.enPassantSquare = skippedSquare;
+	    }
+	}
+	this.switchMovingPlayer();
+	this.hash ^= Zobrist.getStateKey(this.getState());
+	this.mirroredBoardArray = null;
+	
+	return undo | ((capturedPiece == null ? 0 : capturedPiece.getCode()) << UNDO_CAPTURED_SHIFT);
+    }
+    
+    /**
+     * Reverts the move which returned the given undo record. Moves have to be
+     * unmade in the reverse order in which they were made.
+     * 
+     * @param undo
+     *        - the undo record returned by {@link #makeMove(short)}
+     */
+    public final void unmakeMove(long undo) {
+	short move = (short) undo;
+	int fromSquare = Move.getFromSquare(move);
+	int toSquare = Move.getToSquare(move);
+	int flag = Move.getFlag(move);
+	int capturedCode = (int) (undo >>> UNDO_CAPTURED_SHIFT) & 0xF;
+	
+	this.hash ^= Zobrist.getStateKey(this.getState());
+	
+	ChessPiece movedPiece = this.takePiece(toSquare);
+	if (flag == Move.PROMOTION) {
+	    movedPiece = ChessPieceContainer.getPiece((movedPiece.getCode() & IdManager.BLACK_PIECE) | IdManager.PWN);
+	} else if (flag == Move.CASTLING) {
+	    this.putPiece(this.takePiece(Board.getCastlingRookSquare(toSquare, true)), Board.getCastlingRookSquare(toSquare, false));
+	}
+	this.putPiece(movedPiece, fromSquare);
+	
+	if (capturedCode != 0) {
+	    this.putPiece(ChessPieceContainer.getPiece(capturedCode),
+			  flag == Move.EN_PASSANT ? Board.getEnPassantVictim(fromSquare, toSquare) : toSquare);
+	}
+	this.switchMovingPlayer();
+	this.mirroredBoardArray = null;
+	
+	this.castlingRights = (int) (undo >>> UNDO_CASTLING_SHIFT) & 0xF;
+	int enPassantFile = (int) (undo >>> UNDO_EN_PASSANT_SHIFT) & 0xF;
+	// The former en passant tile was skipped by a pawn of the now waiting player
+	this.enPassantSquare = enPassantFile == 0 ? -1 : ((this.movingPlayer == Color.WHITE ? 5 : 2) << 3) + enPassantFile - 1;
+	this.halfmoveClock = (int) (undo >>> UNDO_HALFMOVE_CLOCK_SHIFT) & 0x7F;
+	this.repetition = ((undo >>> UNDO_REPETITION_SHIFT) & 1L) != 0;
+	this.hash ^= Zobrist.getStateKey(this.getState());
+    }
+    
+    /**
+     * @return the tile of the pawn which is captured by an en passant capture
+     */
+    private static int getEnPassantVictim(int fromSquare, int toSquare) {
+	return (fromSquare & ~7) | (toSquare & 7);
+    }
+    
+    /**
+     * @param kingToSquare
+     *        - the destination of the king
+     * @param destination
+     *        - true for the destination of the rook, false for its origin
+     * @return a tile of the rook which is moved by a castling
+     */
+    private static int getCastlingRookSquare(int kingToSquare, boolean destination) {
+	boolean kingside = (kingToSquare & 7) == 6;
+	int baseSquare = kingToSquare & ~7;
+	if (destination) {
+	    return baseSquare + (kingside ? 5 : 3);
+	}
+	return baseSquare + (kingside ? 7 : 0);
+    }
+    
+    private final void switchMovingPlayer() {
+	this.movingPlayer = this.movingPlayer == Color.WHITE ? Color.BLACK : Color.WHITE;
+    }
+    
+    /**
+     * Creates the Id of the current state of the board from the incrementally
+     * maintained packed tiles and hash in O(1).
+     * 
+     * @return the same key {@link IdManager#generateId(ChessPiece[][], int)}
+     *         would compute by scanning the boardArray
+     */
+    public PositionKey getId() {
+	return new PositionKey(this.squares[0], this.squares[1], this.squares[2], this.squares[3], this.getState(), this.hash);
+    }
+    
+    /**
+     * @return the game state word of the board, see
+     *         {@link PositionKey#createState(Color, int, int, int, boolean)}
+     */
+    public int getState() {
+	return PositionKey.createState(this.movingPlayer,
+				       this.castlingRights,
+				       this.enPassantSquare < 0 ? -1 : this.enPassantSquare & 7,
+				       this.halfmoveClock,
+				       this.repetition);
+    }
+    
+    /**
+     * @return {@link #movingPlayer}
+     */
+    public Color getMovingPlayer() {
+	return this.movingPlayer;
+    }
+    
     /**
      * @return - the {@link #boardArray}
      */
@@ -101,4 +567,104 @@ public class Board {
 	return this.boardArray;
     }
     
+    /**
+     * Computes the mirrored view of the board on first use.
+     * 
+     * @return - the {@link #mirroredBoardArray}
+     */
+    public ChessPiece[][] getMirroredBoardArray() {
+	if (this.mirroredBoardArray == null) {
+	    ChessPiece[][] mirroredBoardArray = new ChessPiece[8][8];
+	    for (int row = 0; row < mirroredBoardArray.length; row++) {
+		for (int col = 0; col < mirroredBoardArray[row].length; col++) {
+		    mirroredBoardArray[row][col] = this.boardArray[7 - row][7 - col];
+		}
+	    }
+	    this.mirroredBoardArray = mirroredBoardArray;
+	}
+	return this.mirroredBoardArray;
+    }
+    
+    /**
+     * Adds all legal moves of the {@link #movingPlayer} to the list.
+     * 
+     * @param moves
+     *        - the list the moves are added to
+     */
+    public void generateMoves(MoveList moves) {
+	this.bitBoard.generateMoves(this.movingPlayer, this.castlingRights, this.enPassantSquare, moves);
+    }
+    
+    /**
+     * @return true if the king of the {@link #movingPlayer} is attacked
+     */
+    public boolean isInCheck() {
+	return this.bitBoard.isInCheck(this.movingPlayer);
+    }
+    
+    /**
+     * @return {@link #castlingRights}
+     */
+    public int getCastlingRights() {
+	return this.castlingRights;
+    }
+    
+    /**
+     * @return {@link #enPassantSquare}
+     */
+    public int getEnPassantSquare() {
+	return this.enPassantSquare;
+    }
+    
+    /**
+     * @return {@link #halfmoveClock}
+     */
+    public int getHalfmoveClock() {
+	return this.halfmoveClock;
+    }
+    
+    /**
+     * @return the Zobrist hash of the board and its game state, the same as the
+     *         hash of {@link #getId()}
+     */
+    public long getHash() {
+	return this.hash;
+    }
+    
+    /**
+     * @return the hash of the position regardless of the halfmove clock and
+     *         the repetition marker, see {@link PositionKey#getRepetitionHash()}
+     */
+    public long getRepetitionHash() {
+	return Zobrist.getRepetitionHash(this.hash, this.getState());
+    }
+    
+    /**
+     * @return {@link #repetition}
+     */
+    public boolean isRepetition() {
+	return this.repetition;
+    }
+    
+    /**
+     * Marks or unmarks the board as a repetition and updates the Id. The
+     * marker is reset by the next {@link #makeMove(short)} and restored by
+     * {@link #unmakeMove(long)}.
+     * 
+     * @param repetition
+     *        - true if the position has occurred before
+     */
+    public void setRepetition(boolean repetition) {
+	this.hash ^= Zobrist.getStateKey(this.getState());
+	this.repetition = repetition;
+	this.hash ^= Zobrist.getStateKey(this.getState());
+    }
+    
+    /**
+     * @return - the {@link #bitBoard}
+     */
+    public BitBoard getBitBoard() {
+	return this.bitBoard;
+    }
+    
 }
@@ -1,5 +1,772 @@
 package core;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import util.BuildMetrics;
+import util.ConstellationFile;
+import util.DepthTable;
+import util.IdManager;
+import util.MoveList;
+import util.PositionKey;
+import util.SortedKeyFile;
+import util.Symmetry;
+
+/**
+ * Builds the map of all constellations which can be reached from the starting
+ * position.<br/>
+ * <br/>
+ * <b>Enhanced description:</b><br/>
+ * The map is built breadth first, one ply after another (level synchronous):
+ * All constellations of the current ply (the frontier) are expanded in
+ * parallel by the threads of a {@link ForkJoinPool}. Every constellation
+ * which has not been known before becomes part of the next frontier. The next
+ * ply is only started once the whole frontier has been expanded.<br/>
+ * Each constellation is expanded by exactly one thread, therefore its board
+ * and its moves are never shared. The constellations are deduplicated by the
+ * {@link IdManager}, which also stores the relationships. Once the build has
+ * finished the relationships are frozen and can be read.<br/>
+ * The build stops after {@link #maxDepth} plies or as soon as
+ * {@link #maxConstellations} constellations are known. Constellations which
+ * could not be expanded completely keep their remaining moves and are not
+ * marked as complete.<br/>
+ * Constellations which are drawn by a threefold repetition along the path
+ * they have been created through or by the fifty-move rule are not expanded
+ * (see {@link Constellation#isDrawn()}), therefore shuffling lines end there.
+ * {@link #buildExternal(Path, int)} only knows the Ids of a ply, not the
+ * paths to them, therefore it ends lines by the fifty-move rule only.<br/>
+ * The progress of a build can be watched through its {@link BuildMetrics}.
+ * <br/>
+ * 
+ * @author Andy
+ */
 public class ChessMap {
     
+    /**
+     * Creates a map which is built by the common {@link ForkJoinPool}.
+     * 
+     * @param maxDepth
+     *        - the number of plies which are expanded
+     * @param maxConstellations
+     *        - the maximum number of constellations in the map
+     */
+    public ChessMap(int maxDepth, int maxConstellations) {
+	this(maxDepth, maxConstellations, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * @param maxDepth
+     *        - the number of plies which are expanded
+     * @param maxConstellations
+     *        - the maximum number of constellations in the map
+     * @param pool
+     *        - the pool whose threads expand the constellations
+     */
+    public ChessMap(int maxDepth, int maxConstellations, ForkJoinPool pool) {
+	this(maxDepth, maxConstellations, pool, false);
+    }
+    
+    /**
+     * @param maxDepth
+     *        - the number of plies which are expanded
+     * @param maxConstellations
+     *        - the maximum number of constellations in the map
+     * @param pool
+     *        - the pool whose threads expand the constellations
+     * @param offHeapIndex
+     *        - {@code true} if the idManager shall keep its index outside of
+     *        the heap (see {@link IdManager#IdManager(int, boolean)})
+     */
+    public ChessMap(int maxDepth, int maxConstellations, ForkJoinPool pool, boolean offHeapIndex) {
+	this(null, maxDepth, maxConstellations, pool, offHeapIndex);
+    }
+    
+    /**
+     * Creates a map whose root is an arbitrary constellation, e.g. an endgame.
+     * 
+     * @param rootId
+     *        - the Id of the root constellation, null for the starting position
+     * @param maxDepth
+     *        - the number of plies which are expanded
+     * @param maxConstellations
+     *        - the maximum number of constellations in the map
+     * @param pool
+     *        - the pool whose threads expand the constellations
+     * @param offHeapIndex
+     *        - {@code true} if the idManager shall keep its index outside of
+     *        the heap (see {@link IdManager#IdManager(int, boolean)})
+     */
+    public ChessMap(PositionKey rootId, int maxDepth, int maxConstellations, ForkJoinPool pool, boolean offHeapIndex) {
+	if (maxDepth < 0 || maxConstellations < 1) {
+	    throw new IllegalArgumentException("Invalid limits: maxDepth = " + maxDepth + ", maxConstellations = " + maxConstellations);
+	}
+	this.maxDepth = maxDepth;
+	this.maxConstellations = maxConstellations;
+	this.pool = pool;
+	this.idManager = new IdManager(Math.min(maxConstellations, 1 << 20), offHeapIndex);
+	this.root = rootId == null ? new Constellation(this.idManager) : new Constellation(this.idManager, rootId);
+	this.idManager.addConstellation(this.root.getId(), this.root);
+	this.constellationCount.set(1);
+    }
+    
+    /**
+     * Frontiers which are smaller than this are expanded by a single task.
+     */
+    private static final int SEQUENTIAL_THRESHOLD = 64;
+    
+    /**
+     * The number of IDs which are read and expanded at once by
+     * {@link #buildExternal(Path, int)}.
+     */
+    private static final int EXTERNAL_BATCH_SIZE = 1 << 12;
+    
+    private final int maxDepth, maxConstellations;
+    
+    private final ForkJoinPool pool;
+    
+    private final IdManager idManager;
+    
+    /**
+     * The constellation the map is built from, usually the starting position.
+     */
+    private final Constellation root;
+    
+    /**
+     * The number of constellations which are (or are about to be) added to the
+     * idManager. A thread reserves a slot before it creates a constellation,
+     * so that {@link #maxConstellations} is never exceeded.
+     */
+    private final AtomicInteger constellationCount = new AtomicInteger();
+    
+    /**
+     * {@code true} if symmetric constellations are merged, see
+     * {@link #setSymmetryReduction(boolean)}.
+     */
+    private boolean symmetryReduction = false;
+    
+    /**
+     * Receives the records of a streaming build, null if the constellations
+     * are kept in memory.
+     */
+    private Consumer<ConstellationRecord> sink = null;
+    
+    /**
+     * The number of new constellations per ply, starting with the root at ply
+     * 0.
+     */
+    private final ArrayList<Long> constellationsPerPly = new ArrayList<Long>();
+    
+    /**
+     * Expands the map ply by ply until one of the limits is reached or no new
+     * constellations are found.
+     * 
+     * @throws Exception
+     *         if a move could not be executed
+     */
+    public void build() throws Exception {
+	if (!this.constellationsPerPly.isEmpty()) {
+	    throw new IllegalStateException("The map has already been built!");
+	}
+	
+	List<Constellation> frontier = new ArrayList<Constellation>();
+	frontier.add(this.root);
+	this.constellationsPerPly.add(1L);
+	
+	for (int depth = 0; depth < this.maxDepth && !frontier.isEmpty(); depth++) {
+	    this.idManager.getMetrics().startPly(depth, frontier.size());
+	    ConcurrentLinkedQueue<Constellation> nextFrontier = new ConcurrentLinkedQueue<Constellation>();
+	    
+	    try {
+		this.pool.invoke(new ExpansionTask(frontier, 0, frontier.size(), nextFrontier));
+	    } catch (ExpansionException e) {
+		throw (Exception) e.getCause();
+	    }
+	    
+	    frontier = new ArrayList<Constellation>(nextFrontier);
+	    this.constellationsPerPly.add((long) frontier.size());
+	}
+	
+	if (this.sink != null) {
+	    // The last ply has not been expanded
+	    for (Constellation constellation : frontier) {
+		this.release(constellation, new int[0], null, false);
+	    }
+	}
+	this.idManager.freezeRelationships();
+    }
+    
+    /**
+     * Enables the reduction by symmetries: Every following constellation is
+     * replaced by the canonical member of its symmetry class before it is
+     * looked up (see {@link Symmetry}), so that mirrored constellations are
+     * only added once. The transform which maps the constellation reached by
+     * a move onto the stored one is kept with the relationship (see
+     * {@link IdManager#getFollowingTransform(int, int)}), therefore no
+     * information about the relationships is lost. The root is never
+     * transformed.<br/>
+     * A transformed constellation doesn't carry the history of its path (see
+     * {@link Constellation#Constellation(IdManager, PositionKey, boolean)}):
+     * It is drawn if it occurs for the third time, but repetitions in its
+     * subtree only count the positions from there on.<br/>
+     * Only affects {@link #build()}.
+     * 
+     * @param symmetryReduction
+     *        - {@code true} to merge symmetric constellations
+     */
+    public void setSymmetryReduction(boolean symmetryReduction) {
+	if (!this.constellationsPerPly.isEmpty()) {
+	    throw new IllegalStateException("The symmetry reduction must be set before the map is built!");
+	}
+	this.symmetryReduction = symmetryReduction;
+    }
+    
+    /**
+     * Enables the streaming build: As soon as a constellation has been
+     * expanded it is collapsed into a {@link ConstellationRecord}, handed to
+     * the sink and released by the idManager (see
+     * {@link IdManager#releaseConstellation(int)}), so that its board can be
+     * collected. Only the IDs of the released constellations remain in memory
+     * to detect transpositions, therefore the heap is dominated by the
+     * frontier instead of the whole map.<br/>
+     * The constellations of the last ply are handed to the sink without any
+     * following constellations once the build has finished. Relationships are
+     * only passed to the sink, they are not stored by the idManager.<br/>
+     * 
+     * @param sink
+     *        - receives the record of every constellation exactly once, is
+     *        called by several threads at the same time (e.g. a
+     *        {@link RecordFileSink})
+     */
+    public void setSink(Consumer<ConstellationRecord> sink) {
+	if (!this.constellationsPerPly.isEmpty()) {
+	    throw new IllegalStateException("The sink must be set before the map is built!");
+	}
+	this.sink = sink;
+    }
+    
+    /**
+     * Expands the map ply by ply like {@link #build()}, but keeps the IDs on
+     * disk instead of keeping the constellations in the idManager, so that
+     * the depth of the map is bounded by the disk instead of the heap.<br/>
+     * <br/>
+     * <b>Enhanced description:</b><br/>
+     * The IDs of ply n are written to {@code directory/ply-n.keys} (see
+     * {@link SortedKeyFile}). To build the next ply the IDs of the current
+     * ply are read in batches, their boards are restored (see
+     * {@link Board#Board(PositionKey)}) and all following IDs are collected
+     * in memory. Whenever {@code runSize} IDs have been collected they are
+     * sorted and written as a run. Afterwards all runs are merged into the
+     * file of the next ply, skipping the IDs which are already contained in a
+     * former ply (delayed duplicate detection). Only the plies with the same
+     * moving player have to be checked.<br/>
+     * Relationships are not recorded and the idManager only contains the
+     * root. The build stops after {@link #maxDepth} plies or after the ply in
+     * which the map has reached {@link #maxConstellations} IDs.<br/>
+     * 
+     * @param directory
+     *        - the directory the files are written to
+     * @param runSize
+     *        - the number of IDs which are sorted in memory at once
+     * @throws IOException
+     *         if a file can't be read or written
+     */
+    public void buildExternal(Path directory, int runSize) throws IOException {
+	if (!this.constellationsPerPly.isEmpty()) {
+	    throw new IllegalStateException("The map has already been built!");
+	}
+	if (runSize < 1) {
+	    throw new IllegalArgumentException("Invalid runSize: " + runSize);
+	}
+	Files.createDirectories(directory);
+	
+	List<Path> plies = new ArrayList<Path>();
+	Path firstPly = directory.resolve("ply-0.keys");
+	SortedKeyFile.write(new PositionKey[] { this.root.getId() }, 1, firstPly);
+	plies.add(firstPly);
+	this.constellationsPerPly.add(1L);
+	long total = 1;
+	
+	for (int depth = 0; depth < this.maxDepth && this.constellationsPerPly.get(depth) > 0 && total < this.maxConstellations; depth++) {
+	    this.idManager.getMetrics().startPly(depth, this.constellationsPerPly.get(depth));
+	    List<Path> runs = this.writeRuns(plies.get(depth), directory, runSize);
+	    
+	    List<Path> formerPlies = new ArrayList<Path>();
+	    for (int ply = depth - 1; ply >= 0; ply -= 2) {
+		formerPlies.add(plies.get(ply));
+	    }
+	    Path nextPly = directory.resolve("ply-" + (depth + 1) + ".keys");
+	    long count = SortedKeyFile.merge(runs, formerPlies, nextPly);
+	    for (Path run : runs) {
+		Files.delete(run);
+	    }
+	    
+	    plies.add(nextPly);
+	    this.idManager.getMetrics().recordNodesCreated(count);
+	    this.constellationsPerPly.add(count);
+	    total += count;
+	}
+    }
+    
+    /**
+     * Writes the following IDs of all IDs of a ply into sorted runs.
+     * 
+     * @return the files of the runs
+     */
+    private List<Path> writeRuns(Path ply, Path directory, int runSize) throws IOException {
+	List<Path> runs = new ArrayList<Path>();
+	PositionKey[] run = new PositionKey[runSize];
+	int runLength = 0;
+	PositionKey[] batch = new PositionKey[EXTERNAL_BATCH_SIZE];
+	
+	try (SortedKeyFile.Reader reader = new SortedKeyFile.Reader(ply)) {
+	    while (reader.peek() != null) {
+		int batchSize = 0;
+		while (batchSize < batch.length && reader.peek() != null) {
+		    batch[batchSize++] = reader.next();
+		}
+		
+		// Expand the batch in parallel
+		PositionKey[][] followingIds = new PositionKey[batchSize][];
+		int size = batchSize;
+		this.pool.invoke(ForkJoinTask.adapt(() -> IntStream.range(0, size).parallel().forEach(i -> {
+		    followingIds[i] = ChessMap.getFollowingIds(batch[i]);
+		})));
+		
+		for (PositionKey[] ids : followingIds) {
+		    for (PositionKey id : ids) {
+			if (runLength == runSize) {
+			    runs.add(this.writeRun(run, runLength, directory, runs.size()));
+			    runLength = 0;
+			}
+			run[runLength++] = id;
+		    }
+		}
+	    }
+	}
+	
+	if (runLength > 0) {
+	    runs.add(this.writeRun(run, runLength, directory, runs.size()));
+	}
+	return runs;
+    }
+    
+    private Path writeRun(PositionKey[] run, int runLength, Path directory, int number) throws IOException {
+	Arrays.parallelSort(run, 0, runLength, SortedKeyFile.ORDER);
+	Path path = directory.resolve("run-" + number + ".keys");
+	SortedKeyFile.write(run, runLength, path);
+	Arrays.fill(run, 0, runLength, null);
+	return path;
+    }
+    
+    /**
+     * @return the IDs of all constellations which follow out of the
+     *         constellation with the ID, none if the constellation is drawn by
+     *         the fifty-move rule
+     */
+    private static PositionKey[] getFollowingIds(PositionKey id) {
+	Board board = new Board(id);
+	MoveList moves = new MoveList();
+	board.generateMoves(moves);
+	// Drawn by the fifty-move rule, unless it is a mate or a stalemate anyway
+	if (board.getHalfmoveClock() >= PositionKey.HALFMOVE_CLOCK_LIMIT) {
+	    return new PositionKey[0];
+	}
+	
+	PositionKey[] followingIds = new PositionKey[moves.size()];
+	for (int i = 0; i < followingIds.length; i++) {
+	    long undo = board.makeMove(moves.get(i));
+	    followingIds[i] = board.getId();
+	    board.unmakeMove(undo);
+	}
+	return followingIds;
+    }
+    
+    /**
+     * Explores the map depth first with iterative deepening instead of building
+     * it, so that deep lines can be followed with constant memory.<br/>
+     * <br/>
+     * <b>Enhanced description:</b><br/>
+     * Iteration d visits the constellations up to d plies away from the root,
+     * d = 1, 2, ..., {@link #maxDepth}. Only one board is walked by making and
+     * unmaking moves (see {@link Board#makeMove(short)}), the undo records, the
+     * move lists and the hashes of the current path are kept on stacks with
+     * one entry per ply. Transpositions are detected by a {@link DepthTable}
+     * of fixed size: A constellation which has already been explored at least
+     * as deep as it would be explored now is skipped. Since the table forgets
+     * entries, a constellation may be explored again, which only costs
+     * time.<br/>
+     * Like in {@link #build()} a line ends at a constellation which occurs for
+     * the third time on the path or at which the fifty-move rule applies.<br/>
+     * The exploration stops after the last iteration or as soon as
+     * {@link #maxConstellations} constellations have been visited by all
+     * iterations together. Afterwards {@link #getConstellationsPerPly()}
+     * contains the number of constellations visited per ply by the last
+     * completed iteration. Neither constellations nor relationships are
+     * added to the idManager.<br/>
+     * 
+     * @param tableSize
+     *        - the maximum number of entries of the transposition table
+     * @param visitor
+     *        - receives the Id of every visited constellation, null if none;
+     *        the constellations close to the root are visited by every
+     *        iteration
+     * @return the depth of the last completed iteration
+     */
+    public int explore(int tableSize, Consumer<PositionKey> visitor) {
+	if (!this.constellationsPerPly.isEmpty()) {
+	    throw new IllegalStateException("The map has already been built!");
+	}
+	if (this.maxDepth > DepthTable.MAX_DEPTH) {
+	    throw new IllegalArgumentException("Can't explore deeper than " + DepthTable.MAX_DEPTH + " plies");
+	}
+	
+	Exploration exploration = new Exploration(new DepthTable(tableSize), visitor);
+	int completedDepth = 0;
+	for (int depth = 1; depth <= this.maxDepth; depth++) {
+	    long[] visitedPerPly = new long[depth + 1];
+	    if (!exploration.visit(0, depth, visitedPerPly)) {
+		break;
+	    }
+	    completedDepth = depth;
+	    this.constellationsPerPly.clear();
+	    for (long count : visitedPerPly) {
+		this.constellationsPerPly.add(count);
+	    }
+	}
+	if (this.constellationsPerPly.isEmpty()) {
+	    this.constellationsPerPly.add(1L);
+	}
+	return completedDepth;
+    }
+    
+    /**
+     * Executes all moves of a constellation. The following constellation is
+     * only created if its Id is unknown, otherwise only the relationship is
+     * added. The relationships of the constellation are added at once after
+     * all moves have been executed.
+     * 
+     * @param constellation
+     *        - the constellation to expand
+     * @param nextFrontier
+     *        - the queue all newly created constellations are added to
+     * @throws Exception
+     *         if a move could not be executed
+     */
+    private void expand(Constellation constellation, ConcurrentLinkedQueue<Constellation> nextFrontier) throws Exception {
+	int[] followingIndices = new int[32];
+	byte[] transforms = this.symmetryReduction ? new byte[32] : null;
+	int followingCount = 0;
+	
+	while (constellation.hasNextMove()) {
+	    PositionKey nextId = constellation.getNextId();
+	    int transform = Symmetry.IDENTITY;
+	    if (this.symmetryReduction) {
+		transform = Symmetry.getCanonicalTransform(nextId);
+		if (transform != Symmetry.IDENTITY) {
+		    nextId = Symmetry.transform(nextId, transform);
+		}
+	    }
+	    
+	    int nextIndex = this.idManager.getIndex(nextId);
+	    if (nextIndex < 0) {
+		if (this.constellationCount.getAndIncrement() >= this.maxConstellations) {
+		    this.constellationCount.decrementAndGet();
+		    break;
+		}
+		
+		Constellation newConstellation = transform == Symmetry.IDENTITY ? new Constellation(constellation)
+										: new Constellation(this.idManager, nextId, constellation.isNextDrawn());
+		if (this.idManager.addConstellation(nextId, newConstellation) == newConstellation) {
+		    nextFrontier.add(newConstellation);
+		} else {
+		    // Another thread has been faster
+		    this.constellationCount.decrementAndGet();
+		}
+		nextIndex = this.idManager.getIndex(nextId);
+	    } else {
+		this.idManager.getMetrics().recordTranspositionHit();
+	    }
+	    
+	    if (followingCount == followingIndices.length) {
+		followingIndices = Arrays.copyOf(followingIndices, followingCount << 1);
+		if (transforms != null) {
+		    transforms = Arrays.copyOf(transforms, followingCount << 1);
+		}
+	    }
+	    if (transforms != null) {
+		transforms[followingCount] = (byte) transform;
+	    }
+	    followingIndices[followingCount++] = nextIndex;
+	    constellation.removeMove(constellation.getNextMove());
+	}
+	
+	boolean complete = !constellation.hasNextMove();
+	if (complete) {
+	    constellation.markAsComplete();
+	}
+	this.idManager.getMetrics().recordExpansion(followingCount);
+	
+	if (this.sink != null) {
+	    this.release(constellation,
+			 Arrays.copyOf(followingIndices, followingCount),
+			 transforms == null ? null : Arrays.copyOf(transforms, followingCount),
+			 complete);
+	} else {
+	    this.idManager.addRelationships(constellation.getIndex(), followingIndices, transforms, followingCount);
+	}
+    }
+    
+    /**
+     * Hands the record of a constellation to the {@link #sink} and removes the
+     * constellation from the idManager, so that it can be collected.
+     */
+    private void release(Constellation constellation, int[] followingIndices, byte[] transforms, boolean complete) {
+	this.sink.accept(new ConstellationRecord(constellation.getIndex(),
+						 constellation.getId(),
+						 followingIndices,
+						 transforms,
+						 complete,
+						 constellation.isDrawn()));
+	this.idManager.releaseConstellation(constellation.getIndex());
+    }
+    
+    /**
+     * The state of {@link ChessMap#explore(int, Consumer)}: One board and the
+     * stacks of the current path, which only depend on the maximum depth.
+     */
+    private class Exploration {
+	
+	private Exploration(DepthTable table, Consumer<PositionKey> visitor) {
+	    this.table = table;
+	    this.visitor = visitor;
+	    this.board = new Board(ChessMap.this.root.getBoard());
+	    this.moveLists = new MoveList[ChessMap.this.maxDepth];
+	    for (int ply = 0; ply < this.moveLists.length; ply++) {
+		this.moveLists[ply] = new MoveList();
+	    }
+	    this.pathHashes = new long[ChessMap.this.maxDepth + 1];
+	    this.pathHashes[0] = this.board.getRepetitionHash();
+	    this.repetitions = new int[ChessMap.this.maxDepth + 1];
+	}
+	
+	private final DepthTable table;
+	private final Consumer<PositionKey> visitor;
+	private final Board board;
+	private final MoveList[] moveLists;
+	
+	/**
+	 * The hashes of the positions on the current path by their ply (see
+	 * {@link util.Zobrist#getRepetitionHash(long, int)}).
+	 */
+	private final long[] pathHashes;
+	
+	/**
+	 * The number of former occurrences of the positions on the current
+	 * path by their ply.
+	 */
+	private final int[] repetitions;
+	
+	private long visitedCount = 0;
+	
+	/**
+	 * Visits the constellation on the board and explores its following
+	 * constellations.
+	 * 
+	 * @param ply
+	 *        - the distance of the constellation from the root
+	 * @param remainingDepth
+	 *        - the number of plies which are explored below the
+	 *        constellation
+	 * @param visitedPerPly
+	 *        - the counts of the current iteration
+	 * @return false if {@link ChessMap#maxConstellations} has been reached
+	 */
+	private boolean visit(int ply, int remainingDepth, long[] visitedPerPly) {
+	    if (this.visitedCount == ChessMap.this.maxConstellations) {
+		return false;
+	    }
+	    this.visitedCount++;
+	    visitedPerPly[ply]++;
+	    ChessMap.this.idManager.getMetrics().recordNodeCreated();
+	    if (this.visitor != null) {
+		this.visitor.accept(this.board.getId());
+	    }
+	    if (remainingDepth == 0) {
+		return true;
+	    }
+	    
+	    MoveList moves = this.moveLists[ply];
+	    moves.clear();
+	    this.board.generateMoves(moves);
+	    // A repeated or shuffled position ends the line unless it is a checkmate
+	    if (this.repetitions[ply] >= 2 || this.board.getHalfmoveClock() >= PositionKey.HALFMOVE_CLOCK_LIMIT) {
+		moves.clear();
+	    }
+	    ChessMap.this.idManager.getMetrics().recordExpansion(moves.size());
+	    
+	    for (int index = 0; index < moves.size(); index++) {
+		long undo = this.board.makeMove(moves.get(index));
+		this.markRepetition(ply + 1);
+		
+		boolean completed = true;
+		if (this.table.getDepth(this.board.getHash()) >= remainingDepth - 1) {
+		    ChessMap.this.idManager.getMetrics().recordTranspositionHit();
+		} else {
+		    completed = this.visit(ply + 1, remainingDepth - 1, visitedPerPly);
+		    if (completed) {
+			this.table.put(this.board.getHash(), remainingDepth - 1);
+		    }
+		}
+		this.board.unmakeMove(undo);
+		if (!completed) {
+		    return false;
+		}
+	    }
+	    return true;
+	}
+	
+	/**
+	 * Pushes the position on the board onto the path and marks the board as
+	 * a repetition if the position has occurred on the path before. Only
+	 * the positions since the last capture or pawn move with the same
+	 * moving player are compared.
+	 */
+	private void markRepetition(int ply) {
+	    long hash = this.board.getRepetitionHash();
+	    this.pathHashes[ply] = hash;
+	    int occurrences = 0;
+	    for (int former = ply - 2; former >= Math.max(ply - this.board.getHalfmoveClock(), 0); former -= 2) {
+		if (this.pathHashes[former] == hash) {
+		    occurrences++;
+		}
+	    }
+	    this.repetitions[ply] = occurrences;
+	    if (occurrences > 0) {
+		this.board.setRepetition(true);
+	    }
+	}
+    }
+    
+    /**
+     * Expands a part of the frontier, splits it in halves as long as it is
+     * larger than {@link ChessMap#SEQUENTIAL_THRESHOLD}.
+     */
+    private class ExpansionTask extends RecursiveAction {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private ExpansionTask(List<Constellation> frontier,
+			      int start,
+			      int end,
+			      ConcurrentLinkedQueue<Constellation> nextFrontier) {
+	    this.frontier = frontier;
+	    this.start = start;
+	    this.end = end;
+	    this.nextFrontier = nextFrontier;
+	}
+	
+	private final List<Constellation> frontier;
+	private final int start, end;
+	private final ConcurrentLinkedQueue<Constellation> nextFrontier;
+	
+	@Override
+	protected void compute() {
+	    if (this.end - this.start > SEQUENTIAL_THRESHOLD) {
+		int middle = (this.start + this.end) >>> 1;
+		invokeAll(new ExpansionTask(this.frontier, this.start, middle, this.nextFrontier),
+			  new ExpansionTask(this.frontier, middle, this.end, this.nextFrontier));
+	    } else {
+		for (int i = this.start; i < this.end; i++) {
+		    try {
+			ChessMap.this.expand(this.frontier.get(i), this.nextFrontier);
+		    } catch (Exception e) {
+			throw new ExpansionException(e);
+		    }
+		}
+	    }
+	}
+    }
+    
+    /**
+     * Carries the checked exception of an expansion out of the
+     * {@link ForkJoinPool}.
+     */
+    private static class ExpansionException extends RuntimeException {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private ExpansionException(Exception cause) {
+	    super(cause);
+	}
+    }
+    
+    /**
+     * Writes the map into a file, see {@link ConstellationFile}.
+     * 
+     * @param path
+     *        - the file, an existing file is overwritten
+     * @throws IOException
+     *         if the file can't be written
+     */
+    public void save(Path path) throws IOException {
+	if (this.constellationsPerPly.isEmpty()) {
+	    throw new IllegalStateException("The map has to be built before it can be saved!");
+	}
+	ConstellationFile.write(this.idManager, path);
+    }
+    
+    /**
+     * Opens a map which has been saved by {@link #save(Path)}.
+     * 
+     * @param path
+     *        - the file
+     * @return a read only idManager which serves the constellations out of the
+     *         mapped file
+     * @throws IOException
+     *         if the file can't be read or is no constellation file
+     */
+    public static IdManager open(Path path) throws IOException {
+	return new IdManager(ConstellationFile.open(path));
+    }
+    
+    public Constellation getRoot() {
+	return this.root;
+    }
+    
+    public IdManager getIdManager() {
+	return this.idManager;
+    }
+    
+    /**
+     * @return the metrics of the build, see {@link BuildMetrics}
+     */
+    public BuildMetrics getMetrics() {
+	return this.idManager.getMetrics();
+    }
+    
+    /**
+     * @return the number of constellations in the map
+     */
+    public int getConstellationCount() {
+	return this.idManager.getConstellationCount();
+    }
+    
+    /**
+     * @return the number of new constellations per ply, index 0 is the ply of
+     *         the starting position
+     */
+    public List<Long> getConstellationsPerPly() {
+	return this.constellationsPerPly;
+    }
 }
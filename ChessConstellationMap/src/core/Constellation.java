@@ -1,10 +1,13 @@
 package core;
 
-import java.util.ArrayList;
+import java.util.List;
 
 import util.Color;
+import util.HashStack;
 import util.IdManager;
 import util.Move;
+import util.MoveList;
+import util.PositionKey;
 
 /**
  * "Core"-Element of ChessMap. <br/>
@@ -21,7 +24,7 @@ public class Constellation {
      * an empty map.<br/>
      * It represents the constellation at the start of a game of chess.<br/>
      * Therefore it does the following:<br/>
-     * - {@link #complete} is set to {@code false} .<br/>
+     * - the constellation is not complete (see {@link #isComplete()}).<br/>
      * - {@link #movingPLayer} is set to {@code Color.WHITE}.<br/>
      * - {@link #board} will receive a new instance of the class {@link Board}
      * using the default constructor which will fill said board with the
@@ -42,8 +45,11 @@ public class Constellation {
 	// All constellations share the same idManager
 	this.idManager = idManager;
 	
+	// Nothing has happened before the first constellation
+	this.history = HashStack.EMPTY;
+	
 	// Generate Id and set it within this constellation.
-	this.id = this.idManager.generateId(this.board.getBoardArray(), this.movingPlayer);
+	this.id = this.idManager.generateId(this.board.getBoardArray(), this.board.getState());
 	
 	// Calculate all possible moves.
 	this.calculateAllPossibleMoves();
@@ -58,17 +64,23 @@ public class Constellation {
      * Therefore, after the constructor has finished, the former constellation
      * won't be updated and the new constellation has not been added to the
      * idManager.<br/>
+     * Since most following constellations are transpositions of known ones,
+     * {@link #getNextId()} should be probed against the idManager first; the
+     * constructor only has to be invoked if the Id is unknown.<br/>
      * <br/>
      * <b>Important note:</b><br/>
      * After the constructor has finished some tasks must be executed in the
      * following order:<br/>
-     * 1.) The new constellation must be added to the idManager<br/>
+     * 1.) The new constellation must be added to the idManager. If another
+     * thread has added a constellation with the same Id in the meantime, the
+     * returned one has to be used instead (see
+     * {@link IdManager#addConstellation(PositionKey, Constellation)}).<br/>
      * 2.) The new constellation must be added to the list of following
      * constellations of the former constellation (see
-     * {@link IdManager#addRelationship(String, String)}).<br/>
+     * {@link IdManager#addRelationship(PositionKey, PositionKey)}).<br/>
      * 3.) The former constellation must be added to the list of former
      * constellations of the new constellation (see
-     * {@link IdManager#addRelationship(String, String)}).<br/>
+     * {@link IdManager#addRelationship(PositionKey, PositionKey)}).<br/>
      * 4.) The performed move must be removed from the former constellation.
      * 
      * @param formerConstellation
@@ -96,7 +108,7 @@ public class Constellation {
 	    throw new Exception("movingPlayer not assigned correctly while creating a new constellation with the copy constructor");
 	}
 	
-	// Generate a mirrored copy of the old board
+	// Generate a copy of the old board
 	this.board = new Board(formerConstellation.board);
 	
 	// Execute next logical move
@@ -105,13 +117,95 @@ public class Constellation {
 	// Retrieve a pointer to the overall idManager
 	this.idManager = formerConstellation.idManager;
 	
-	// Generate Id and set it within this constellation
-	this.id = this.idManager.generateId(this.board.getBoardArray(), this.movingPlayer);
+	if (this.movingPlayer != this.board.getMovingPlayer()) {
+	    throw new Exception("movingPlayer of the board differs from the movingPlayer of the new constellation");
+	}
+	
+	// Extend the path of the former constellation, a capture or a pawn move
+	// can't be undone, so no former position can occur again
+	this.history = this.board.getHalfmoveClock() == 0 ? HashStack.EMPTY
+							  : formerConstellation.history.push(formerConstellation.id.getRepetitionHash());
+	// The third occurrence of a position is drawn
+	this.drawn = Constellation.markRepetition(this.board, this.history) >= 2;
+	
+	// The board maintains its Id incrementally while the move is executed
+	this.id = this.board.getId();
 	
 	// Calculate all possible moves.
 	this.calculateAllPossibleMoves();
     }
     
+    /**
+     * Creates a constellation out of its Id instead of executing a move, e.g.
+     * the canonical member of a symmetry class (see {@link util.Symmetry}).
+     * <br/>
+     * As with {@link #Constellation(Constellation)} the new constellation has
+     * not been added to the idManager yet.<br/>
+     * 
+     * @param idManager
+     *        - the idManager of the map
+     * @param id
+     *        - the Id of the constellation
+     */
+    public Constellation(IdManager idManager, PositionKey id) {
+	this(idManager, id, false);
+    }
+    
+    /**
+     * Creates a constellation out of its Id instead of executing a move, see
+     * {@link #Constellation(IdManager, PositionKey)}.<br/>
+     * The history of the path is not carried over, since it doesn't match the
+     * transformed board. Whether the constellation is drawn by a repetition
+     * has to be passed instead (see {@link #isNextDrawn()}), so that it ends
+     * the line like a constellation created by a move. Further repetitions in
+     * its subtree are only detected from here on.<br/>
+     * 
+     * @param idManager
+     *        - the idManager of the map
+     * @param id
+     *        - the Id of the constellation
+     * @param drawn
+     *        - {@code true} if the constellation occurs for the third time on
+     *        the path it has been reached through
+     */
+    public Constellation(IdManager idManager, PositionKey id, boolean drawn) {
+	this.idManager = idManager;
+	this.id = id;
+	this.movingPlayer = id.getMovingPlayer();
+	this.board = new Board(id);
+	this.history = HashStack.EMPTY;
+	this.drawn = drawn;
+	
+	this.calculateAllPossibleMoves();
+    }
+    
+    /**
+     * Restores a constellation which the idManager has read from a
+     * {@link util.ConstellationFile}.<br/>
+     * The board is rebuilt from the Id. The moves are only calculated if the
+     * constellation has not been complete when the file was written.<br/>
+     * 
+     * @param idManager
+     *        - the idManager which serves the file
+     * @param index
+     *        - the index of the constellation within the file
+     */
+    public Constellation(IdManager idManager, int index) {
+	this.idManager = idManager;
+	this.index = index;
+	this.id = idManager.getId(index);
+	this.movingPlayer = this.id.getMovingPlayer();
+	this.board = new Board(this.id);
+	this.history = HashStack.EMPTY;
+	this.drawn = idManager.isDrawn(index);
+	
+	if (idManager.isComplete(index)) {
+	    this.moves = null;
+	} else {
+	    this.calculateAllPossibleMoves();
+	}
+    }
+    
     /**
      * Player that would have to do the next move in this constellation,<br/>
      * e.g. in WHITE in the very first constellation
@@ -126,47 +220,69 @@ public class Constellation {
      */
     private final IdManager idManager;
     
-    // TODO Deal with checkmate situations, stalemate situations and special
-    // moves (e.g. rochade)
+    /**
+     * The player who is checkmated in this constellation, null if none.<br/>
+     * Set together with {@link #stalemate} once the moves are calculated: A
+     * constellation without legal moves is either a checkmate (the moving
+     * player is in check) or a stalemate.<br/>
+     */
     private Color checkmatePlayer;
     private boolean stalemate;
     
-    private final Board board;
+    /**
+     * Marks a constellation which is drawn by a threefold repetition or by the
+     * fifty-move rule. Its moves are discarded, so that the shuffling line
+     * ends here.
+     */
+    private boolean drawn;
     
     /**
-     * A constellation is considered complete once all possible moves have been
-     * executed.
+     * The hashes of the positions on the path to this constellation since the
+     * last capture or pawn move, see {@link HashStack}. Only the path through
+     * which the constellation has been created is known.
+     */
+    private final HashStack history;
+    
+    /**
+     * {@code true} if the constellation of the last {@link #getNextId()}
+     * occurs for the third time on the path.
      */
-    private boolean complete = false;
+    private boolean nextDrawn;
+    
+    private final Board board;
     
     /**
      * all IDs shall be saved within their constellations. An IdManager object
      * with pointers to the constellations with their respective IDs will be
-     * implemented in ChessMap
+     * implemented in ChessMap.<br/>
+     * The ID is a fixed-width {@link PositionKey} generated by
+     * {@link IdManager#generateId(pieces.ChessPiece[][], int)} and includes
+     * the game state of the board (see {@link #getState()}).
      */
-    private final String id;
+    private final PositionKey id;
     
     /**
+     * The index the idManager has assigned to this constellation, -1 until it
+     * has been added (see {@link IdManager#getIndex(PositionKey)}).<br/>
      * Every finished constellation shall know which constellations can follow
-     * out of it and out of which constellations itself can follow.<br/>
-     * The idManager is able to add these to the corresponding Hashtables
-     * {@link IdManager.#}<br/>
+     * out of it and out of which constellations itself can follow. These
+     * relationships are stored by the idManager using this index.<br/>
      */
-    private final ArrayList<String> followingConstellations = new ArrayList<String>(),
-	    formerConstellations = new ArrayList<String>();
+    private int index = -1;
     
     /**
      * The moves that still have to be executed in order to get all
-     * {@link #followingConstellations}.<br/>
-     * Will be set to null once all {@link #followingConstellations} are
+     * following constellations.<br/>
+     * Will be set to null once all following constellations are
      * generated.<br/>
+     * Moves are packed into 16 bits each (see {@link Move}).<br/>
      */
-    private ArrayList<Move> moves = new ArrayList<Move>();
+    private MoveList moves = new MoveList();
     
     /**
      * Executes the next logical move.<br/>
-     * The next logical move is defined as the first destination of the first
-     * Move object in the List moves.<br/>
+     * The next logical move is defined as the first move in the MoveList
+     * moves that has not been removed yet.<br/>
      * The resulting constellation will be instantiated with the copy
      * constructor<br/>
      * It will then be added to the IdManager and to the calling constellation's
@@ -181,30 +297,80 @@ public class Constellation {
 	    throw new Exception("Trying to execute a move that does not exist (List \"moves\" is empty)!");
 	}
 	
-	this.board.getBoardArray()[formerConstellation.moves.get(0).getNextDestination()[0]][formerConstellation.moves.get(0).getNextDestination()[1]] = this.board.getBoardArray()[formerConstellation.moves.get(0).getFromPos()[0]][formerConstellation.moves.get(0).getFromPos()[1]];
-	this.board.getBoardArray()[formerConstellation.moves.get(0).getFromPos()[0]][formerConstellation.moves.get(0).getFromPos()[1]] = null;
+	this.board.makeMove(formerConstellation.moves.getNext());
+    }
+    
+    /**
+     * Computes the Id of the constellation which follows out of the next
+     * logical move (see {@link #executeMove(Constellation)}) without creating
+     * it.<br/>
+     * The move is made on the board of this constellation in place and unmade
+     * right away, therefore only the returned key is allocated. If the
+     * idManager already contains a constellation with that Id, the new
+     * constellation does not have to be created at all: Only the relationship
+     * has to be added and the move has to be removed.<br/>
+     * 
+     * @return the Id of the following constellation
+     * @throws Exception
+     *         if there is no move left
+     */
+    public final PositionKey getNextId() throws Exception {
+	if (this.moves.isEmpty()) {
+	    throw new Exception("Trying to execute a move that does not exist (List \"moves\" is empty)!");
+	}
+	
+	long undo = this.board.makeMove(this.moves.getNext());
+	// This position can't occur as the next one, the moving player differs
+	this.nextDrawn = this.board.getHalfmoveClock() > 0 && Constellation.markRepetition(this.board, this.history) >= 2;
+	PositionKey nextId = this.board.getId();
+	this.board.unmakeMove(undo);
 	
+	return nextId;
     }
     
     /**
      * Calculates all possible moves of this constellation and adds them to the
-     * ArrayList moves.<br/>
+     * MoveList moves.<br/>
+     * The moves are generated from the bitboards of the board (see
+     * {@link Board#generateMoves(MoveList)}), the boardArray is not
+     * scanned.<br/>
+     * Only legal moves are generated, so a constellation without moves is
+     * marked as checkmate or stalemate. A constellation which is drawn by a
+     * repetition or by the fifty-move rule doesn't get any moves, unless it is
+     * a checkmate.<br/>
      */
     private final void calculateAllPossibleMoves() {
 	
 	assert (this.moves.isEmpty());
 	
-	for (int row = 0; row < this.board.getBoardArray().length; row++) {
-	    for (int col = 0; col < this.board.getBoardArray()[row].length; col++) {
-		if (this.board.getBoardArray()[row][col] != null) {
-		    this.moves.add(this.board.getBoardArray()[row][col].getPossibleMoves(this.board.getBoardArray(),
-											 row,
-											 col));
-		}
+	this.board.generateMoves(this.moves);
+	
+	if (this.moves.isEmpty()) {
+	    if (this.board.isInCheck()) {
+		this.checkmatePlayer = this.board.getMovingPlayer();
+	    } else {
+		this.stalemate = true;
 	    }
+	} else if (this.drawn || this.board.getHalfmoveClock() >= PositionKey.HALFMOVE_CLOCK_LIMIT) {
+	    this.drawn = true;
+	    this.moves.clear();
 	}
     }
     
+    /**
+     * Marks the board as a repetition if its position is contained in the
+     * history.
+     * 
+     * @return the number of former occurrences of the position
+     */
+    private static int markRepetition(Board board, HashStack history) {
+	int occurrences = history.count(board.getRepetitionHash());
+	if (occurrences > 0) {
+	    board.setRepetition(true);
+	}
+	return occurrences;
+    }
+    
     /**
      * Calls {@link #removeMove(int[], int[])}.
      * 
@@ -221,40 +387,69 @@ public class Constellation {
     }
     
     /**
-     * Removes the next logical move which should have been retrieved first.
-     * Therefore it has to be transferred to the method first.<br/>
+     * Calls {@link #removeMove(short)} if the next logical move leads from
+     * {@code fromPos} to {@code destination}.
      */
     public final void removeMove(int[] fromPos, int[] destination) {
 	if ((fromPos.length != 2) || (destination.length != 2)) {
 	    throw new IllegalArgumentException("Wrong parameters on removal of a move");
 	}
 	
-	if (moves.get(0).getFromPos()[0] == fromPos[0]
-	    && moves.get(0).getFromPos()[1] == fromPos[1]
-	    && moves.get(0).getNextDestination() == null) {
-	    
-	    this.moves.remove(0);
-	    
-	} else if (moves.get(0).getFromPos()[0] == fromPos[0]
-		   && moves.get(0).getFromPos()[1] == fromPos[1]
-		   && moves.get(0).getNextDestination()[0] == destination[0]
-		   && moves.get(0).getNextDestination()[1] == destination[1]) {
-	    
-	    this.moves.get(0).removeDestination(destination);
-	    
-	} else {
+	short move = this.getNextMove();
+	if (Move.getFromSquare(move) != (fromPos[0] << 3) + fromPos[1]
+	    || Move.getToSquare(move) != (destination[0] << 3) + destination[1]) {
 	    throw new IllegalArgumentException("Wrong parameters on removal of a move (first move is not the specified move)");
 	}
 	
+	this.removeMove(move);
+    }
+    
+    /**
+     * Removes the next logical move which should have been retrieved first.
+     * Therefore it has to be transferred to the method first.<br/>
+     */
+    public final void removeMove(short move) {
+	if (this.getNextMove() != move) {
+	    throw new IllegalArgumentException("Wrong parameters on removal of a move (first move is not the specified move)");
+	}
+	
+	this.moves.removeNext();
+    }
+    
+    /**
+     * @return {@code true} if there are moves left which have not been
+     *         executed yet
+     */
+    public final boolean hasNextMove() {
+	return this.moves != null && this.moves.hasNext();
+    }
+    
+    /**
+     * @return the next logical move (see {@link Move})
+     */
+    public final short getNextMove() {
+	if (!this.hasNextMove()) {
+	    throw new IllegalStateException("Trying to retrieve a move that does not exist (List \"moves\" is empty)!");
+	}
+	return this.moves.getNext();
     }
     
     /**
      * @return {@link #id}
      */
-    public String getId() {
+    public PositionKey getId() {
 	return this.id;
     }
     
+    /**
+     * @return the game state word of the constellation: the moving player,
+     *         the castling rights, the en passant file, the halfmove clock and
+     *         the repetition marker (see {@link PositionKey})
+     */
+    public int getState() {
+	return this.id.getState();
+    }
+    
     /**
      * @return {@link #movingPlayer}
      */
@@ -262,24 +457,94 @@ public class Constellation {
 	return this.movingPlayer;
     }
     
+    /**
+     * A constellation is considered complete once all possible moves have been
+     * executed.<br/>
+     * The flag is kept by the idManager (see
+     * {@link IdManager#isComplete(int)}), a constellation which has not been
+     * added yet is never complete.
+     */
     public boolean isComplete() {
-	return this.complete;
+	return this.index >= 0 && this.idManager.isComplete(this.index);
     }
     
     /**
-     * <b>Warning: Irreversible!</b>
+     * <b>Warning: Irreversible!</b><br/>
+     * The constellation must have been added to the idManager.
      */
     public void markAsComplete() {
 	this.moves = null;
-	this.complete = true;
+	this.idManager.markAsComplete(this.index);
     }
     
-    public ArrayList<String> getFollowingConstellations() {
-	return this.followingConstellations;
+    /**
+     * @return {@link #index}
+     */
+    public int getIndex() {
+	return this.index;
     }
     
-    public ArrayList<String> getFormerConstellations() {
-	return this.formerConstellations;
+    /**
+     * Only to be called by the idManager when the constellation is added.
+     */
+    public void setIndex(int index) {
+	if (this.index >= 0) {
+	    throw new IllegalStateException("The constellation has already been assigned index " + this.index);
+	}
+	this.index = index;
+    }
+    
+    /**
+     * @return the IDs of the following constellations, a read only view that
+     *         is available once the relationships have been frozen (see
+     *         {@link IdManager#freezeRelationships()})
+     */
+    public List<PositionKey> getFollowingConstellations() {
+	return this.idManager.getFollowingConstellations(this.index);
+    }
+    
+    /**
+     * @return the IDs of the former constellations, a read only view that is
+     *         available once the relationships have been frozen (see
+     *         {@link IdManager#freezeRelationships()})
+     */
+    public List<PositionKey> getFormerConstellations() {
+	return this.idManager.getFormerConstellations(this.index);
+    }
+    
+    /**
+     * @return {@link #checkmatePlayer}
+     */
+    public Color getCheckmatePlayer() {
+	return this.checkmatePlayer;
+    }
+    
+    /**
+     * @return {@link #stalemate}
+     */
+    public boolean isStalemate() {
+	return this.stalemate;
+    }
+    
+    /**
+     * @return {@link #drawn}
+     */
+    public boolean isDrawn() {
+	return this.drawn;
+    }
+    
+    /**
+     * @return {@link #nextDrawn}
+     */
+    public boolean isNextDrawn() {
+	return this.nextDrawn;
+    }
+    
+    /**
+     * @return {@link #history}
+     */
+    public HashStack getHistory() {
+	return this.history;
     }
     
     public Board getBoard() {
@@ -0,0 +1,96 @@
+package core;
+
+import util.Color;
+import util.PositionKey;
+import util.Symmetry;
+
+/**
+ * Compact, immutable summary of a constellation which is handed to the sink
+ * of a streaming build (see {@link ChessMap#setSink(java.util.function.Consumer)})
+ * instead of keeping the constellation with its board in memory.<br/>
+ * 
+ * @author Andy
+ */
+public final class ConstellationRecord {
+    
+    /**
+     * @param index
+     *        - the index of the constellation (see
+     *        {@link util.IdManager#getIndex(PositionKey)})
+     * @param id
+     *        - the ID of the constellation
+     * @param followingIndices
+     *        - the indices of the following constellations
+     * @param followingTransforms
+     *        - the symmetry transforms of the relationships to the following
+     *        constellations (see {@link util.Symmetry}), null if none of them
+     *        is transformed
+     * @param complete
+     *        - {@code true} if all moves of the constellation have been
+     *        executed, i.e. {@code followingIndices} contains all following
+     *        constellations
+     * @param drawn
+     *        - {@code true} if the constellation is drawn by a repetition or
+     *        by the fifty-move rule (see {@link Constellation#isDrawn()})
+     */
+    public ConstellationRecord(int index, PositionKey id, int[] followingIndices, byte[] followingTransforms, boolean complete, boolean drawn) {
+	this.index = index;
+	this.id = id;
+	this.followingIndices = followingIndices;
+	this.followingTransforms = followingTransforms;
+	this.complete = complete;
+	this.drawn = drawn;
+    }
+    
+    private final int index;
+    private final PositionKey id;
+    private final int[] followingIndices;
+    private final byte[] followingTransforms;
+    private final boolean complete;
+    
+    private final boolean drawn;
+    
+    public int getIndex() {
+	return this.index;
+    }
+    
+    public PositionKey getId() {
+	return this.id;
+    }
+    
+    public Color getMovingPlayer() {
+	return this.id.getMovingPlayer();
+    }
+    
+    /**
+     * @return the indices of the following constellations, must not be
+     *         modified
+     */
+    public int[] getFollowingIndices() {
+	return this.followingIndices;
+    }
+    
+    /**
+     * @return the symmetry transform of the relationship to the i-th following
+     *         constellation (see {@link util.Symmetry})
+     */
+    public int getFollowingTransform(int i) {
+	return this.followingTransforms == null ? Symmetry.IDENTITY : this.followingTransforms[i];
+    }
+    
+    public boolean isComplete() {
+	return this.complete;
+    }
+    
+    public boolean isDrawn() {
+	return this.drawn;
+    }
+    
+    /**
+     * @return {@code true} if the moving player has no moves at all or the
+     *         constellation is drawn, which ends the game
+     */
+    public boolean isTerminal() {
+	return this.complete && this.followingIndices.length == 0;
+    }
+}
@@ -0,0 +1,161 @@
+package core;
+
+import pieces.ChessPiece;
+import util.Color;
+import util.IdManager;
+
+/**
+ * Static evaluation of a board in centipawns (1/100 of a pawn), used by the
+ * {@link Search} at the leaves of its tree.<br/>
+ * <br/>
+ * <b>Enhanced description:</b><br/>
+ * The score is the sum of the material and of the piece-square values of all
+ * pieces, White's pieces count positive and Black's negative. Every type of
+ * piece (see {@link IdManager#PWN}) has a table which rewards good tiles,
+ * e.g. knights in the center or pawns close to their promotion. The tables
+ * are written from White's point of view with the 8th row first, Black's
+ * values are mirrored.<br/>
+ * The king has two tables: Sheltered in the corner while there are many
+ * pieces on the board, centralized once the material has been traded. Both
+ * values are blended by the phase of the game, i.e. by the remaining
+ * knights, bishops, rooks and queens.<br/>
+ * 
+ * @author Andy
+ */
+public abstract class Evaluation {
+    
+    /**
+     * The material value of a piece by its type (see {@link IdManager#PWN}).
+     */
+    public final static int[] VALUES = { 0, 100, 500, 320, 330, 900, 0 };
+    
+    /**
+     * The share of a piece in the phase of the game by its type, the phase is
+     * {@link #MAX_PHASE} as long as all pieces are on the board.
+     */
+    private final static int[] PHASES = { 0, 0, 2, 1, 1, 4, 0 };
+    
+    private final static int MAX_PHASE = 24;
+    
+    private final static int[] PAWN_TABLE = {
+	  0,   0,   0,   0,   0,   0,   0,   0,
+	 50,  50,  50,  50,  50,  50,  50,  50,
+	 10,  10,  20,  30,  30,  20,  10,  10,
+	  5,   5,  10,  25,  25,  10,   5,   5,
+	  0,   0,   0,  20,  20,   0,   0,   0,
+	  5,  -5, -10,   0,   0, -10,  -5,   5,
+	  5,  10,  10, -20, -20,  10,  10,   5,
+	  0,   0,   0,   0,   0,   0,   0,   0 };
+    
+    private final static int[] KNIGHT_TABLE = {
+	-50, -40, -30, -30, -30, -30, -40, -50,
+	-40, -20,   0,   0,   0,   0, -20, -40,
+	-30,   0,  10,  15,  15,  10,   0, -30,
+	-30,   5,  15,  20,  20,  15,   5, -30,
+	-30,   0,  15,  20,  20,  15,   0, -30,
+	-30,   5,  10,  15,  15,  10,   5, -30,
+	-40, -20,   0,   5,   5,   0, -20, -40,
+	-50, -40, -30, -30, -30, -30, -40, -50 };
+    
+    private final static int[] BISHOP_TABLE = {
+	-20, -10, -10, -10, -10, -10, -10, -20,
+	-10,   0,   0,   0,   0,   0,   0, -10,
+	-10,   0,   5,  10,  10,   5,   0, -10,
+	-10,   5,   5,  10,  10,   5,   5, -10,
+	-10,   0,  10,  10,  10,  10,   0, -10,
+	-10,  10,  10,  10,  10,  10,  10, -10,
+	-10,   5,   0,   0,   0,   0,   5, -10,
+	-20, -10, -10, -10, -10, -10, -10, -20 };
+    
+    private final static int[] ROOK_TABLE = {
+	  0,   0,   0,   0,   0,   0,   0,   0,
+	  5,  10,  10,  10,  10,  10,  10,   5,
+	 -5,   0,   0,   0,   0,   0,   0,  -5,
+	 -5,   0,   0,   0,   0,   0,   0,  -5,
+	 -5,   0,   0,   0,   0,   0,   0,  -5,
+	 -5,   0,   0,   0,   0,   0,   0,  -5,
+	 -5,   0,   0,   0,   0,   0,   0,  -5,
+	  0,   0,   0,   5,   5,   0,   0,   0 };
+    
+    private final static int[] QUEEN_TABLE = {
+	-20, -10, -10,  -5,  -5, -10, -10, -20,
+	-10,   0,   0,   0,   0,   0,   0, -10,
+	-10,   0,   5,   5,   5,   5,   0, -10,
+	 -5,   0,   5,   5,   5,   5,   0,  -5,
+	  0,   0,   5,   5,   5,   5,   0,  -5,
+	-10,   5,   5,   5,   5,   5,   0, -10,
+	-10,   0,   5,   0,   0,   0,   0, -10,
+	-20, -10, -10,  -5,  -5, -10, -10, -20 };
+    
+    private final static int[] KING_MIDDLEGAME_TABLE = {
+	-30, -40, -40, -50, -50, -40, -40, -30,
+	-30, -40, -40, -50, -50, -40, -40, -30,
+	-30, -40, -40, -50, -50, -40, -40, -30,
+	-30, -40, -40, -50, -50, -40, -40, -30,
+	-20, -30, -30, -40, -40, -30, -30, -20,
+	-10, -20, -20, -20, -20, -20, -20, -10,
+	 20,  20,   0,   0,   0,   0,  20,  20,
+	 20,  30,  10,   0,   0,  10,  30,  20 };
+    
+    private final static int[] KING_ENDGAME_TABLE = {
+	-50, -40, -30, -20, -20, -30, -40, -50,
+	-30, -20, -10,   0,   0, -10, -20, -30,
+	-30, -10,  20,  30,  30,  20, -10, -30,
+	-30, -10,  30,  40,  40,  30, -10, -30,
+	-30, -10,  30,  40,  40,  30, -10, -30,
+	-30, -10,  20,  30,  30,  20, -10, -30,
+	-30, -30,   0,   0,   0,   0, -30, -30,
+	-50, -30, -30, -30, -30, -30, -30, -50 };
+    
+    /**
+     * [code][square] = material and piece-square value of the piece (see
+     * {@link ChessPiece#getCode()}) on the tile, negative for Black. 0 for
+     * kings, see {@link #kingMiddlegameValues}.
+     */
+    private final static int[][] squareValues = new int[16][64];
+    private final static int[][] kingMiddlegameValues = new int[16][64];
+    private final static int[][] kingEndgameValues = new int[16][64];
+    
+    static {
+	int[][] tables = { null, PAWN_TABLE, ROOK_TABLE, KNIGHT_TABLE, BISHOP_TABLE, QUEEN_TABLE };
+	for (int square = 0; square < 64; square++) {
+	    // The tables start with the 8th row, the tiles with the 1st
+	    int whiteIndex = ((7 - (square >> 3)) << 3) + (square & 7);
+	    int blackIndex = square;
+	    for (int type = IdManager.PWN; type <= IdManager.QUN; type++) {
+		squareValues[type][square] = VALUES[type] + tables[type][whiteIndex];
+		squareValues[IdManager.BLACK_PIECE | type][square] = -VALUES[type] - tables[type][blackIndex];
+	    }
+	    kingMiddlegameValues[IdManager.KNG][square] = KING_MIDDLEGAME_TABLE[whiteIndex];
+	    kingMiddlegameValues[IdManager.BLACK_PIECE | IdManager.KNG][square] = -KING_MIDDLEGAME_TABLE[blackIndex];
+	    kingEndgameValues[IdManager.KNG][square] = KING_ENDGAME_TABLE[whiteIndex];
+	    kingEndgameValues[IdManager.BLACK_PIECE | IdManager.KNG][square] = -KING_ENDGAME_TABLE[blackIndex];
+	}
+    }
+    
+    /**
+     * @param board
+     *        - the board to evaluate
+     * @return the score of the board from the point of view of its moving
+     *         player, positive if the moving player is better
+     */
+    public static int evaluate(Board board) {
+	ChessPiece[][] boardArray = board.getBoardArray();
+	int score = 0;
+	int phase = 0;
+	int kingMiddlegame = 0, kingEndgame = 0;
+	
+	for (long occupancy = board.getBitBoard().getOccupancy(); occupancy != 0; occupancy &= occupancy - 1) {
+	    int square = Long.numberOfTrailingZeros(occupancy);
+	    int code = boardArray[square >> 3][square & 7].getCode();
+	    score += squareValues[code][square];
+	    phase += PHASES[code & 7];
+	    kingMiddlegame += kingMiddlegameValues[code][square];
+	    kingEndgame += kingEndgameValues[code][square];
+	}
+	
+	phase = Math.min(phase, MAX_PHASE);
+	score += (kingMiddlegame * phase + kingEndgame * (MAX_PHASE - phase)) / MAX_PHASE;
+	return board.getMovingPlayer() == Color.WHITE ? score : -score;
+    }
+}
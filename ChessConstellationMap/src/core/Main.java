@@ -1,9 +1,53 @@
 package core;
 
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import util.MetricsReporter;
+
+/**
+ * Builds a {@link ChessMap} and prints the number of constellations per ply.
+ * <br/>
+ * Usage: {@code Main [maxDepth] [maxConstellations] [threads] [file]}<br/>
+ * The map is written to the file if one is given. The progress is printed
+ * every {@link #REPORT_SECONDS} seconds and published via JMX (see
+ * {@link util.BuildMetricsMXBean}).<br/>
+ * 
+ * @author Andy
+ */
 public class Main {
     
-    public static void main(String[] args) {
-	// TODO Auto-generated method stub
+    /**
+     * The seconds between two reports of the metrics while the map is built.
+     */
+    private final static int REPORT_SECONDS = 10;
+    
+    public static void main(String[] args) throws Exception {
+	int maxDepth = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+	int maxConstellations = args.length > 1 ? Integer.parseInt(args[1]) : 10000000;
+	int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+	
+	ChessMap chessMap = new ChessMap(maxDepth, maxConstellations, new ForkJoinPool(threads));
+	chessMap.getMetrics().register("main");
+	
+	long start = System.nanoTime();
+	MetricsReporter reporter = new MetricsReporter(chessMap.getMetrics(), System.out, REPORT_SECONDS, TimeUnit.SECONDS);
+	try {
+	    chessMap.build();
+	} finally {
+	    reporter.close();
+	}
+	long millis = (System.nanoTime() - start) / 1000000;
+	
+	for (int ply = 0; ply < chessMap.getConstellationsPerPly().size(); ply++) {
+	    System.out.println("ply " + ply + ": " + chessMap.getConstellationsPerPly().get(ply) + " new constellations");
+	}
+	System.out.println(chessMap.getConstellationCount() + " constellations in " + millis + " ms (" + threads + " threads)");
 	
+	if (args.length > 3) {
+	    chessMap.save(Paths.get(args[3]));
+	    System.out.println("saved to " + args[3]);
+	}
     }
 }
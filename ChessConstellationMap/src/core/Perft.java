@@ -0,0 +1,179 @@
+package core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import util.Move;
+import util.MoveList;
+
+/**
+ * Counts the leaf nodes of the move tree of a board up to a fixed depth
+ * (perft).<br/>
+ * <br/>
+ * <b>Enhanced description:</b><br/>
+ * The published node counts of a few test positions are known exactly, so
+ * perft validates the move generator (see {@link BitBoard}) including
+ * castling, en passant and promotions. It also measures its speed in nodes
+ * per second.<br/>
+ * The moves are made and unmade on one board in place (see
+ * {@link Board#makeMove(short)}), one {@link MoveList} per ply is reused,
+ * therefore counting doesn't allocate anything.<br/>
+ * Usage: {@code Perft [depth] [fen|suite] [divide]}<br/>
+ * "suite" checks all {@link #POSITIONS} up to the depth and fails on the
+ * first wrong count, "divide" prints the count of every root move.<br/>
+ * 
+ * @author Andy
+ */
+public class Perft {
+    
+    /**
+     * @param board
+     *        - the board to count the moves of, it is changed while counting
+     *        and restored afterwards
+     */
+    public Perft(Board board) {
+	this.board = board;
+    }
+    
+    /**
+     * The test positions of the suite in FEN, see {@link #EXPECTED_NODES}.
+     */
+    public static final String[] POSITIONS = {
+	"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+	// "Kiwipete": castling, en passant, promotions and pins
+	"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+	"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+	"r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+	"rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8" };
+    
+    /**
+     * The published leaf counts of the {@link #POSITIONS} for depth 1, 2, ...
+     */
+    public static final long[][] EXPECTED_NODES = {
+	{ 20L, 400L, 8902L, 197281L, 4865609L, 119060324L },
+	{ 48L, 2039L, 97862L, 4085603L, 193690690L },
+	{ 14L, 191L, 2812L, 43238L, 674624L, 11030083L },
+	{ 6L, 264L, 9467L, 422333L, 15833292L },
+	{ 44L, 1486L, 62379L, 2103487L, 89941194L } };
+    
+    private final Board board;
+    
+    /**
+     * One list of moves per remaining depth, grown on demand.
+     */
+    private MoveList[] moveLists = new MoveList[0];
+    
+    /**
+     * @param depth
+     *        - the number of plies to look ahead
+     * @return the number of leaf nodes at the given depth
+     */
+    public long perft(int depth) {
+	this.ensureMoveLists(depth);
+	return this.count(depth);
+    }
+    
+    /**
+     * Counts the leaf nodes below every root move separately, which allows to
+     * find the move a wrong count originates from.
+     * 
+     * @param depth
+     *        - the number of plies to look ahead, at least 1
+     * @return the number of leaf nodes per root move in coordinate notation
+     *         (see {@link Move#toString(short)}), in the order of generation
+     */
+    public Map<String, Long> divide(int depth) {
+	if (depth < 1) {
+	    throw new IllegalArgumentException("The depth of divide has to be at least 1, but is " + depth);
+	}
+	this.ensureMoveLists(depth);
+	
+	MoveList moves = new MoveList();
+	this.board.generateMoves(moves);
+	
+	Map<String, Long> nodes = new LinkedHashMap<String, Long>();
+	for (int index = 0; index < moves.size(); index++) {
+	    long undo = this.board.makeMove(moves.get(index));
+	    nodes.put(Move.toString(moves.get(index)), this.count(depth - 1));
+	    this.board.unmakeMove(undo);
+	}
+	return nodes;
+    }
+    
+    private void ensureMoveLists(int depth) {
+	if (this.moveLists.length < depth) {
+	    this.moveLists = new MoveList[depth];
+	    for (int index = 0; index < depth; index++) {
+		this.moveLists[index] = new MoveList();
+	    }
+	}
+    }
+    
+    private long count(int depth) {
+	if (depth == 0) {
+	    return 1L;
+	}
+	
+	MoveList moves = this.moveLists[depth - 1];
+	moves.clear();
+	this.board.generateMoves(moves);
+	
+	// The moves of the last ply don't have to be made to be counted
+	if (depth == 1) {
+	    return moves.size();
+	}
+	
+	long nodes = 0L;
+	for (int index = 0; index < moves.size(); index++) {
+	    long undo = this.board.makeMove(moves.get(index));
+	    nodes += this.count(depth - 1);
+	    this.board.unmakeMove(undo);
+	}
+	return nodes;
+    }
+    
+    public static void main(String[] args) {
+	int depth = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+	String position = args.length > 1 ? args[1] : POSITIONS[0];
+	boolean divide = args.length > 2 && args[2].equals("divide");
+	
+	if (position.equals("suite")) {
+	    for (int index = 0; index < POSITIONS.length; index++) {
+		for (int ply = 1; ply <= Math.min(depth, EXPECTED_NODES[index].length); ply++) {
+		    long nodes = Perft.run(POSITIONS[index], ply);
+		    if (nodes != EXPECTED_NODES[index][ply - 1]) {
+			System.out.println("FAILED: expected " + EXPECTED_NODES[index][ply - 1] + " nodes");
+			System.exit(1);
+		    }
+		}
+	    }
+	    System.out.println("all counts match");
+	} else if (divide) {
+	    Map<String, Long> nodes = new Perft(new Board(position)).divide(depth);
+	    long total = 0L;
+	    for (Map.Entry<String, Long> entry : nodes.entrySet()) {
+		System.out.println(entry.getKey() + ": " + entry.getValue());
+		total += entry.getValue();
+	    }
+	    System.out.println(nodes.size() + " moves, " + total + " nodes");
+	} else {
+	    Perft.run(position, depth);
+	}
+    }
+    
+    /**
+     * Runs perft on a position and prints the count, the time and the nodes
+     * per second.
+     */
+    private static long run(String fen, int depth) {
+	Perft perft = new Perft(new Board(fen));
+	
+	long start = System.nanoTime();
+	long nodes = perft.perft(depth);
+	long nanos = Math.max(System.nanoTime() - start, 1L);
+	
+	System.out.println(fen + " depth " + depth + ": " + nodes + " nodes in " + (nanos / 1000000) + " ms ("
+			   + (nodes * 1000000000L / nanos) + " nps)");
+	return nodes;
+    }
+}
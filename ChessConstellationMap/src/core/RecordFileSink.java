@@ -0,0 +1,80 @@
+package core;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Sink of a streaming build (see {@link ChessMap#setSink(Consumer)}) which
+ * appends every record to a file.<br/>
+ * Layout of a record (big endian): index (int), the four longs of the ID, its
+ * hash (long) and state (int), the flags (byte, bit 0 = complete, bit 1 =
+ * drawn), the number of following constellations (int), their indices (int
+ * each) and the symmetry transforms of the relationships (byte each).<br/>
+ * The records are written in the order in which they are finished, which is
+ * not the order of their indices.<br/>
+ * 
+ * @author Andy
+ */
+public class RecordFileSink implements Consumer<ConstellationRecord>, Closeable {
+    
+    /**
+     * @param path
+     *        - the file, an existing file is overwritten
+     * @throws IOException
+     *         if the file can't be created
+     */
+    public RecordFileSink(Path path) throws IOException {
+	this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+    }
+    
+    private final DataOutputStream out;
+    
+    private long recordCount = 0;
+    
+    /**
+     * Writes the record, may be called by several threads at once.
+     * 
+     * @throws UncheckedIOException
+     *         if the record can't be written
+     */
+    @Override
+    public synchronized void accept(ConstellationRecord record) throws UncheckedIOException {
+	try {
+	    this.out.writeInt(record.getIndex());
+	    for (int i = 0; i < 4; i++) {
+		this.out.writeLong(record.getId().getSquares(i));
+	    }
+	    this.out.writeLong(record.getId().getHash());
+	    this.out.writeInt(record.getId().getState());
+	    this.out.writeByte((record.isComplete() ? 1 : 0) | (record.isDrawn() ? 2 : 0));
+	    this.out.writeInt(record.getFollowingIndices().length);
+	    for (int followingIndex : record.getFollowingIndices()) {
+		this.out.writeInt(followingIndex);
+	    }
+	    for (int i = 0; i < record.getFollowingIndices().length; i++) {
+		this.out.writeByte(record.getFollowingTransform(i));
+	    }
+	    this.recordCount++;
+	} catch (IOException e) {
+	    throw new UncheckedIOException(e);
+	}
+    }
+    
+    /**
+     * @return the number of records written so far
+     */
+    public synchronized long getRecordCount() {
+	return this.recordCount;
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+	this.out.close();
+    }
+}
@@ -0,0 +1,235 @@
+package core;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+import util.IdManager;
+import util.PositionKey;
+
+/**
+ * Solves a built map backwards (retrograde analysis): Every constellation is
+ * classified as won, lost or drawn for its moving player, won and lost
+ * constellations additionally get their distance to mate in plies.<br/>
+ * <br/>
+ * <b>Enhanced description:</b><br/>
+ * The analysis starts at the checkmates (lost with distance 0, see
+ * {@link Board#isInCheck()}) and walks the relationships backwards (see
+ * {@link IdManager#getFormerIndex(int, int)}) in waves: Wave d contains all
+ * constellations which have been solved with distance d.<br/>
+ * <ul>
+ * <li>A former constellation of a lost one is won with distance d + 1, since
+ * the waves are processed in order that is the shortest mate.</li>
+ * <li>Every constellation has a counter of its following constellations which
+ * are not won yet. A former constellation of a won one decrements it, once
+ * it reaches 0 all moves lead into won constellations of the opponent, so
+ * the constellation is lost with distance d + 1 (the longest defence).</li>
+ * </ul>
+ * Every constellation is solved at most once and every relationship is
+ * visited at most once, so the analysis is linear in the size of the map.
+ * The constellations of a wave are processed in parallel, a constellation is
+ * solved by a compare-and-set, therefore it is added to exactly one wave.
+ * All waves are stored in one array of the size of the map.<br/>
+ * Constellations which haven't been expanded completely can only be won,
+ * they are {@link #UNKNOWN} otherwise, just like all unsolved constellations
+ * from which they can be reached. All other unsolved constellations are
+ * drawn (e.g. stalemates, repetitions or endless cycles). Repetitions and the
+ * fifty-move rule are applied as far as the map has marked drawn
+ * constellations (see {@link IdManager#isDrawn(int)}).<br/>
+ * The map has to keep its relationships, i.e. it must have been built by
+ * {@link ChessMap#build()} without a sink or read from a file.<br/>
+ * 
+ * @author Andy
+ */
+public class RetrogradeSolver {
+    
+    public final static int UNKNOWN = 0, WIN = 1, LOSS = 2, DRAW = 3;
+    
+    /**
+     * @param idManager
+     *        - the idManager of a built map
+     * @param pool
+     *        - the pool whose threads process the waves
+     */
+    public RetrogradeSolver(IdManager idManager, ForkJoinPool pool) {
+	this.idManager = idManager;
+	this.pool = pool;
+	int count = idManager.getConstellationCount();
+	this.states = new AtomicIntegerArray(count);
+	this.remainingMoves = new AtomicIntegerArray(count);
+	this.waves = new int[count];
+    }
+    
+    private final static int RESULT_MASK = 0x3, DISTANCE_SHIFT = 2;
+    
+    private final IdManager idManager;
+    
+    private final ForkJoinPool pool;
+    
+    /**
+     * The result of every constellation by its index, 0 while it is unsolved,
+     * {@code distance << DISTANCE_SHIFT | result} otherwise.
+     */
+    private final AtomicIntegerArray states;
+    
+    /**
+     * The number of following constellations which haven't been won yet by
+     * the index of a constellation. Constellations which aren't complete get
+     * {@link Integer#MAX_VALUE}, so that they can never be lost.
+     */
+    private final AtomicIntegerArray remainingMoves;
+    
+    /**
+     * The indices of all solved constellations in the order of their waves.
+     */
+    private final int[] waves;
+    
+    /**
+     * The number of valid entries in {@link #waves}.
+     */
+    private final AtomicInteger solvedCount = new AtomicInteger();
+    
+    private int waveCount = 0;
+    
+    private boolean solved = false;
+    
+    /**
+     * Solves all constellations of the map.
+     */
+    public void solve() {
+	if (this.solved) {
+	    throw new IllegalStateException("The map has already been solved!");
+	}
+	this.solved = true;
+	int count = this.waves.length;
+	
+	// Initialize the counters and find the checkmates
+	this.pool.invoke(ForkJoinTask.adapt(() -> IntStream.range(0, count).parallel().forEach(index -> {
+	    int followingCount = this.idManager.getFollowingCount(index);
+	    boolean complete = this.idManager.isComplete(index);
+	    this.remainingMoves.set(index, complete ? followingCount : Integer.MAX_VALUE);
+	    if (complete && followingCount == 0 && !this.idManager.isDrawn(index) && new Board(this.idManager.getId(index)).isInCheck()) {
+		this.resolve(index, LOSS, 0);
+	    }
+	})));
+	
+	int waveStart = 0;
+	for (int distance = 0; waveStart < this.solvedCount.get(); distance++) {
+	    int currentWaveStart = waveStart;
+	    int waveEnd = this.solvedCount.get();
+	    int nextDistance = distance + 1;
+	    this.pool.invoke(ForkJoinTask.adapt(() -> IntStream.range(currentWaveStart, waveEnd).parallel().forEach(i -> {
+		this.propagate(this.waves[i], nextDistance);
+	    })));
+	    waveStart = waveEnd;
+	    this.waveCount++;
+	}
+	
+	// An unsolved constellation which can reach an incomplete one might
+	// still be won, everything else can't be forced by either player
+	boolean[] undecided = new boolean[count];
+	int[] stack = new int[count];
+	int stackSize = 0;
+	for (int index = 0; index < count; index++) {
+	    if (this.states.get(index) == 0 && !this.idManager.isComplete(index)) {
+		undecided[index] = true;
+		stack[stackSize++] = index;
+	    }
+	}
+	while (stackSize > 0) {
+	    int index = stack[--stackSize];
+	    for (int i = 0; i < this.idManager.getFormerCount(index); i++) {
+		int formerIndex = this.idManager.getFormerIndex(index, i);
+		if (this.states.get(formerIndex) == 0 && !undecided[formerIndex]) {
+		    undecided[formerIndex] = true;
+		    stack[stackSize++] = formerIndex;
+		}
+	    }
+	}
+	for (int index = 0; index < count; index++) {
+	    if (this.states.get(index) == 0 && !undecided[index]) {
+		this.states.set(index, DRAW);
+	    }
+	}
+    }
+    
+    /**
+     * Solves the former constellations of a solved constellation as far as
+     * possible.
+     */
+    private void propagate(int index, int nextDistance) {
+	boolean lost = (this.states.get(index) & RESULT_MASK) == LOSS;
+	int formerCount = this.idManager.getFormerCount(index);
+	
+	for (int i = 0; i < formerCount; i++) {
+	    int formerIndex = this.idManager.getFormerIndex(index, i);
+	    if (this.states.get(formerIndex) != 0) {
+		continue;
+	    }
+	    if (lost) {
+		this.resolve(formerIndex, WIN, nextDistance);
+	    } else if (this.remainingMoves.decrementAndGet(formerIndex) == 0) {
+		this.resolve(formerIndex, LOSS, nextDistance);
+	    }
+	}
+    }
+    
+    /**
+     * Sets the result of an unsolved constellation and adds it to the current
+     * wave. Does nothing if another thread has solved it first.
+     */
+    private void resolve(int index, int result, int distance) {
+	if (this.states.compareAndSet(index, 0, (distance << DISTANCE_SHIFT) | result)) {
+	    this.waves[this.solvedCount.getAndIncrement()] = index;
+	}
+    }
+    
+    /**
+     * @param index
+     *        - the index of a constellation
+     * @return {@link #WIN}, {@link #LOSS} or {@link #DRAW} for the moving
+     *         player, {@link #UNKNOWN} if the map is not deep enough
+     */
+    public int getResult(int index) {
+	return this.states.get(index) & RESULT_MASK;
+    }
+    
+    /**
+     * @param id
+     *        - the Id of a constellation of the map
+     * @return see {@link #getResult(int)}, {@link #UNKNOWN} if the map doesn't
+     *         contain the constellation
+     */
+    public int getResult(PositionKey id) {
+	int index = this.idManager.getIndex(id);
+	return index < 0 ? UNKNOWN : this.getResult(index);
+    }
+    
+    /**
+     * @param index
+     *        - the index of a constellation
+     * @return the number of plies until the moving player mates (won) or is
+     *         mated (lost) if both play perfectly, -1 if the constellation is
+     *         neither won nor lost
+     */
+    public int getDistanceToMate(int index) {
+	int result = this.getResult(index);
+	return result == WIN || result == LOSS ? this.states.get(index) >>> DISTANCE_SHIFT : -1;
+    }
+    
+    /**
+     * @return the number of constellations which have been won or lost
+     */
+    public int getSolvedCount() {
+	return this.solvedCount.get();
+    }
+    
+    /**
+     * @return the number of waves, i.e. the longest distance to mate + 1
+     */
+    public int getWaveCount() {
+	return this.waveCount;
+    }
+}
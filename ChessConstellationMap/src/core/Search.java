@@ -0,0 +1,591 @@
+package core;
+
+import java.io.PrintStream;
+
+import pieces.ChessPiece;
+import util.IdManager;
+import util.Move;
+import util.MoveList;
+import util.PositionKey;
+import util.TranspositionTable;
+
+/**
+ * Searches the best move of a board with a principal variation alpha-beta
+ * search.<br/>
+ * <br/>
+ * <b>Enhanced description:</b><br/>
+ * The search deepens iteratively, one ply per iteration, until the maximum
+ * depth or the time is reached. The best move of the last completed iteration
+ * is returned, every iteration starts with the moves the former iteration has
+ * found best (see {@link TranspositionTable}).<br/>
+ * Only the first move of a constellation is searched with the full window,
+ * all other moves are searched with a null window first and only searched
+ * again if they turn out to be better (principal variation search). The
+ * moves are ordered so that the best move tends to come first:<br/>
+ * <ul>
+ * <li>the best move of the transposition table</li>
+ * <li>captures, the most valuable victim by the least valuable attacker
+ * first, and promotions</li>
+ * <li>the two quiet moves which have caused the last cutoffs at the same ply
+ * (killer moves)</li>
+ * <li>the other quiet moves by their history, i.e. by how often they have
+ * caused cutoffs</li>
+ * </ul>
+ * At the leaves the captures are searched until the board is quiet
+ * (quiescence search), the board is then scored by the {@link Evaluation}.
+ * Checks extend the search by one ply. A repetition on the path of the
+ * search and the fifty-move rule score as a draw.<br/>
+ * Like {@link Perft} the search makes and unmakes the moves on one board in
+ * place and reuses one {@link MoveList} per ply, therefore it doesn't
+ * allocate while it searches. The transposition table is keyed by the
+ * position without the halfmove clock (see {@link Board#getRepetitionHash()}),
+ * so that transpositions with different clocks share their entries.<br/>
+ * Usage: {@code Search [fen|suite] [milliseconds] [depth]}<br/>
+ * 
+ * @author Andy
+ */
+public class Search {
+    
+    /**
+     * The score of a checkmate at the root, a checkmate in n plies scores
+     * {@code MATE - n}.
+     */
+    public final static int MATE = 30000;
+    
+    /**
+     * Larger than every score.
+     */
+    private final static int INFINITY = 32000;
+    
+    /**
+     * The deepest ply the search can reach, including the extensions and the
+     * quiescence search.
+     */
+    public final static int MAX_PLY = 128;
+    
+    /**
+     * The nodes between two checks of the time.
+     */
+    private final static int TIME_CHECK_INTERVAL = 2048;
+    
+    private final static int TABLE_MOVE_SCORE = 1000000, CAPTURE_SCORE = 100000, KILLER_SCORE = 90000, HISTORY_LIMIT = 80000;
+    
+    /**
+     * @param board
+     *        - the board to search, it is changed while searching and
+     *        restored afterwards
+     * @param table
+     *        - the transposition table, may be shared by several searches
+     */
+    public Search(Board board, TranspositionTable table) {
+	this.board = board;
+	this.table = table;
+	for (int ply = 0; ply < MAX_PLY; ply++) {
+	    this.moveLists[ply] = new MoveList();
+	}
+    }
+    
+    /**
+     * Searches a copy of the board of a constellation, the constellation is
+     * not changed.
+     * 
+     * @param constellation
+     *        - the constellation to search
+     * @param table
+     *        - the transposition table, may be shared by several searches
+     */
+    public Search(Constellation constellation, TranspositionTable table) {
+	this(new Board(constellation.getBoard()), table);
+    }
+    
+    private final Board board;
+    
+    private final TranspositionTable table;
+    
+    private final MoveList[] moveLists = new MoveList[MAX_PLY];
+    
+    /**
+     * The ordering score of every move by the ply and the index of the move.
+     */
+    private final int[][] moveScores = new int[MAX_PLY][256];
+    
+    /**
+     * The hashes of the positions on the path of the search by their ply.
+     */
+    private final long[] pathHashes = new long[MAX_PLY];
+    
+    /**
+     * The two last quiet moves which have caused a cutoff by the ply.
+     */
+    private final short[][] killers = new short[MAX_PLY][2];
+    
+    /**
+     * The cutoffs caused by a quiet move by its from- and its to-tile,
+     * weighted by the depth.
+     */
+    private final int[][] history = new int[64][64];
+    
+    /**
+     * Prints a line per completed iteration, null if the search is silent.
+     */
+    private PrintStream output = null;
+    
+    private long nodes;
+    private long startNanos, endNanos, deadlineNanos;
+    private boolean aborted;
+    private int completedDepth;
+    private short rootBestMove;
+    private short bestMove;
+    private int bestScore;
+    
+    /**
+     * @param output
+     *        - receives the depth, the score, the nodes, the nodes per second
+     *        and the principal variation of every completed iteration, null to
+     *        search silently
+     */
+    public void setOutput(PrintStream output) {
+	this.output = output;
+    }
+    
+    /**
+     * Searches the best move.
+     * 
+     * @param maxDepth
+     *        - the number of plies to look ahead at most
+     * @param millis
+     *        - the time after which the search stops, the first iteration is
+     *        always completed
+     * @return the best move (see {@link Move}), 0 if the moving player has no
+     *         moves
+     */
+    public short search(int maxDepth, long millis) {
+	this.table.newSearch();
+	for (short[] plyKillers : this.killers) {
+	    plyKillers[0] = plyKillers[1] = 0;
+	}
+	for (int[] fromHistory : this.history) {
+	    for (int to = 0; to < 64; to++) {
+		fromHistory[to] >>= 1;
+	    }
+	}
+	this.nodes = 0;
+	this.aborted = false;
+	this.completedDepth = 0;
+	this.bestMove = 0;
+	this.bestScore = 0;
+	this.startNanos = System.nanoTime();
+	this.deadlineNanos = this.startNanos + millis * 1000000L;
+	
+	for (int depth = 1; depth <= Math.min(maxDepth, MAX_PLY - 1); depth++) {
+	    this.rootBestMove = 0;
+	    int score = this.search(depth, 0, -INFINITY, INFINITY);
+	    if (this.aborted) {
+		break;
+	    }
+	    this.completedDepth = depth;
+	    this.bestMove = this.rootBestMove;
+	    this.bestScore = score;
+	    if (this.output != null) {
+		this.endNanos = System.nanoTime();
+		this.output.println("depth " + depth + " score " + score + " nodes " + this.nodes + " nps " + this.getNodesPerSecond()
+				    + " pv " + this.getPrincipalVariation());
+	    }
+	    // A shorter mate can't be found by searching deeper
+	    if (this.bestMove == 0 || Math.abs(score) >= MATE - MAX_PLY) {
+		break;
+	    }
+	}
+	this.endNanos = System.nanoTime();
+	return this.bestMove;
+    }
+    
+    private int search(int depth, int ply, int alpha, int beta) {
+	boolean inCheck = this.board.isInCheck();
+	if (inCheck) {
+	    depth++;
+	}
+	if (depth <= 0 || ply >= MAX_PLY - 1) {
+	    return this.quiesce(ply, alpha, beta);
+	}
+	if (this.countNode()) {
+	    return 0;
+	}
+	
+	long hash = this.board.getRepetitionHash();
+	this.pathHashes[ply] = hash;
+	if (ply > 0 && this.isDraw(ply)) {
+	    return 0;
+	}
+	
+	short tableMove = 0;
+	long entry = this.table.probe(hash);
+	if (entry != 0) {
+	    tableMove = TranspositionTable.getMove(entry);
+	    if (ply > 0 && TranspositionTable.getDepth(entry) >= depth) {
+		int score = Search.fromTable(TranspositionTable.getScore(entry), ply);
+		int bound = TranspositionTable.getBound(entry);
+		if (bound == TranspositionTable.EXACT
+		    || (bound == TranspositionTable.LOWER && score >= beta)
+		    || (bound == TranspositionTable.UPPER && score <= alpha)) {
+		    return score;
+		}
+	    }
+	}
+	
+	MoveList moves = this.moveLists[ply];
+	moves.clear();
+	this.board.generateMoves(moves);
+	if (moves.isEmpty()) {
+	    return inCheck ? -MATE + ply : 0;
+	}
+	this.scoreMoves(ply, tableMove, false);
+	
+	int originalAlpha = alpha;
+	int best = -INFINITY;
+	short bestMove = 0;
+	for (int index = 0; index < moves.size(); index++) {
+	    short move = this.pickMove(ply, index, moves.size());
+	    boolean quiet = !this.isTactical(move);
+	    
+	    long undo = this.board.makeMove(move);
+	    int score;
+	    if (index == 0) {
+		score = -this.search(depth - 1, ply + 1, -beta, -alpha);
+	    } else {
+		score = -this.search(depth - 1, ply + 1, -alpha - 1, -alpha);
+		if (score > alpha && score < beta) {
+		    score = -this.search(depth - 1, ply + 1, -beta, -alpha);
+		}
+	    }
+	    this.board.unmakeMove(undo);
+	    if (this.aborted) {
+		return 0;
+	    }
+	    
+	    if (score > best) {
+		best = score;
+		bestMove = move;
+		if (ply == 0) {
+		    this.rootBestMove = move;
+		}
+		if (score > alpha) {
+		    alpha = score;
+		    if (alpha >= beta) {
+			if (quiet) {
+			    this.addCutoff(move, ply, depth);
+			}
+			break;
+		    }
+		}
+	    }
+	}
+	
+	int bound = best >= beta ? TranspositionTable.LOWER : best > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+	this.table.store(hash, Math.min(depth, TranspositionTable.MAX_DEPTH), bound, Search.toTable(best, ply), bestMove);
+	return best;
+    }
+    
+    /**
+     * Searches the captures and promotions until the board is quiet. The
+     * moving player may always stand pat with the evaluation of the board,
+     * unless it is in check: Then all moves are searched.
+     */
+    private int quiesce(int ply, int alpha, int beta) {
+	if (this.countNode()) {
+	    return 0;
+	}
+	// The move lists end here, even in check
+	if (ply >= MAX_PLY - 1) {
+	    return Evaluation.evaluate(this.board);
+	}
+	boolean inCheck = this.board.isInCheck();
+	int best = -MATE + ply;
+	if (!inCheck) {
+	    best = Evaluation.evaluate(this.board);
+	    if (best >= beta) {
+		return best;
+	    }
+	    alpha = Math.max(alpha, best);
+	}
+	
+	MoveList moves = this.moveLists[ply];
+	moves.clear();
+	this.board.generateMoves(moves);
+	if (moves.isEmpty()) {
+	    return inCheck ? -MATE + ply : 0;
+	}
+	int tacticalCount = this.scoreMoves(ply, (short) 0, !inCheck);
+	
+	for (int index = 0; index < tacticalCount; index++) {
+	    short move = this.pickMove(ply, index, tacticalCount);
+	    long undo = this.board.makeMove(move);
+	    int score = -this.quiesce(ply + 1, -beta, -alpha);
+	    this.board.unmakeMove(undo);
+	    if (this.aborted) {
+		return 0;
+	    }
+	    
+	    if (score > best) {
+		best = score;
+		if (score > alpha) {
+		    alpha = score;
+		    if (alpha >= beta) {
+			break;
+		    }
+		}
+	    }
+	}
+	return best;
+    }
+    
+    /**
+     * Counts a node and checks the time every {@link #TIME_CHECK_INTERVAL}
+     * nodes once the first iteration has been completed.
+     * 
+     * @return true if the search has to stop
+     */
+    private boolean countNode() {
+	this.nodes++;
+	if ((this.nodes % TIME_CHECK_INTERVAL) == 0 && this.completedDepth > 0 && System.nanoTime() > this.deadlineNanos) {
+	    this.aborted = true;
+	}
+	return this.aborted;
+    }
+    
+    /**
+     * @return true if the position at the ply is drawn by the fifty-move rule
+     *         or occurs for the second time since the root
+     */
+    private boolean isDraw(int ply) {
+	int halfmoveClock = this.board.getHalfmoveClock();
+	if (halfmoveClock >= PositionKey.HALFMOVE_CLOCK_LIMIT) {
+	    return true;
+	}
+	for (int former = ply - 2; former >= Math.max(ply - halfmoveClock, 0); former -= 2) {
+	    if (this.pathHashes[former] == this.pathHashes[ply]) {
+		return true;
+	    }
+	}
+	return false;
+    }
+    
+    /**
+     * @return true if the move captures a piece or promotes a pawn
+     */
+    private boolean isTactical(short move) {
+	int toSquare = Move.getToSquare(move);
+	return Move.getFlag(move) == Move.PROMOTION
+	       || Move.getFlag(move) == Move.EN_PASSANT
+	       || this.board.getBoardArray()[toSquare >> 3][toSquare & 7] != null;
+    }
+    
+    /**
+     * Computes the ordering score of every move of the ply.
+     * 
+     * @param tacticalOnly
+     *        - true to move the captures and promotions to the front and to
+     *        count them, the other moves are not ordered
+     * @return the number of captures and promotions if tacticalOnly is set,
+     *         the number of moves otherwise
+     */
+    private int scoreMoves(int ply, short tableMove, boolean tacticalOnly) {
+	MoveList moves = this.moveLists[ply];
+	int[] scores = this.moveScores[ply];
+	int tacticalCount = 0;
+	for (int index = 0; index < moves.size(); index++) {
+	    short move = moves.get(index);
+	    int fromSquare = Move.getFromSquare(move), toSquare = Move.getToSquare(move);
+	    int score;
+	    if (move == tableMove) {
+		score = TABLE_MOVE_SCORE;
+	    } else if (this.isTactical(move)) {
+		int attacker = this.getType(fromSquare);
+		int victim = Move.getFlag(move) == Move.EN_PASSANT ? IdManager.PWN : this.getType(toSquare);
+		score = CAPTURE_SCORE + Evaluation.VALUES[victim] * 16 - Evaluation.VALUES[attacker] / 16;
+		if (Move.getFlag(move) == Move.PROMOTION) {
+		    score += Evaluation.VALUES[Move.getPromotionType(move)];
+		}
+	    } else if (tacticalOnly) {
+		continue;
+	    } else if (move == this.killers[ply][0]) {
+		score = KILLER_SCORE + 1;
+	    } else if (move == this.killers[ply][1]) {
+		score = KILLER_SCORE;
+	    } else {
+		score = this.history[fromSquare][toSquare];
+	    }
+	    if (tacticalOnly) {
+		// Packs the captures and promotions in front of the quiet moves
+		moves.swap(index, tacticalCount);
+		scores[tacticalCount++] = score;
+	    } else {
+		scores[index] = score;
+	    }
+	}
+	return tacticalOnly ? tacticalCount : moves.size();
+    }
+    
+    /**
+     * Moves the move with the highest ordering score among the moves from the
+     * index to the end of the list to the index (selection sort), so the list
+     * is only sorted as far as it is searched.
+     * 
+     * @param end
+     *        - the end (exclusive) of the moves to select from
+     * @return the selected move
+     */
+    private short pickMove(int ply, int index, int end) {
+	MoveList moves = this.moveLists[ply];
+	int[] scores = this.moveScores[ply];
+	int best = index;
+	for (int other = index + 1; other < end; other++) {
+	    if (scores[other] > scores[best]) {
+		best = other;
+	    }
+	}
+	if (best != index) {
+	    moves.swap(index, best);
+	    int score = scores[index];
+	    scores[index] = scores[best];
+	    scores[best] = score;
+	}
+	return moves.get(index);
+    }
+    
+    /**
+     * @return the type of the piece on the tile (see {@link IdManager#PWN}),
+     *         0 if the tile is empty
+     */
+    private int getType(int square) {
+	ChessPiece piece = this.board.getBoardArray()[square >> 3][square & 7];
+	return piece == null ? 0 : piece.getCode() & 7;
+    }
+    
+    /**
+     * Remembers a quiet move which has caused a cutoff as killer move of the
+     * ply and adds it to the history.
+     */
+    private void addCutoff(short move, int ply, int depth) {
+	if (this.killers[ply][0] != move) {
+	    this.killers[ply][1] = this.killers[ply][0];
+	    this.killers[ply][0] = move;
+	}
+	int[] fromHistory = this.history[Move.getFromSquare(move)];
+	int toSquare = Move.getToSquare(move);
+	fromHistory[toSquare] += depth * depth;
+	// The history must stay below the killer moves
+	if (fromHistory[toSquare] >= HISTORY_LIMIT) {
+	    for (int[] otherHistory : this.history) {
+		for (int to = 0; to < 64; to++) {
+		    otherHistory[to] >>= 1;
+		}
+	    }
+	}
+    }
+    
+    /**
+     * Mate scores are stored relative to the constellation instead of the
+     * root, so that they remain valid when the constellation is reached at a
+     * different ply.
+     */
+    private static int toTable(int score, int ply) {
+	return score >= MATE - MAX_PLY ? score + ply : score <= -MATE + MAX_PLY ? score - ply : score;
+    }
+    
+    /**
+     * Reverts {@link #toTable(int, int)}.
+     */
+    private static int fromTable(int score, int ply) {
+	return score >= MATE - MAX_PLY ? score - ply : score <= -MATE + MAX_PLY ? score + ply : score;
+    }
+    
+    /**
+     * @return the moves the transposition table holds as best moves, starting
+     *         at the board, separated by spaces
+     */
+    public String getPrincipalVariation() {
+	StringBuilder variation = new StringBuilder();
+	long[] undos = new long[MAX_PLY];
+	MoveList moves = new MoveList();
+	int ply = 0;
+	while (ply < Math.min(Math.max(this.completedDepth, 1), MAX_PLY)) {
+	    long entry = this.table.probe(this.board.getRepetitionHash());
+	    short move = TranspositionTable.getMove(entry);
+	    if (ply == 0 && this.bestMove != 0) {
+		move = this.bestMove;
+	    }
+	    if (move == 0) {
+		break;
+	    }
+	    // An entry may be overwritten by another constellation's move
+	    moves.clear();
+	    this.board.generateMoves(moves);
+	    boolean legal = false;
+	    for (int index = 0; index < moves.size(); index++) {
+		legal |= moves.get(index) == move;
+	    }
+	    if (!legal) {
+		break;
+	    }
+	    if (ply > 0) {
+		variation.append(' ');
+	    }
+	    variation.append(Move.toString(move));
+	    undos[ply++] = this.board.makeMove(move);
+	}
+	while (ply > 0) {
+	    this.board.unmakeMove(undos[--ply]);
+	}
+	return variation.toString();
+    }
+    
+    /**
+     * @return the nodes searched by the last search, including the nodes of
+     *         the quiescence search
+     */
+    public long getNodes() {
+	return this.nodes;
+    }
+    
+    /**
+     * @return the nodes per second of the last search
+     */
+    public long getNodesPerSecond() {
+	return this.nodes * 1000000000L / Math.max(this.endNanos - this.startNanos, 1L);
+    }
+    
+    /**
+     * @return the depth of the last completed iteration
+     */
+    public int getCompletedDepth() {
+	return this.completedDepth;
+    }
+    
+    /**
+     * @return the score of the best move from the point of view of the moving
+     *         player, see {@link #MATE}
+     */
+    public int getScore() {
+	return this.bestScore;
+    }
+    
+    public static void main(String[] args) {
+	String position = args.length > 0 ? args[0] : Perft.POSITIONS[0];
+	long millis = args.length > 1 ? Long.parseLong(args[1]) : 50L;
+	int depth = args.length > 2 ? Integer.parseInt(args[2]) : MAX_PLY;
+	TranspositionTable table = new TranspositionTable(64L << 20);
+	
+	String[] positions = position.equals("suite") ? Perft.POSITIONS : new String[] { position };
+	for (String fen : positions) {
+	    Search search = new Search(new Board(fen), table);
+	    if (positions.length == 1) {
+		search.setOutput(System.out);
+	    }
+	    short move = search.search(depth, millis);
+	    System.out.println(fen + ": " + (move == 0 ? "none" : Move.toString(move)) + " score " + search.getScore() + " depth "
+			       + search.getCompletedDepth() + " in " + ((search.endNanos - search.startNanos) / 1000000) + " ms ("
+			       + search.getNodesPerSecond() + " nps)");
+	}
+    }
+}
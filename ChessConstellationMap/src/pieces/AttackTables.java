@@ -0,0 +1,267 @@
+package pieces;
+
+import java.util.SplittableRandom;
+
+import util.Color;
+
+/**
+ * Contains the precomputed attack tables of all chess pieces for the
+ * bitboard representation of a board (see {@link core.BitBoard}).<br/>
+ * <br/>
+ * <b>Enhanced description:</b><br/>
+ * A bitboard is a long in which bit {@code row * 8 + col} represents the tile
+ * [row][col] of the boardArray.<br/>
+ * Knights (horses), kings and pawns always attack the same tiles from a given
+ * tile, so their attacks are looked up directly.<br/>
+ * The attacks of rooks and bishops (and therefore queens) depend on the
+ * occupancy of their rays. They are looked up with magic bitboards: The
+ * relevant occupancy of a ray mask is multiplied with a magic number, the
+ * upper bits of the product are used as index into a table that contains the
+ * attacks for every possible occupancy of that tile. The magic numbers are
+ * searched once when the class is loaded, using a fixed seed.<br/>
+ * 
+ * @author Andy
+ */
+public abstract class AttackTables {
+    
+    private final static long SEED = 0x4D61676963L;
+    
+    private final static int[][] ROOK_DIRECTIONS = { { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 } };
+    private final static int[][] BISHOP_DIRECTIONS = { { 1, 1 }, { 1, -1 }, { -1, 1 }, { -1, -1 } };
+    private final static int[][] KNIGHT_OFFSETS = { { 2, 1 }, { 2, -1 }, { -2, 1 }, { -2, -1 }, { 1, 2 }, { 1, -2 }, { -1, 2 }, { -1, -2 } };
+    private final static int[][] KING_OFFSETS = { { 1, 1 }, { 1, 0 }, { 1, -1 }, { 0, 1 }, { 0, -1 }, { -1, 1 }, { -1, 0 }, { -1, -1 } };
+    
+    private final static long[] knightAttacks = new long[64];
+    private final static long[] kingAttacks = new long[64];
+    
+    /**
+     * Side-relative direction table: The row offset of a pawn move, indexed by
+     * {@link Color#ordinal()}. White pawns move towards higher rows, black
+     * pawns towards lower rows.
+     */
+    private final static int[] PAWN_DIRECTIONS = new int[Color.values().length];
+    
+    /**
+     * The row from which pawns may move two tiles, indexed by
+     * {@link Color#ordinal()}.
+     */
+    private final static int[] PAWN_STARTING_ROWS = new int[Color.values().length];
+    
+    /**
+     * Attacks of a pawn indexed by [{@link Color#ordinal()}][square].
+     */
+    private final static long[][] pawnAttacks = new long[Color.values().length][64];
+    
+    private final static long[] rookMasks = new long[64];
+    private final static long[] rookMagics = new long[64];
+    private final static int[] rookShifts = new int[64];
+    private final static long[][] rookAttacks = new long[64][];
+    
+    private final static long[] bishopMasks = new long[64];
+    private final static long[] bishopMagics = new long[64];
+    private final static int[] bishopShifts = new int[64];
+    private final static long[][] bishopAttacks = new long[64][];
+    
+    /**
+     * [square][otherSquare] = the tiles strictly between two tiles on a common
+     * row, column or diagonal, 0 if they are not aligned.
+     */
+    private final static long[][] between = new long[64][64];
+    
+    /**
+     * [square][otherSquare] = the whole row, column or diagonal through two
+     * aligned tiles (from edge to edge), 0 if they are not aligned.
+     */
+    private final static long[][] lines = new long[64][64];
+    
+    static {
+	SplittableRandom random = new SplittableRandom(AttackTables.SEED);
+	
+	PAWN_DIRECTIONS[Color.WHITE.ordinal()] = 1;
+	PAWN_DIRECTIONS[Color.BLACK.ordinal()] = -1;
+	PAWN_STARTING_ROWS[Color.WHITE.ordinal()] = 1;
+	PAWN_STARTING_ROWS[Color.BLACK.ordinal()] = 6;
+	
+	for (int square = 0; square < 64; square++) {
+	    knightAttacks[square] = AttackTables.computeLeaperAttacks(square, KNIGHT_OFFSETS);
+	    kingAttacks[square] = AttackTables.computeLeaperAttacks(square, KING_OFFSETS);
+	    for (Color color : Color.values()) {
+		int direction = PAWN_DIRECTIONS[color.ordinal()];
+		pawnAttacks[color.ordinal()][square] = AttackTables.computeLeaperAttacks(square, new int[][] { { direction, 1 }, { direction, -1 } });
+	    }
+	    
+	    AttackTables.initMagic(square, ROOK_DIRECTIONS, rookMasks, rookMagics, rookShifts, rookAttacks, random);
+	    AttackTables.initMagic(square, BISHOP_DIRECTIONS, bishopMasks, bishopMagics, bishopShifts, bishopAttacks, random);
+	}
+	
+	for (int square = 0; square < 64; square++) {
+	    for (int otherSquare = 0; otherSquare < 64; otherSquare++) {
+		long tiles = (1L << square) | (1L << otherSquare);
+		if ((AttackTables.getRookAttacks(square, 0L) & (1L << otherSquare)) != 0) {
+		    between[square][otherSquare] = AttackTables.getRookAttacks(square, tiles) & AttackTables.getRookAttacks(otherSquare, tiles);
+		    lines[square][otherSquare] = (AttackTables.getRookAttacks(square, 0L) & AttackTables.getRookAttacks(otherSquare, 0L)) | tiles;
+		} else if ((AttackTables.getBishopAttacks(square, 0L) & (1L << otherSquare)) != 0) {
+		    between[square][otherSquare] = AttackTables.getBishopAttacks(square, tiles) & AttackTables.getBishopAttacks(otherSquare, tiles);
+		    lines[square][otherSquare] = (AttackTables.getBishopAttacks(square, 0L) & AttackTables.getBishopAttacks(otherSquare, 0L)) | tiles;
+		}
+	    }
+	}
+    }
+    
+    private static long computeLeaperAttacks(int square, int[][] offsets) {
+	long attacks = 0L;
+	for (int[] offset : offsets) {
+	    int row = (square >> 3) + offset[0];
+	    int col = (square & 7) + offset[1];
+	    if (row >= 0 && row < 8 && col >= 0 && col < 8) {
+		attacks |= 1L << ((row << 3) + col);
+	    }
+	}
+	return attacks;
+    }
+    
+    /**
+     * Computes the attacks of a sliding piece by walking its rays until a
+     * piece or the edge of the board is reached. Only used to fill the magic
+     * tables.
+     * 
+     * @param edges
+     *        - if {@code false} the last tile of every ray is omitted, which
+     *        yields the relevant occupancy mask of the tile
+     */
+    private static long computeSliderAttacks(int square, long occupancy, int[][] directions, boolean edges) {
+	long attacks = 0L;
+	for (int[] direction : directions) {
+	    int row = (square >> 3) + direction[0];
+	    int col = (square & 7) + direction[1];
+	    while (row >= 0 && row < 8 && col >= 0 && col < 8) {
+		int nextRow = row + direction[0];
+		int nextCol = col + direction[1];
+		if (!edges && (nextRow < 0 || nextRow > 7 || nextCol < 0 || nextCol > 7)) {
+		    break;
+		}
+		long tile = 1L << ((row << 3) + col);
+		attacks |= tile;
+		if ((occupancy & tile) != 0) {
+		    break;
+		}
+		row = nextRow;
+		col = nextCol;
+	    }
+	}
+	return attacks;
+    }
+    
+    /**
+     * Searches a magic number for the given tile, so that every relevant
+     * occupancy maps to a table entry holding the correct attacks.
+     */
+    private static void initMagic(int square,
+				  int[][] directions,
+				  long[] masks,
+				  long[] magics,
+				  int[] shifts,
+				  long[][] attackTable,
+				  SplittableRandom random) {
+	long mask = AttackTables.computeSliderAttacks(square, 0L, directions, false);
+	int bits = Long.bitCount(mask);
+	int size = 1 << bits;
+	
+	// Enumerate all subsets of the mask (carry-rippler) and their attacks
+	long[] occupancies = new long[size];
+	long[] references = new long[size];
+	long subset = 0L;
+	for (int i = 0; i < size; i++) {
+	    occupancies[i] = subset;
+	    references[i] = AttackTables.computeSliderAttacks(square, subset, directions, true);
+	    subset = (subset - mask) & mask;
+	}
+	
+	long[] table = new long[size];
+	int[] epoch = new int[size];
+	for (int attempt = 1;; attempt++) {
+	    long magic = random.nextLong() & random.nextLong() & random.nextLong();
+	    if (Long.bitCount((mask * magic) >>> 56) < 6) {
+		continue;
+	    }
+	    
+	    boolean collision = false;
+	    for (int i = 0; i < size && !collision; i++) {
+		int index = (int) ((occupancies[i] * magic) >>> (64 - bits));
+		if (epoch[index] != attempt) {
+		    epoch[index] = attempt;
+		    table[index] = references[i];
+		} else if (table[index] != references[i]) {
+		    collision = true;
+		}
+	    }
+	    
+	    if (!collision) {
+		masks[square] = mask;
+		magics[square] = magic;
+		shifts[square] = 64 - bits;
+		attackTable[square] = table;
+		return;
+	    }
+	}
+    }
+    
+    public static long getKnightAttacks(int square) {
+	return AttackTables.knightAttacks[square];
+    }
+    
+    public static long getKingAttacks(int square) {
+	return AttackTables.kingAttacks[square];
+    }
+    
+    /**
+     * @return the tiles attacked by a pawn of the given color
+     */
+    public static long getPawnAttacks(Color color, int square) {
+	return AttackTables.pawnAttacks[color.ordinal()][square];
+    }
+    
+    /**
+     * @return the row offset of a pawn move of the given color (+1 or -1)
+     */
+    public static int getPawnDirection(Color color) {
+	return AttackTables.PAWN_DIRECTIONS[color.ordinal()];
+    }
+    
+    /**
+     * @return the row from which a pawn of the given color may move two tiles
+     */
+    public static int getPawnStartingRow(Color color) {
+	return AttackTables.PAWN_STARTING_ROWS[color.ordinal()];
+    }
+    
+    public static long getRookAttacks(int square, long occupancy) {
+	int index = (int) (((occupancy & rookMasks[square]) * rookMagics[square]) >>> rookShifts[square]);
+	return AttackTables.rookAttacks[square][index];
+    }
+    
+    public static long getBishopAttacks(int square, long occupancy) {
+	int index = (int) (((occupancy & bishopMasks[square]) * bishopMagics[square]) >>> bishopShifts[square]);
+	return AttackTables.bishopAttacks[square][index];
+    }
+    
+    public static long getQueenAttacks(int square, long occupancy) {
+	return AttackTables.getRookAttacks(square, occupancy) | AttackTables.getBishopAttacks(square, occupancy);
+    }
+    
+    /**
+     * @return the tiles strictly between two tiles which share a row, column
+     *         or diagonal, 0 otherwise
+     */
+    public static long getBetween(int square, int otherSquare) {
+	return AttackTables.between[square][otherSquare];
+    }
+    
+    /**
+     * @return the whole row, column or diagonal through two aligned tiles, 0
+     *         otherwise
+     */
+    public static long getLine(int square, int otherSquare) {
+	return AttackTables.lines[square][otherSquare];
+    }
+}
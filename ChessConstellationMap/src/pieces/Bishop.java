@@ -1,19 +1,18 @@
 package pieces;
 
 import util.Color;
-import util.Move;
+import util.IdManager;
 
 public class Bishop extends ChessPiece {
     
     public Bishop(Color color) {
-	super(color);
+	super(color, IdManager.BSH);
 	// TODO Auto-generated constructor stub
     }
     
     @Override
-    public Move getPossibleMoves(ChessPiece[][] boardArray, int[] fromPos) {
-	// TODO Auto-generated method stub
-	return null;
+    public long getAttacks(int square, long occupancy) {
+	return AttackTables.getBishopAttacks(square, occupancy);
     }
     
 }
@@ -1,29 +1,109 @@
 package pieces;
 
 import util.Color;
+import util.IdManager;
 import util.Move;
+import util.MoveList;
 
 public abstract class ChessPiece {
     
-    protected ChessPiece(Color color) {
+    /**
+     * @param color
+     *        - the color of the piece
+     * @param type
+     *        - the type of the piece as coded by the IdManager (e.g.
+     *        {@link IdManager#PWN})
+     */
+    protected ChessPiece(Color color, int type) {
 	this.color = color;
+	this.code = (color == Color.BLACK ? IdManager.BLACK_PIECE : 0) | type;
     }
     
     private final Color color;
     
     /**
+     * The nibble that represents this piece within a
+     * {@link util.PositionKey}.<br/>
+     * Since every variant of a piece is only instantiated once (see
+     * {@link ChessPieceContainer}) the code is computed up front instead of
+     * checking the type of the piece whenever an ID is generated.
+     */
+    private final int code;
+    
+    /**
+     * @param square
+     *        - the tile of the piece (row * 8 + col)
+     * @param occupancy
+     *        - bitboard of all occupied tiles
+     * @return bitboard of all tiles attacked by the piece (see
+     *         {@link AttackTables})
+     */
+    public abstract long getAttacks(int square, long occupancy);
+    
+    /**
+     * @param square
+     *        - the tile of the piece (row * 8 + col)
+     * @param ownPieces
+     *        - bitboard of all pieces of the piece's color
+     * @param enemyPieces
+     *        - bitboard of all pieces of the opposing color
+     * @return bitboard of all tiles the piece can move to
+     */
+    public long getTargets(int square, long ownPieces, long enemyPieces) {
+	return this.getAttacks(square, ownPieces | enemyPieces) & ~ownPieces;
+    }
+    
+    /**
+     * Adds a packed move (see {@link Move}) for every target to the list.
+     * 
+     * @param fromSquare
+     *        - the tile of the piece (row * 8 + col)
+     * @param targets
+     *        - bitboard of the tiles the piece can move to
+     * @param moves
+     *        - the list the moves are added to
+     */
+    public void addMoves(int fromSquare, long targets, MoveList moves) {
+	while (targets != 0) {
+	    moves.add(Move.encode(fromSquare, Long.numberOfTrailingZeros(targets)));
+	    targets &= targets - 1;
+	}
+    }
+    
+    /**
+     * Walks the boardArray to find the occupied tiles and calls
+     * {@link #getTargets(int, long, long)}.<br/>
+     * Prefer {@link core.BitBoard#generateMoves(Color, MoveList)} which does
+     * not have to scan the boardArray.
+     * 
      * @param boardArray
      *        - the board's boardArray of the constellation in which the piece
      *        shall be moved
      * @param fromPos
      *        - the coordinates of the moving chess piece in the boardArray
-     * @return A move object containing all possible for that chess piece
+     * @param moves
+     *        - the list all possible moves for that chess piece are added to
      */
-    public abstract Move getPossibleMoves(ChessPiece[][] boardArray,
-					  int[] fromPos);
+    public void getPossibleMoves(ChessPiece[][] boardArray, int[] fromPos, MoveList moves) {
+	long ownPieces = 0L, enemyPieces = 0L;
+	for (int row = 0; row < boardArray.length; row++) {
+	    for (int col = 0; col < boardArray[row].length; col++) {
+		if (boardArray[row][col] != null) {
+		    if (boardArray[row][col].getColor() == this.color) {
+			ownPieces |= 1L << ((row << 3) + col);
+		    } else {
+			enemyPieces |= 1L << ((row << 3) + col);
+		    }
+		}
+	    }
+	}
+	
+	int fromSquare = (fromPos[0] << 3) + fromPos[1];
+	this.addMoves(fromSquare, this.getTargets(fromSquare, ownPieces, enemyPieces), moves);
+    }
     
     /**
-     * Calls {@link #getPossibleMoves(ChessPiece[][], int[])}.<br/>
+     * Calls {@link #getPossibleMoves(ChessPiece[][], int[], MoveList)}.<br/>
      * The array coordinates of int[] are specified by {@code fromPosRow} and
      * {@code fromPosCol}.
      * 
@@ -34,16 +114,25 @@ public abstract class ChessPiece {
      *        - first coordinate for the fromPos array
      * @param fromPosCol
      *        - second coordinate for the fromPos array
-     * @return A move object containing all possible for that chess piece
+     * @param moves
+     *        - the list all possible moves for that chess piece are added to
      */
-    public final Move getPossibleMoves(ChessPiece[][] boardArray,
+    public final void getPossibleMoves(ChessPiece[][] boardArray,
 				       int fromPosRow,
-				       int fromPosCol) {
+				       int fromPosCol,
+				       MoveList moves) {
 	int[] fromPos = { fromPosRow, fromPosCol };
-	return this.getPossibleMoves(boardArray, fromPos);
+	this.getPossibleMoves(boardArray, fromPos, moves);
     }
     
     public final Color getColor() {
 	return this.color;
     }
+    
+    /**
+     * @return {@link #code}
+     */
+    public final int getCode() {
+	return this.code;
+    }
 }
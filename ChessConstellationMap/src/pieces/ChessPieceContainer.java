@@ -30,6 +30,27 @@ public abstract class ChessPieceContainer {
     private final static Queen blackQueen = new Queen(Color.BLACK);
     private final static Queen whiteQueen = new Queen(Color.WHITE);
     
+    /**
+     * All pieces indexed by their code (see {@link ChessPiece#getCode()}).
+     */
+    private final static ChessPiece[] piecesByCode = new ChessPiece[16];
+    
+    static {
+	for (ChessPiece piece : new ChessPiece[] { blackPawn, whitePawn, blackRook, whiteRook, blackHorse, whiteHorse,
+						   blackBishop, whiteBishop, blackKing, whiteKing, blackQueen, whiteQueen }) {
+	    ChessPieceContainer.piecesByCode[piece.getCode()] = piece;
+	}
+    }
+    
+    /**
+     * @param code
+     *        - the code of a piece (see {@link ChessPiece#getCode()})
+     * @return the piece with that code, null for an empty tile (0)
+     */
+    public static ChessPiece getPiece(int code) {
+	return ChessPieceContainer.piecesByCode[code];
+    }
+    
     public static Pawn getBlackPawn() {
 	return ChessPieceContainer.blackPawn;
     }
@@ -1,19 +1,18 @@
 package pieces;
 
 import util.Color;
-import util.Move;
+import util.IdManager;
 
 public class King extends ChessPiece {
     
     public King(Color color) {
-	super(color);
+	super(color, IdManager.KNG);
 	// TODO Auto-generated constructor stub
     }
     
     @Override
-    public Move getPossibleMoves(ChessPiece[][] boardArray, int[] fromPos) {
-	// TODO Auto-generated method stub
-	return null;
+    public long getAttacks(int square, long occupancy) {
+	return AttackTables.getKingAttacks(square);
     }
     
 }
@@ -1,18 +1,69 @@
 package pieces;
 
 import util.Color;
+import util.IdManager;
 import util.Move;
+import util.MoveList;
 
 public class Pawn extends ChessPiece {
     
     public Pawn(Color color) {
-	super(color);
+	super(color, IdManager.PWN);
     }
     
+    /**
+     * The direction of the attacks depends on the color of the pawn (see
+     * {@link AttackTables#getPawnDirection(Color)}).
+     */
     @Override
-    public Move getPossibleMoves(ChessPiece[][] boardArray, int[] fromPos) {
-	// TODO Auto-generated method stub
-	return null;
+    public long getAttacks(int square, long occupancy) {
+	return AttackTables.getPawnAttacks(this.getColor(), square);
     }
     
+    /**
+     * A pawn moves forward onto empty tiles (two tiles from its starting row)
+     * and only captures diagonally.
+     */
+    @Override
+    public long getTargets(int square, long ownPieces, long enemyPieces) {
+	long targets = this.getAttacks(square, ownPieces | enemyPieces) & enemyPieces;
+	
+	int row = square >> 3;
+	int direction = AttackTables.getPawnDirection(this.getColor());
+	
+	if (row + direction >= 0 && row + direction < 8) {
+	    long empty = ~(ownPieces | enemyPieces);
+	    long singlePush = (1L << (square + (direction << 3))) & empty;
+	    targets |= singlePush;
+	    
+	    if (singlePush != 0 && row == AttackTables.getPawnStartingRow(this.getColor())) {
+		targets |= (1L << (square + (direction << 4))) & empty;
+	    }
+	}
+	
+	return targets;
+    }
+    
+    /**
+     * A pawn which reaches the last row is promoted, therefore every such
+     * target results in four moves (queen, rook, bishop, horse).
+     */
+    @Override
+    public void addMoves(int fromSquare, long targets, MoveList moves) {
+	int promotionRow = AttackTables.getPawnDirection(this.getColor()) > 0 ? 7 : 0;
+	
+	while (targets != 0) {
+	    int toSquare = Long.numberOfTrailingZeros(targets);
+	    targets &= targets - 1;
+	    
+	    if ((toSquare >> 3) == promotionRow) {
+		moves.add(Move.encode(fromSquare, toSquare, Move.PROMOTION, IdManager.QUN));
+		moves.add(Move.encode(fromSquare, toSquare, Move.PROMOTION, IdManager.ROK));
+		moves.add(Move.encode(fromSquare, toSquare, Move.PROMOTION, IdManager.BSH));
+		moves.add(Move.encode(fromSquare, toSquare, Move.PROMOTION, IdManager.KNT));
+	    } else {
+		moves.add(Move.encode(fromSquare, toSquare));
+	    }
+	}
+    }
 }
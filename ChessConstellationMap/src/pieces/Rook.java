@@ -1,19 +1,18 @@
 package pieces;
 
 import util.Color;
-import util.Move;
+import util.IdManager;
 
 public class Rook extends ChessPiece {
     
     public Rook(Color color) {
-	super(color);
+	super(color, IdManager.ROK);
 	// TODO Auto-generated constructor stub
     }
     
     @Override
-    public Move getPossibleMoves(ChessPiece[][] boardArray, int[] fromPos) {
-	// TODO Auto-generated method stub
-	return null;
+    public long getAttacks(int square, long occupancy) {
+	return AttackTables.getRookAttacks(square, occupancy);
     }
     
 }
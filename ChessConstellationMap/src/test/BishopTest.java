@@ -8,7 +8,19 @@ public class BishopTest {
     
     @Test
     public void test() {
-	fail("Not yet implemented");
+	Bishop bishop = ChessPieceContainer.getWhiteBishop();
+	
+	// Bishop on [3][3] in an empty board reaches 13 tiles
+	assertEquals(13, Long.bitCount(bishop.getTargets(27, 1L << 27, 0L)));
+	
+	// Own pieces block without being targets, enemy pieces can be captured
+	long ownPieces = (1L << 27) | (1L << 36);
+	long enemyPieces = 1L << 18;
+	long targets = bishop.getTargets(27, ownPieces, enemyPieces);
+	assertEquals(0L, targets & ownPieces);
+	assertEquals(enemyPieces, targets & enemyPieces);
+	assertEquals(0L, targets & (1L << 9));
+	assertEquals(7, Long.bitCount(targets));
     }
     
 }
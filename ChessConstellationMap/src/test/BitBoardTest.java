@@ -0,0 +1,193 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import pieces.AttackTables;
+import pieces.ChessPiece;
+import pieces.ChessPieceContainer;
+import util.Color;
+import util.IdManager;
+import util.Move;
+import util.MoveList;
+import util.PositionKey;
+import core.BitBoard;
+import core.Board;
+import core.Constellation;
+
+public class BitBoardTest {
+    
+    @Test
+    public void testSlidingAttacks() {
+	// Rook on [0][0], blockers on [0][3] and [2][0]
+	long occupancy = (1L << 3) | (1L << 16);
+	long expected = (1L << 1) | (1L << 2) | (1L << 3) | (1L << 8) | (1L << 16);
+	
+	assertEquals(expected, AttackTables.getRookAttacks(0, occupancy));
+	assertEquals(AttackTables.getRookAttacks(27, occupancy) | AttackTables.getBishopAttacks(27, occupancy),
+		     AttackTables.getQueenAttacks(27, occupancy));
+	assertEquals(13, Long.bitCount(AttackTables.getBishopAttacks(27, 0L)));
+    }
+    
+    @Test
+    public void testBitBoardMatchesBoardArray() {
+	Board board = new Board();
+	BitBoard bitBoard = board.getBitBoard();
+	
+	assertEquals(0xFFFFL, bitBoard.getPieces(Color.WHITE));
+	assertEquals(0xFFFFL << 48, bitBoard.getPieces(Color.BLACK));
+	assertEquals(0xFFL << 8, bitBoard.getPieces(ChessPieceContainer.getWhitePawn()));
+	
+	// Moving a piece must keep the bitboards in sync with the boardArray
+	Board followingBoard = new Board(board);
+	followingBoard.makeMove((6 << 3) + 3, (4 << 3) + 3);
+	assertEquals(new BitBoard(followingBoard.getBoardArray()).getPieces(Color.BLACK),
+		     followingBoard.getBitBoard().getPieces(Color.BLACK));
+	assertEquals(0xFFFFL << 48, bitBoard.getPieces(Color.BLACK));
+	
+	// The mirrored view shows Black's pieces at the bottom
+	assertSame(board.getBoardArray()[7][3], board.getMirroredBoardArray()[0][4]);
+    }
+    
+    @Test
+    public void testGenerateMovesMatchesPieces() {
+	Board board = new Board();
+	MoveList moves = new MoveList();
+	board.getBitBoard().generateMoves(Color.WHITE, moves);
+	
+	MoveList expected = new MoveList();
+	for (int row = 0; row < 8; row++) {
+	    for (int col = 0; col < 8; col++) {
+		if (board.getBoardArray()[row][col] != null && board.getBoardArray()[row][col].getColor() == Color.WHITE) {
+		    board.getBoardArray()[row][col].getPossibleMoves(board.getBoardArray(), row, col, expected);
+		}
+	    }
+	}
+	
+	assertEquals(expected.size(), moves.size());
+	for (int index = 0; index < moves.size(); index++) {
+	    boolean found = false;
+	    for (int expectedIndex = 0; expectedIndex < expected.size(); expectedIndex++) {
+		found |= expected.get(expectedIndex) == moves.get(index);
+	    }
+	    assertTrue(Move.toString(moves.get(index)), found);
+	}
+    }
+    
+    /**
+     * Creates a constellation from tiles given as "e1" and piece codes.
+     */
+    private static Constellation createConstellation(Color movingPlayer, Object... tilesAndCodes) {
+	ChessPiece[][] boardArray = new ChessPiece[8][8];
+	for (int index = 0; index < tilesAndCodes.length; index += 2) {
+	    int square = BitBoardTest.getSquare((String) tilesAndCodes[index]);
+	    boardArray[square >> 3][square & 7] = ChessPieceContainer.getPiece((Integer) tilesAndCodes[index + 1]);
+	}
+	IdManager idManager = new IdManager();
+	return new Constellation(idManager, idManager.generateId(boardArray, movingPlayer));
+    }
+    
+    private static int getSquare(String tile) {
+	return ((tile.charAt(1) - '1') << 3) + (tile.charAt(0) - 'a');
+    }
+    
+    private static int countMoves(Board board) {
+	MoveList moves = new MoveList();
+	board.generateMoves(moves);
+	return moves.size();
+    }
+    
+    private static short findMove(Board board, String name) {
+	MoveList moves = new MoveList();
+	board.generateMoves(moves);
+	for (int index = 0; index < moves.size(); index++) {
+	    if (Move.toString(moves.get(index)).startsWith(name)) {
+		return moves.get(index);
+	    }
+	}
+	fail(name + " is not a legal move");
+	return 0;
+    }
+    
+    @Test
+    public void testPinnedPieceMovesAlongPin() {
+	int black = IdManager.BLACK_PIECE;
+	Constellation constellation = BitBoardTest.createConstellation(Color.WHITE,
+								      "e1", IdManager.KNG, "e2", IdManager.ROK,
+								      "e8", IdManager.ROK | black, "a8", IdManager.KNG | black);
+	
+	// Four king moves and the rook may only move towards its pinner
+	assertEquals(10, BitBoardTest.countMoves(constellation.getBoard()));
+	assertFalse(constellation.getBoard().isInCheck());
+    }
+    
+    @Test
+    public void testCheckEvasions() {
+	int black = IdManager.BLACK_PIECE;
+	Constellation constellation = BitBoardTest.createConstellation(Color.WHITE,
+								      "e1", IdManager.KNG, "a2", IdManager.ROK,
+								      "e8", IdManager.ROK | black, "a8", IdManager.KNG | black);
+	
+	// Four king moves and the rook blocking on e2
+	assertTrue(constellation.getBoard().isInCheck());
+	assertEquals(5, BitBoardTest.countMoves(constellation.getBoard()));
+	BitBoardTest.findMove(constellation.getBoard(), "a2e2");
+    }
+    
+    @Test
+    public void testCheckmateAndStalemate() {
+	int black = IdManager.BLACK_PIECE;
+	Constellation checkmate = BitBoardTest.createConstellation(Color.WHITE,
+								  "g1", IdManager.KNG, "f2", IdManager.PWN,
+								  "g2", IdManager.PWN, "h2", IdManager.PWN,
+								  "a1", IdManager.ROK | black, "a8", IdManager.KNG | black);
+	assertEquals(Color.WHITE, checkmate.getCheckmatePlayer());
+	assertFalse(checkmate.isStalemate());
+	assertFalse(checkmate.hasNextMove());
+	
+	Constellation stalemate = BitBoardTest.createConstellation(Color.BLACK,
+								  "c1", IdManager.KNG, "b6", IdManager.QUN,
+								  "a8", IdManager.KNG | black);
+	assertNull(stalemate.getCheckmatePlayer());
+	assertTrue(stalemate.isStalemate());
+	assertFalse(stalemate.hasNextMove());
+    }
+    
+    @Test
+    public void testCastlingAndEnPassant() {
+	Board board = new Board();
+	for (String name : new String[] { "e2e4", "e7e5", "g1f3", "b8c6", "f1c4", "f8c5" }) {
+	    board.makeMove(BitBoardTest.findMove(board, name));
+	}
+	
+	// Castling moves the rook as well and is reverted completely
+	Board castlingBoard = new Board(board);
+	short castling = BitBoardTest.findMove(castlingBoard, "e1g1");
+	assertEquals(Move.CASTLING, Move.getFlag(castling));
+	long undo = castlingBoard.makeMove(castling);
+	assertSame(ChessPieceContainer.getWhiteRook(), castlingBoard.getBoardArray()[0][5]);
+	assertNull(castlingBoard.getBoardArray()[0][7]);
+	assertEquals(Board.BLACK_KINGSIDE | Board.BLACK_QUEENSIDE, castlingBoard.getCastlingRights());
+	castlingBoard.unmakeMove(undo);
+	assertEquals(board.getId(), castlingBoard.getId());
+	assertEquals(0xF, castlingBoard.getCastlingRights());
+	
+	// A pawn which skipped a tile next to an enemy pawn may be captured en
+	// passant
+	Board enPassantBoard = new Board();
+	for (String name : new String[] { "e2e4", "a7a6", "e4e5", "d7d5" }) {
+	    enPassantBoard.makeMove(BitBoardTest.findMove(enPassantBoard, name));
+	}
+	assertEquals(BitBoardTest.getSquare("d6"), enPassantBoard.getEnPassantSquare());
+	PositionKey id = enPassantBoard.getId();
+	short enPassant = BitBoardTest.findMove(enPassantBoard, "e5d6");
+	assertEquals(Move.EN_PASSANT, Move.getFlag(enPassant));
+	undo = enPassantBoard.makeMove(enPassant);
+	assertNull(enPassantBoard.getBoardArray()[4][3]);
+	assertEquals(-1, enPassantBoard.getEnPassantSquare());
+	enPassantBoard.unmakeMove(undo);
+	assertEquals(id, enPassantBoard.getId());
+	assertEquals(BitBoardTest.getSquare("d6"), enPassantBoard.getEnPassantSquare());
+    }
+}
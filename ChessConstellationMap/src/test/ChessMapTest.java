@@ -0,0 +1,235 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import core.Board;
+import core.ChessMap;
+import core.Constellation;
+import core.ConstellationRecord;
+import util.BuildMetrics;
+import util.IdManager;
+import util.PositionKey;
+import util.Symmetry;
+
+public class ChessMapTest {
+    
+    @Test
+    public void testBuildIsIndependentOfThreads() throws Exception {
+	ChessMap sequentialMap = new ChessMap(3, Integer.MAX_VALUE, new ForkJoinPool(1));
+	ChessMap parallelMap = new ChessMap(3, Integer.MAX_VALUE, new ForkJoinPool(4));
+	sequentialMap.build();
+	parallelMap.build();
+	
+	assertEquals(sequentialMap.getConstellationsPerPly(), parallelMap.getConstellationsPerPly());
+	assertEquals(sequentialMap.getConstellationCount(), parallelMap.getConstellationCount());
+	assertEquals(parallelMap.getRoot().getFollowingConstellations().size(), (long) parallelMap.getConstellationsPerPly().get(1));
+    }
+    
+    @Test
+    public void testOffHeapIndex() throws Exception {
+	ChessMap onHeapMap = new ChessMap(3, Integer.MAX_VALUE, new ForkJoinPool(1));
+	ChessMap offHeapMap = new ChessMap(3, Integer.MAX_VALUE, new ForkJoinPool(4), true);
+	onHeapMap.build();
+	offHeapMap.build();
+	
+	assertEquals(onHeapMap.getConstellationsPerPly(), offHeapMap.getConstellationsPerPly());
+	for (int index = 0; index < offHeapMap.getConstellationCount(); index++) {
+	    assertEquals(index, offHeapMap.getIdManager().getIndex(offHeapMap.getIdManager().getId(index)));
+	}
+    }
+    
+    @Test
+    public void testBuildExternal() throws Exception {
+	ChessMap chessMap = new ChessMap(4, Integer.MAX_VALUE, new ForkJoinPool(2));
+	ChessMap externalMap = new ChessMap(4, Integer.MAX_VALUE, new ForkJoinPool(2));
+	chessMap.build();
+	
+	Path directory = Files.createTempDirectory("chessmap");
+	try {
+	    // Small runs, so that every ply is merged out of several runs
+	    externalMap.buildExternal(directory, 5000);
+	    assertEquals(chessMap.getConstellationsPerPly(), externalMap.getConstellationsPerPly());
+	} finally {
+	    for (Path file : Files.newDirectoryStream(directory)) {
+		Files.delete(file);
+	    }
+	    Files.delete(directory);
+	}
+    }
+    
+    @Test
+    public void testStreamingBuild() throws Exception {
+	ChessMap chessMap = new ChessMap(3, Integer.MAX_VALUE, new ForkJoinPool(1));
+	ChessMap streamingMap = new ChessMap(3, Integer.MAX_VALUE, new ForkJoinPool(4));
+	ConcurrentHashMap<Integer, ConstellationRecord> records = new ConcurrentHashMap<Integer, ConstellationRecord>();
+	streamingMap.setSink(record -> assertNull(records.put(record.getIndex(), record)));
+	chessMap.build();
+	streamingMap.build();
+	
+	assertEquals(chessMap.getConstellationCount(), records.size());
+	for (ConstellationRecord record : records.values()) {
+	    int index = chessMap.getIdManager().getIndex(record.getId());
+	    assertEquals(chessMap.getIdManager().isComplete(index), record.isComplete());
+	    assertEquals(chessMap.getIdManager().getFollowingCount(index), record.getFollowingIndices().length);
+	    assertNull(streamingMap.getIdManager().getConstellation(record.getIndex()));
+	}
+    }
+    
+    @Test
+    public void testRelationshipsInBothDirections() throws Exception {
+	ChessMap chessMap = new ChessMap(2, Integer.MAX_VALUE, new ForkJoinPool(4));
+	chessMap.build();
+	
+	Constellation root = chessMap.getRoot();
+	assertTrue(root.isComplete());
+	for (PositionKey followingId : root.getFollowingConstellations()) {
+	    Constellation following = chessMap.getIdManager().getConstellation(followingId);
+	    assertTrue(following.getFormerConstellations().contains(root.getId()));
+	    assertTrue(following.isComplete());
+	}
+    }
+    
+    @Test
+    public void testConstellationLimit() throws Exception {
+	ChessMap chessMap = new ChessMap(10, 1000, new ForkJoinPool(4));
+	chessMap.build();
+	
+	assertEquals(1000, chessMap.getConstellationCount());
+    }
+    
+    @Test
+    public void testMetrics() throws Exception {
+	ChessMap chessMap = new ChessMap(3, Integer.MAX_VALUE, new ForkJoinPool(4));
+	chessMap.build();
+	BuildMetrics metrics = chessMap.getMetrics();
+	
+	assertEquals(chessMap.getConstellationCount(), metrics.getNodesCreated());
+	assertArrayEquals(new long[] { 1, 20, 400 }, metrics.getFrontierSizes());
+	assertArrayEquals(new long[] { 20, 400, 6482 }, metrics.getNodesCreatedPerPly());
+	
+	// Every move leads to a new constellation or to a transposition
+	assertEquals(metrics.getNodesCreated() - 1 + metrics.getTranspositionHits(), metrics.getEdgesAdded());
+	assertEquals(1, metrics.getBranchingHistogram(0)[20]);
+	long expanded = 0;
+	for (long count : metrics.getBranchingHistogram(1)) {
+	    expanded += count;
+	}
+	assertEquals(20, expanded);
+	assertEquals(421, metrics.getNodesExpanded());
+    }
+    
+    @Test
+    public void testFiftyMoveRule() throws Exception {
+	PositionKey root = new Board("k7/8/8/8/8/8/8/K6N w - - 98 1").getId();
+	ChessMap chessMap = new ChessMap(root, 4, Integer.MAX_VALUE, new ForkJoinPool(2), false);
+	chessMap.build();
+	IdManager idManager = chessMap.getIdManager();
+	
+	// No capture is possible, so the game ends after two plies
+	assertEquals(0L, (long) chessMap.getConstellationsPerPly().get(3));
+	for (int index = 0; index < idManager.getConstellationCount(); index++) {
+	    boolean limitReached = idManager.getId(index).getHalfmoveClock() == PositionKey.HALFMOVE_CLOCK_LIMIT;
+	    assertEquals(limitReached, idManager.isDrawn(index));
+	    if (limitReached) {
+		assertTrue(idManager.isComplete(index));
+		assertEquals(0, idManager.getFollowingCount(index));
+	    }
+	}
+	
+	// The external build ends the same lines
+	ChessMap externalMap = new ChessMap(root, 4, Integer.MAX_VALUE, new ForkJoinPool(2), false);
+	Path directory = Files.createTempDirectory("chessmap");
+	try {
+	    externalMap.buildExternal(directory, 5000);
+	    assertEquals(chessMap.getConstellationsPerPly(), externalMap.getConstellationsPerPly());
+	} finally {
+	    for (Path file : Files.newDirectoryStream(directory)) {
+		Files.delete(file);
+	    }
+	    Files.delete(directory);
+	}
+    }
+    
+    @Test
+    public void testThreefoldRepetition() throws Exception {
+	PositionKey root = new Board("k7/8/8/8/8/8/8/K7 w - - 0 1").getId();
+	ChessMap chessMap = new ChessMap(root, 9, Integer.MAX_VALUE, new ForkJoinPool(1), false);
+	chessMap.build();
+	IdManager idManager = chessMap.getIdManager();
+	
+	// Both kings can return to their corners after four and after eight plies
+	Board repeated = new Board("k7/8/8/8/8/8/8/K7 w - - 4 1");
+	repeated.setRepetition(true);
+	int repeatedIndex = idManager.getIndex(repeated.getId());
+	assertTrue(repeatedIndex >= 0);
+	assertFalse(idManager.isDrawn(repeatedIndex));
+	
+	int drawnCount = 0;
+	for (int index = 0; index < idManager.getConstellationCount(); index++) {
+	    if (idManager.isDrawn(index)) {
+		drawnCount++;
+		assertTrue(idManager.getId(index).isRepetition());
+		assertTrue(idManager.getId(index).getHalfmoveClock() >= 8);
+		assertEquals(0, idManager.getFollowingCount(index));
+	    }
+	}
+	assertTrue(drawnCount > 0);
+	
+	// The line ends as well if the drawn constellation is transformed
+	ChessMap symmetricMap = new ChessMap(root, 9, Integer.MAX_VALUE, new ForkJoinPool(1), false);
+	symmetricMap.setSymmetryReduction(true);
+	symmetricMap.build();
+	IdManager symmetricIdManager = symmetricMap.getIdManager();
+	int symmetricDrawnCount = 0;
+	for (int index = 0; index < symmetricIdManager.getConstellationCount(); index++) {
+	    if (symmetricIdManager.isDrawn(index)) {
+		symmetricDrawnCount++;
+		assertTrue(symmetricIdManager.getId(index).isRepetition());
+		assertEquals(0, symmetricIdManager.getFollowingCount(index));
+	    }
+	}
+	assertTrue(symmetricDrawnCount > 0);
+	Constellation transformed = new Constellation(symmetricIdManager, Symmetry.transform(repeated.getId(), Symmetry.ROTATE_90), true);
+	assertTrue(transformed.isDrawn());
+	assertFalse(transformed.hasNextMove());
+    }
+    
+    @Test
+    public void testExploreReachesTheBuiltMap() throws Exception {
+	ChessMap builtMap = new ChessMap(3, Integer.MAX_VALUE, new ForkJoinPool(2));
+	builtMap.build();
+	Set<PositionKey> builtIds = new HashSet<PositionKey>();
+	for (int index = 0; index < builtMap.getConstellationCount(); index++) {
+	    builtIds.add(builtMap.getIdManager().getId(index));
+	}
+	
+	ChessMap exploredMap = new ChessMap(3, Integer.MAX_VALUE, new ForkJoinPool(1));
+	Set<PositionKey> exploredIds = new HashSet<PositionKey>();
+	assertEquals(3, exploredMap.explore(1 << 16, exploredIds::add));
+	
+	assertEquals(builtIds, exploredIds);
+	assertEquals(1, exploredMap.getConstellationCount());
+	assertEquals(4, exploredMap.getConstellationsPerPly().size());
+	assertEquals(400L, (long) exploredMap.getConstellationsPerPly().get(2));
+    }
+    
+    @Test
+    public void testExploreStopsAtConstellationLimit() throws Exception {
+	// The first two iterations visit 21 + 421 constellations
+	ChessMap chessMap = new ChessMap(5, 1000, new ForkJoinPool(1));
+	assertEquals(2, chessMap.explore(1 << 10, null));
+	// The root of the map has been created once as well
+	assertEquals(1 + 1000, chessMap.getMetrics().getNodesCreated());
+	assertEquals(Arrays.asList(1L, 20L, 400L), chessMap.getConstellationsPerPly());
+    }
+}
@@ -0,0 +1,69 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import core.ChessMap;
+import core.Constellation;
+import util.ConstellationFile;
+import util.IdManager;
+import util.PositionKey;
+
+public class ConstellationFileTest {
+    
+    @Test
+    public void testSaveAndOpen() throws Exception {
+	ChessMap chessMap = new ChessMap(3, Integer.MAX_VALUE, new ForkJoinPool(2));
+	chessMap.build();
+	Path path = Files.createTempFile("chessmap", ".bin");
+	try {
+	    chessMap.save(path);
+	    IdManager original = chessMap.getIdManager();
+	    IdManager mapped = ChessMap.open(path);
+	    
+	    assertEquals(original.getConstellationCount(), mapped.getConstellationCount());
+	    for (int index = 0; index < original.getConstellationCount(); index++) {
+		PositionKey id = original.getId(index);
+		assertEquals(id, mapped.getId(index));
+		assertEquals(index, mapped.getIndex(id));
+		assertEquals(original.isComplete(index), mapped.isComplete(index));
+		assertEquals(original.getFollowingConstellations(index), mapped.getFollowingConstellations(index));
+		assertEquals(original.getFormerConstellations(index), mapped.getFormerConstellations(index));
+	    }
+	    
+	    Constellation root = mapped.getConstellation(chessMap.getRoot().getId());
+	    assertEquals(chessMap.getRoot().getId(), root.getId());
+	    assertEquals(chessMap.getRoot().getId(), root.getBoard().getId());
+	    assertEquals(chessMap.getRoot().getFollowingConstellations(), root.getFollowingConstellations());
+	    assertNull(mapped.getConstellation(new PositionKey(0L, 0L, 0L, 0L, 0, 0L)));
+	    
+	    ConstellationFile.open(path).verifyChecksums();
+	} finally {
+	    Files.delete(path);
+	}
+    }
+    
+    @Test(expected = IOException.class)
+    public void testCorruptFile() throws Exception {
+	ChessMap chessMap = new ChessMap(2, Integer.MAX_VALUE, new ForkJoinPool(1));
+	chessMap.build();
+	Path path = Files.createTempFile("chessmap", ".bin");
+	try {
+	    chessMap.save(path);
+	    try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+		file.seek(100);
+		file.write(file.read() ^ 0xFF);
+	    }
+	    ConstellationFile.open(path).verifyChecksums();
+	} finally {
+	    Files.delete(path);
+	}
+    }
+}
@@ -0,0 +1,46 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import util.EdgeStore;
+
+public class EdgeStoreTest {
+    
+    @Test
+    public void testFreezeIntoCompressedRows() {
+	EdgeStore edgeStore = new EdgeStore();
+	edgeStore.addEdge(0, 1);
+	edgeStore.addEdges(2, new int[] { 0, 1, 3, -1 }, 3);
+	edgeStore.addEdge(0, 2);
+	edgeStore.freeze(4);
+	
+	assertEquals(5, edgeStore.getEdgeCount());
+	
+	assertEquals(2, edgeStore.getFollowingCount(0));
+	assertEquals(1, edgeStore.getFollowing(0, 0));
+	assertEquals(2, edgeStore.getFollowing(0, 1));
+	assertEquals(0, edgeStore.getFollowingCount(1));
+	assertEquals(3, edgeStore.getFollowingCount(2));
+	assertEquals(3, edgeStore.getFollowing(2, 2));
+	
+	assertEquals(2, edgeStore.getFormerCount(1));
+	assertEquals(0, edgeStore.getFormer(1, 0));
+	assertEquals(2, edgeStore.getFormer(1, 1));
+	assertEquals(1, edgeStore.getFormerCount(3));
+	assertEquals(1, edgeStore.getFormerCount(2));
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void testNoEdgesAfterFreeze() {
+	EdgeStore edgeStore = new EdgeStore();
+	edgeStore.freeze(1);
+	edgeStore.addEdge(0, 0);
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void testNoReadsBeforeFreeze() {
+	new EdgeStore().getFollowingCount(0);
+    }
+}
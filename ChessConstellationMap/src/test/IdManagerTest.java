@@ -0,0 +1,96 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.junit.Test;
+
+import core.Constellation;
+import util.Color;
+import util.IdManager;
+import util.OffHeapIndex;
+
+public class IdManagerTest {
+    
+    @Test
+    public void testAddConstellationReturnsCanonicalNode() throws Exception {
+	IdManager idManager = new IdManager();
+	Constellation constellation = new Constellation(idManager);
+	Constellation duplicate = new Constellation(idManager);
+	
+	assertSame(constellation, idManager.addConstellation(constellation.getId(), constellation));
+	assertSame(constellation, idManager.addConstellation(duplicate.getId(), duplicate));
+	assertSame(constellation, idManager.getConstellation(duplicate.getId()));
+	assertEquals(1, idManager.getConstellationCount());
+    }
+    
+    @Test
+    public void testDenseIndices() throws Exception {
+	IdManager idManager = new IdManager();
+	Constellation root = new Constellation(idManager);
+	Constellation following = new Constellation(root);
+	idManager.addConstellation(root.getId(), root);
+	idManager.addConstellation(following.getId(), following);
+	
+	assertEquals(0, idManager.getIndex(root.getId()));
+	assertEquals(1, idManager.getIndex(following.getId()));
+	assertEquals(-1, idManager.getIndex(new Constellation(following).getId()));
+	assertEquals(following.getId(), idManager.getId(1));
+	assertSame(following, idManager.getConstellation(1));
+	assertEquals(Color.BLACK, idManager.getMovingPlayer(1));
+	
+	assertFalse(idManager.isComplete(0));
+	root.markAsComplete();
+	assertTrue(idManager.isComplete(0));
+	assertTrue(root.isComplete());
+	assertFalse(following.isComplete());
+    }
+    
+    @Test
+    public void testOffHeapIndex() throws Exception {
+	IdManager idManager = new IdManager(1, true);
+	Constellation root = new Constellation(idManager);
+	Constellation duplicate = new Constellation(idManager);
+	
+	assertSame(root, idManager.addConstellation(root.getId(), root));
+	assertSame(root, idManager.addConstellation(duplicate.getId(), duplicate));
+	assertEquals(0, idManager.getIndex(root.getId()));
+	assertEquals(-1, idManager.getIndex(new Constellation(root).getId()));
+    }
+    
+    @Test
+    public void testOffHeapIndexSegmentCapacity() throws Exception {
+	// 1536 / 0.75 = 2048 slots of 16 bytes, not twice as many
+	assertEquals(2048L * 16, new OffHeapIndex(1536, 1, 0.75f, index -> null).getAllocatedBytes());
+	assertEquals(2048L * 16, new OffHeapIndex(1536, 2, 0.75f, index -> null).getAllocatedBytes());
+	assertEquals(4096L * 16, new OffHeapIndex(1537, 1, 0.75f, index -> null).getAllocatedBytes());
+	
+	// A single segment is bounded by its maximum capacity
+	OffHeapIndex index = new OffHeapIndex(60000000, 1, 0.75f, position -> null);
+	assertEquals(16L << 26, index.getAllocatedBytes());
+    }
+    
+    @Test
+    public void testConcurrentAddConstellation() throws Exception {
+	IdManager idManager = new IdManager();
+	ConcurrentLinkedQueue<Constellation> canonicalConstellations = new ConcurrentLinkedQueue<Constellation>();
+	
+	Thread[] threads = new Thread[4];
+	for (int i = 0; i < threads.length; i++) {
+	    threads[i] = new Thread(() -> {
+		Constellation constellation = new Constellation(idManager);
+		canonicalConstellations.add(idManager.addConstellation(constellation.getId(), constellation));
+	    });
+	    threads[i].start();
+	}
+	for (Thread thread : threads) {
+	    thread.join();
+	}
+	
+	assertEquals(1, idManager.getConstellationCount());
+	for (Constellation constellation : canonicalConstellations) {
+	    assertSame(idManager.getConstellation(constellation.getId()), constellation);
+	}
+    }
+}
@@ -4,44 +4,60 @@ import static org.junit.Assert.*;
 
 import org.junit.Test;
 
+import util.IdManager;
 import util.Move;
+import util.MoveList;
 
 public class MoveTest {
     
-    public MoveTest() {
-	// TODO Auto-generated constructor stub
-	myMove.addDestination(destination);
-	myMove.addDestination(destination2);
-	myMove.addDestination(destination);
-	myMove.addDestination(destination2);
-	myMove.addDestination(destination);
-	myMove.addDestination(destination2);
-	myMove.addDestination(destination);
-	myMove.addDestination(destination2);
-    }
-    
-    int[] anArray = new int[2];
-    int[] destination = { 3, 5 };
-    int[] destination2 = { 1, 2 };
-    Move myMove = new Move(anArray);
-    
-    public void testMove() {
-	fail("Not yet implemented");
-    }
-    
-    public void testAddDestinationIntInt() {
-	fail("Not yet implemented");
+    @Test
+    public void testEncodeAndDecode() {
+	short move = Move.encode(12, 28);
+	
+	assertEquals(12, Move.getFromSquare(move));
+	assertEquals(28, Move.getToSquare(move));
+	assertEquals(Move.NORMAL, Move.getFlag(move));
+	assertEquals("e2e4", Move.toString(move));
     }
     
-    public void testAddDestinationIntArray() {
-	this.myMove.addDestination(this.destination);
-	System.out.println("Pause here");
+    @Test
+    public void testPromotion() {
+	short move = Move.encode(52, 61, Move.PROMOTION, IdManager.QUN);
+	
+	assertEquals(52, Move.getFromSquare(move));
+	assertEquals(61, Move.getToSquare(move));
+	assertEquals(Move.PROMOTION, Move.getFlag(move));
+	assertEquals(IdManager.QUN, Move.getPromotionType(move));
+	assertEquals("e7f8q", Move.toString(move));
+	
+	assertEquals(Move.CASTLING, Move.getFlag(Move.encode(4, 6, Move.CASTLING, 0)));
     }
     
     @Test
     public void testRetrieveAndDeleteFirstDestination() {
+	MoveList moves = new MoveList(1);
+	moves.add(Move.encode(1, 2));
+	moves.add(Move.encode(3, 5));
+	moves.add(Move.encode(1, 2));
+	
+	assertEquals(3, moves.size());
+	assertEquals(Move.encode(1, 2), moves.getNext());
 	
-	System.out.println("Pause here");
+	moves.removeNext();
+	assertEquals(Move.encode(3, 5), moves.getNext());
+	assertEquals(2, moves.remaining());
 	
+	moves.removeNext();
+	moves.removeNext();
+	assertFalse(moves.hasNext());
+	
+	moves.clear();
+	assertTrue(moves.isEmpty());
+	assertEquals(0, moves.size());
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void testRemoveFromEmptyList() {
+	new MoveList().removeNext();
     }
 }
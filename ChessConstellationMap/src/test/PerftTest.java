@@ -0,0 +1,70 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+import core.Board;
+import core.Perft;
+import util.Move;
+
+public class PerftTest {
+    
+    @Test
+    public void testPublishedNodeCounts() {
+	// Depth 3 covers castling, en passant and promotions in all positions
+	for (int index = 0; index < Perft.POSITIONS.length; index++) {
+	    Perft perft = new Perft(new Board(Perft.POSITIONS[index]));
+	    for (int depth = 1; depth <= 3; depth++) {
+		assertEquals(Perft.POSITIONS[index], Perft.EXPECTED_NODES[index][depth - 1], perft.perft(depth));
+	    }
+	}
+    }
+    
+    @Test
+    public void testDivideSumsUpToPerft() {
+	Board board = new Board(Perft.POSITIONS[1]);
+	Map<String, Long> nodes = new Perft(board).divide(2);
+	
+	long total = 0L;
+	for (long count : nodes.values()) {
+	    total += count;
+	}
+	assertEquals(48, nodes.size());
+	assertEquals(2039L, total);
+	assertEquals(43L, nodes.get("e1g1").longValue());
+	
+	// The board is restored after counting
+	assertEquals(new Board(Perft.POSITIONS[1]).getId(), board.getId());
+    }
+    
+    @Test
+    public void testStartingPositionFromFen() {
+	assertEquals(new Board().getId(), new Board(Perft.POSITIONS[0]).getId());
+	assertEquals(0xF, new Board(Perft.POSITIONS[0]).getCastlingRights());
+	// The en passant tile is only kept if a pawn can capture, like after makeMove
+	Board board = new Board("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1");
+	assertEquals(-1, board.getEnPassantSquare());
+	Board movedBoard = new Board();
+	movedBoard.makeMove(Move.encode(12, 28));
+	assertEquals(movedBoard.getId(), board.getId());
+	assertEquals(20, new Board("rnbqkbnr/ppp1pppp/8/8/3pP3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1").getEnPassantSquare());
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedFen() {
+	new Board("rnbqkbnr/pppppppp/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1");
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testShortRankInFen() {
+	new Board("rnbqkbnr/ppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1");
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testEnPassantTileOfWrongPlayer() {
+	new Board("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR w KQkq e3 0 1");
+    }
+}
@@ -0,0 +1,120 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import pieces.ChessPiece;
+import pieces.ChessPieceContainer;
+import util.Color;
+import util.IdManager;
+import util.PositionKey;
+import core.Board;
+
+public class PositionKeyTest {
+    
+    private final IdManager idManager = new IdManager();
+    
+    @Test
+    public void testEqualBoardsHaveEqualKeys() {
+	PositionKey key = this.idManager.generateId(new Board().getBoardArray(), Color.WHITE);
+	PositionKey key2 = this.idManager.generateId(new Board().getBoardArray(), Color.WHITE);
+	
+	assertEquals(key, key2);
+	assertEquals(key.hashCode(), key2.hashCode());
+    }
+    
+    @Test
+    public void testMovingPlayerIsPartOfKey() {
+	ChessPiece[][] boardArray = new Board().getBoardArray();
+	
+	assertNotEquals(this.idManager.generateId(boardArray, Color.WHITE), this.idManager.generateId(boardArray, Color.BLACK));
+	assertEquals(Color.BLACK, this.idManager.generateId(boardArray, Color.BLACK).getMovingPlayer());
+    }
+    
+    @Test
+    public void testNibbles() {
+	ChessPiece[][] boardArray = new ChessPiece[8][8];
+	boardArray[0][0] = ChessPieceContainer.getWhiteRook();
+	boardArray[3][5] = ChessPieceContainer.getBlackQueen();
+	boardArray[7][7] = ChessPieceContainer.getBlackKing();
+	
+	PositionKey key = this.idManager.generateId(boardArray, Color.WHITE);
+	
+	assertEquals(IdManager.ROK, key.getNibble(0, 0));
+	assertEquals(IdManager.BLACK_PIECE | IdManager.QUN, key.getNibble(3, 5));
+	assertEquals(IdManager.BLACK_PIECE | IdManager.KNG, key.getNibble(7, 7));
+	assertEquals(0, key.getNibble(3, 4));
+    }
+    
+    @Test
+    public void testIncrementalIdEqualsScannedId() {
+	Board board = new Board();
+	PositionKey formerId = board.getId();
+	
+	assertEquals(this.idManager.generateId(board.getBoardArray(), board.getState()), formerId);
+	
+	// Move the white pawn from [1][4] to [3][4], then capture it with a
+	// black horse (makeMove does not validate moves)
+	long undo = board.makeMove((1 << 3) + 4, (3 << 3) + 4);
+	PositionKey scannedId = this.idManager.generateId(board.getBoardArray(), board.getState());
+	
+	assertEquals(scannedId, board.getId());
+	assertEquals(scannedId.getHash(), board.getId().getHash());
+	assertNotEquals(formerId.getHash(), board.getId().getHash());
+	
+	long undoCapture = board.makeMove((7 << 3) + 6, (3 << 3) + 4);
+	assertEquals(this.idManager.generateId(board.getBoardArray(), board.getState()), board.getId());
+	
+	// Unmaking both moves restores the former Id
+	board.unmakeMove(undoCapture);
+	board.unmakeMove(undo);
+	assertEquals(formerId, board.getId());
+	assertEquals(formerId.getHash(), board.getId().getHash());
+	assertSame(ChessPieceContainer.getWhitePawn(), board.getBoardArray()[1][4]);
+    }
+    
+    @Test
+    public void testGameStateIsPartOfKey() {
+	Board board = new Board("r3k2r/8/8/3pP3/8/8/8/R3K2R w KQkq d6 12 40");
+	PositionKey id = board.getId();
+	
+	assertEquals(Board.WHITE_KINGSIDE | Board.WHITE_QUEENSIDE | Board.BLACK_KINGSIDE | Board.BLACK_QUEENSIDE, id.getCastlingRights());
+	assertEquals(3, id.getEnPassantFile());
+	assertEquals(12, id.getHalfmoveClock());
+	assertFalse(id.isRepetition());
+	assertEquals(this.idManager.generateId(board.getBoardArray(), board.getState()), id);
+	
+	// Every field changes the key and the hash
+	String[] others = { "r3k2r/8/8/3pP3/8/8/8/R3K2R w KQk d6 12 40",
+			    "r3k2r/8/8/3pP3/8/8/8/R3K2R w KQkq - 12 40",
+			    "r3k2r/8/8/3pP3/8/8/8/R3K2R w KQkq d6 13 40" };
+	for (String other : others) {
+	    PositionKey otherId = new Board(other).getId();
+	    assertNotEquals(id, otherId);
+	    assertNotEquals(id.getHash(), otherId.getHash());
+	}
+	board.setRepetition(true);
+	assertTrue(board.getId().isRepetition());
+	assertNotEquals(id.getHash(), board.getId().getHash());
+	board.setRepetition(false);
+	assertEquals(id.getHash(), board.getId().getHash());
+	
+	// The Id restores the whole state
+	Board restored = new Board(id);
+	assertEquals(id, restored.getId());
+	assertEquals(id.getHash(), restored.getId().getHash());
+	assertEquals((5 << 3) + 3, restored.getEnPassantSquare());
+	
+	// A quiet move advances the clock and a pawn move resets it
+	long undo = board.makeMove((0 << 3) + 0, (1 << 3) + 0);
+	assertEquals(13, board.getHalfmoveClock());
+	assertEquals(Board.WHITE_KINGSIDE | Board.BLACK_KINGSIDE | Board.BLACK_QUEENSIDE, board.getCastlingRights());
+	board.unmakeMove(undo);
+	undo = board.makeMove((4 << 3) + 4, (5 << 3) + 4);
+	assertEquals(0, board.getHalfmoveClock());
+	board.unmakeMove(undo);
+	assertEquals(id, board.getId());
+	assertEquals(id.getHash(), board.getId().getHash());
+    }
+}
@@ -0,0 +1,60 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import core.Board;
+import core.ChessMap;
+import core.RetrogradeSolver;
+import util.PositionKey;
+
+public class RetrogradeSolverTest {
+    
+    private static RetrogradeSolver solve(ChessMap chessMap) throws Exception {
+	chessMap.build();
+	RetrogradeSolver solver = new RetrogradeSolver(chessMap.getIdManager(), new ForkJoinPool(4));
+	solver.solve();
+	return solver;
+    }
+    
+    @Test
+    public void testMateInOne() throws Exception {
+	PositionKey root = new Board("k7/8/1K6/8/8/8/8/7Q w - - 0 1").getId();
+	RetrogradeSolver solver = RetrogradeSolverTest.solve(new ChessMap(root, 2, Integer.MAX_VALUE, new ForkJoinPool(4), false));
+	
+	// Qh8# (and Qb7#) mate at once
+	assertEquals(RetrogradeSolver.WIN, solver.getResult(root));
+	assertEquals(1, solver.getDistanceToMate(0));
+	// The quiet queen move has advanced the halfmove clock
+	assertEquals(RetrogradeSolver.LOSS, solver.getResult(new Board("k6Q/8/1K6/8/8/8/8/8 b - - 1 1").getId()));
+	assertEquals(RetrogradeSolver.UNKNOWN, solver.getResult(new Board("k6Q/8/1K6/8/8/8/8/8 b - - 0 1").getId()));
+    }
+    
+    @Test
+    public void testForcedMate() throws Exception {
+	// Black is in check and only has Kb8, afterwards Qh8# or Qb7#
+	PositionKey root = new Board("k7/8/1K6/8/8/8/8/7Q b - - 0 1").getId();
+	RetrogradeSolver solver = RetrogradeSolverTest.solve(new ChessMap(root, 3, Integer.MAX_VALUE, new ForkJoinPool(4), false));
+	
+	assertEquals(RetrogradeSolver.LOSS, solver.getResult(root));
+	assertEquals(2, solver.getDistanceToMate(0));
+	assertEquals(3, solver.getWaveCount());
+    }
+    
+    @Test
+    public void testStalemateAndUnknown() throws Exception {
+	PositionKey stalemate = new Board("k7/8/1Q6/8/8/8/8/2K5 b - - 0 1").getId();
+	RetrogradeSolver solver = RetrogradeSolverTest.solve(new ChessMap(stalemate, 1, Integer.MAX_VALUE, new ForkJoinPool(1), false));
+	assertEquals(RetrogradeSolver.DRAW, solver.getResult(stalemate));
+	assertEquals(-1, solver.getDistanceToMate(0));
+	
+	// Without a mate within the map nothing can be decided
+	PositionKey start = new Board().getId();
+	solver = RetrogradeSolverTest.solve(new ChessMap(start, 2, Integer.MAX_VALUE, new ForkJoinPool(4), false));
+	assertEquals(0, solver.getSolvedCount());
+	assertEquals(RetrogradeSolver.UNKNOWN, solver.getResult(start));
+    }
+}
@@ -0,0 +1,60 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import core.Board;
+import core.Evaluation;
+import core.Perft;
+import core.Search;
+import util.Move;
+import util.TranspositionTable;
+
+public class SearchTest {
+    
+    @Test
+    public void testMateInOne() {
+	Search search = new Search(new Board("k7/8/1K6/8/8/8/8/7Q w - - 0 1"), new TranspositionTable(1 << 20));
+	String move = Move.toString(search.search(10, 1000L));
+	assertTrue(move, move.equals("h1h8") || move.equals("h1b7"));
+	assertEquals(Search.MATE - 1, search.getScore());
+    }
+    
+    @Test
+    public void testWinsHangingQueen() {
+	Board board = new Board("4k3/8/8/3q4/8/8/3R4/4K3 w - - 0 1");
+	Search search = new Search(board, new TranspositionTable(1 << 20));
+	assertEquals("d2d5", Move.toString(search.search(4, 1000L)));
+	assertTrue(search.getScore() > 300);
+	
+	// The board is restored after searching
+	assertEquals(new Board("4k3/8/8/3q4/8/8/3R4/4K3 w - - 0 1").getId(), board.getId());
+    }
+    
+    @Test
+    public void testNoMoves() {
+	// Stalemate
+	Search search = new Search(new Board("k7/2Q5/1K6/8/8/8/8/8 b - - 0 1"), new TranspositionTable(1 << 20));
+	assertEquals(0, search.search(5, 1000L));
+	assertEquals(0, search.getScore());
+    }
+    
+    @Test
+    public void testStopsAfterTime() {
+	Search search = new Search(new Board(Perft.POSITIONS[1]), new TranspositionTable(1 << 20));
+	long start = System.nanoTime();
+	assertNotEquals(0, search.search(Search.MAX_PLY, 50L));
+	assertTrue((System.nanoTime() - start) / 1000000 < 1000);
+	assertTrue(search.getCompletedDepth() >= 1);
+	assertTrue(search.getNodes() > 0);
+    }
+    
+    @Test
+    public void testSymmetricEvaluation() {
+	assertEquals(0, Evaluation.evaluate(new Board()));
+	// The colors swapped, so the moving player scores the same
+	assertEquals(Evaluation.evaluate(new Board(Perft.POSITIONS[1])),
+		     Evaluation.evaluate(new Board("r3k2r/pppbbppp/2n2q1P/1P2p3/3pn3/BN2PNP1/P1PPQPB1/R3K2R b KQkq - 0 1")));
+    }
+}
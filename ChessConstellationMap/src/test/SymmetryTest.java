@@ -0,0 +1,104 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import core.Board;
+import core.ChessMap;
+import pieces.ChessPiece;
+import pieces.ChessPieceContainer;
+import util.Color;
+import util.IdManager;
+import util.MoveList;
+import util.PositionKey;
+import util.Symmetry;
+
+public class SymmetryTest {
+    
+    private final IdManager idManager = new IdManager();
+    
+    /**
+     * White king e1 and rook a1 against the black king e8.
+     */
+    private PositionKey createEndgame(int whiteRookSquare) {
+	ChessPiece[][] boardArray = new ChessPiece[8][8];
+	boardArray[0][4] = ChessPieceContainer.getPiece(IdManager.KNG);
+	boardArray[whiteRookSquare >> 3][whiteRookSquare & 7] = ChessPieceContainer.getPiece(IdManager.ROK);
+	boardArray[7][4] = ChessPieceContainer.getPiece(IdManager.KNG | IdManager.BLACK_PIECE);
+	return this.idManager.generateId(boardArray, Color.WHITE);
+    }
+    
+    @Test
+    public void testTransformAndInverse() {
+	PositionKey id = this.createEndgame(0);
+	for (int transform = 0; transform < 8; transform++) {
+	    PositionKey transformed = Symmetry.transform(id, transform);
+	    assertEquals(id, Symmetry.transform(transformed, Symmetry.inverse(transform)));
+	    assertEquals(Symmetry.canonicalize(id), Symmetry.canonicalize(transformed));
+	    assertEquals(new Board(transformed).getId(), transformed);
+	}
+	assertEquals(IdManager.ROK, Symmetry.transform(id, Symmetry.ROTATE_90).getNibble(0, 7));
+    }
+    
+    @Test
+    public void testPawnsOnlyAllowMirroringFiles() {
+	PositionKey id = new Board("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w - - 0 1").getId();
+	PositionKey mirrored = Symmetry.transform(id, Symmetry.MIRROR_FILES);
+	assertEquals(Symmetry.canonicalize(id), Symmetry.canonicalize(mirrored));
+	assertNotEquals(Symmetry.canonicalize(id), Symmetry.canonicalize(Symmetry.transform(id, Symmetry.MIRROR_RANKS)));
+	
+	// Castling rights forbid every transform
+	assertEquals(Symmetry.IDENTITY, Symmetry.getCanonicalTransform(new Board().getId()));
+    }
+    
+    @Test
+    public void testReducedMap() throws Exception {
+	PositionKey rootId = this.createEndgame(0);
+	ChessMap chessMap = new ChessMap(rootId, 3, Integer.MAX_VALUE, new ForkJoinPool(2), false);
+	ChessMap reducedMap = new ChessMap(rootId, 3, Integer.MAX_VALUE, new ForkJoinPool(2), false);
+	reducedMap.setSymmetryReduction(true);
+	chessMap.build();
+	reducedMap.build();
+	assertTrue(reducedMap.getConstellationCount() < chessMap.getConstellationCount());
+	
+	// The constellation reached by a move can be restored from every relationship
+	IdManager reducedIdManager = reducedMap.getIdManager();
+	for (int index = 0; index < reducedIdManager.getConstellationCount(); index++) {
+	    if (!reducedIdManager.isComplete(index)) {
+		continue;
+	    }
+	    Board board = new Board(reducedIdManager.getId(index));
+	    MoveList moves = new MoveList();
+	    board.generateMoves(moves);
+	    assertEquals(moves.size(), reducedIdManager.getFollowingCount(index));
+	    for (int i = 0; i < moves.size(); i++) {
+		long undo = board.makeMove(moves.get(i));
+		PositionKey followingId = reducedIdManager.getId(reducedIdManager.getFollowingIndex(index, i));
+		assertEquals(board.getId(), Symmetry.transform(followingId, Symmetry.inverse(reducedIdManager.getFollowingTransform(index, i))));
+		board.unmakeMove(undo);
+	    }
+	}
+	
+	// The transforms are part of the saved map
+	Path path = Files.createTempFile("chessmap", ".bin");
+	try {
+	    reducedMap.save(path);
+	    IdManager mapped = ChessMap.open(path);
+	    for (int index = 0; index < reducedIdManager.getConstellationCount(); index++) {
+		for (int i = 0; i < reducedIdManager.getFollowingCount(index); i++) {
+		    assertEquals(reducedIdManager.getFollowingTransform(index, i), mapped.getFollowingTransform(index, i));
+		}
+		for (int i = 0; i < reducedIdManager.getFormerCount(index); i++) {
+		    assertEquals(reducedIdManager.getFormerTransform(index, i), mapped.getFormerTransform(index, i));
+		}
+	    }
+	} finally {
+	    Files.delete(path);
+	}
+    }
+}
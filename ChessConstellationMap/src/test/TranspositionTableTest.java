@@ -0,0 +1,79 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import util.Move;
+import util.TranspositionTable;
+
+public class TranspositionTableTest {
+    
+    @Test
+    public void testStoreAndProbe() {
+	TranspositionTable table = new TranspositionTable(1 << 10);
+	assertEquals(1 << 10, table.getSize());
+	assertEquals(0L, table.probe(0x123456789ABCDEFL));
+	
+	short move = Move.encode(12, 28);
+	table.store(0x123456789ABCDEFL, 7, TranspositionTable.LOWER, -300, move);
+	long data = table.probe(0x123456789ABCDEFL);
+	assertEquals(move, TranspositionTable.getMove(data));
+	assertEquals(-300, TranspositionTable.getScore(data));
+	assertEquals(7, TranspositionTable.getDepth(data));
+	assertEquals(TranspositionTable.LOWER, TranspositionTable.getBound(data));
+	
+	// Without a new best move the former one is kept
+	table.store(0x123456789ABCDEFL, 8, TranspositionTable.EXACT, 25, (short) 0);
+	data = table.probe(0x123456789ABCDEFL);
+	assertEquals(move, TranspositionTable.getMove(data));
+	assertEquals(8, TranspositionTable.getDepth(data));
+	
+	table.clear();
+	assertEquals(0L, table.probe(0x123456789ABCDEFL));
+    }
+    
+    @Test
+    public void testReplacement() {
+	// A single bucket: every hash competes for the same two entries
+	TranspositionTable table = new TranspositionTable(TranspositionTable.BUCKET_SIZE);
+	table.store(1L, 10, TranspositionTable.EXACT, 1, (short) 0);
+	table.store(2L, 3, TranspositionTable.EXACT, 2, (short) 0);
+	table.store(3L, 4, TranspositionTable.EXACT, 3, (short) 0);
+	
+	// The deep entry is preferred, the shallow ones replace each other
+	assertEquals(10, TranspositionTable.getDepth(table.probe(1L)));
+	assertEquals(0L, table.probe(2L));
+	assertEquals(4, TranspositionTable.getDepth(table.probe(3L)));
+	
+	// Entries of a former search can be replaced by shallower ones
+	table.newSearch();
+	table.store(4L, 1, TranspositionTable.UPPER, 4, (short) 0);
+	assertEquals(0L, table.probe(1L));
+	assertEquals(TranspositionTable.UPPER, TranspositionTable.getBound(table.probe(4L)));
+	assertEquals(3, TranspositionTable.getScore(table.probe(3L)));
+    }
+    
+    @Test
+    public void testConcurrentAccess() {
+	TranspositionTable table = new TranspositionTable(1 << 12);
+	AtomicInteger corrupt = new AtomicInteger();
+	
+	// Every hash stores a score derived from itself, so a probe must never
+	// return the score of another hash
+	new ForkJoinPool(4).invoke(ForkJoinTask.adapt(() -> IntStream.range(0, 1 << 20).parallel().forEach(i -> {
+	    long hash = (i % 4096) * 0x9E3779B97F4A7C15L;
+	    table.store(hash, i & 0xFF, TranspositionTable.EXACT, (int) (hash >>> 49), (short) 0);
+	    long data = table.probe(hash);
+	    if (data != 0 && TranspositionTable.getScore(data) != (int) (hash >>> 49)) {
+		corrupt.incrementAndGet();
+	    }
+	})));
+	assertEquals(0, corrupt.get());
+    }
+}
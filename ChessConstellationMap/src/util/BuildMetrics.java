@@ -0,0 +1,248 @@
+package util;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counts what happens while a map is built, so that a falling throughput or
+ * a growing memory footprint can be noticed long before the build fails.<br/>
+ * <br/>
+ * <b>Enhanced description:</b><br/>
+ * All counters are {@link LongAdder}s: Every thread increments its own
+ * striped cell, so that the threads of the build don't contend for a single
+ * cache line. Reading a counter sums up all cells and is only done by the
+ * {@link MetricsReporter} and JMX (see {@link #register(String)}).<br/>
+ * Besides the totals, every ply has its own counters and a histogram of the
+ * number of following constellations per expanded constellation. The ply
+ * is started by the thread which coordinates the build (see
+ * {@link #startPly(int, long)}), all counts recorded afterwards are
+ * attributed to it.<br/>
+ * 
+ * @author Andy
+ */
+public class BuildMetrics implements BuildMetricsMXBean {
+    
+    /**
+     * The number of buckets of a branching histogram, the last one counts all
+     * constellations with at least {@code BRANCHING_BUCKETS - 1} following
+     * constellations.
+     */
+    public final static int BRANCHING_BUCKETS = 64;
+    
+    /**
+     * The counters of one ply.
+     */
+    private final static class PlyMetrics {
+	
+	private PlyMetrics(long frontierSize) {
+	    this.frontierSize = frontierSize;
+	    for (int bucket = 0; bucket < BRANCHING_BUCKETS; bucket++) {
+		this.branching[bucket] = new LongAdder();
+	    }
+	}
+	
+	private final long frontierSize;
+	private final LongAdder nodesCreated = new LongAdder();
+	private final LongAdder transpositionHits = new LongAdder();
+	private final LongAdder[] branching = new LongAdder[BRANCHING_BUCKETS];
+    }
+    
+    private final LongAdder nodesCreated = new LongAdder();
+    private final LongAdder transpositionHits = new LongAdder();
+    private final LongAdder edgesAdded = new LongAdder();
+    private final LongAdder nodesExpanded = new LongAdder();
+    
+    private final List<PlyMetrics> plies = new CopyOnWriteArrayList<PlyMetrics>();
+    
+    /**
+     * The ply all counts are attributed to, null until the first ply is
+     * started. Counts recorded before are only added to the totals.
+     */
+    private volatile PlyMetrics currentPly = null;
+    
+    private final long startNanos = System.nanoTime();
+    
+    /**
+     * Starts a new ply.
+     * 
+     * @param ply
+     *        - the ply, has to be the number of plies started before
+     * @param frontierSize
+     *        - the number of constellations of the ply
+     */
+    public void startPly(int ply, long frontierSize) {
+	if (ply != this.plies.size()) {
+	    throw new IllegalArgumentException("Expected ply " + this.plies.size() + " but ply " + ply + " was started");
+	}
+	PlyMetrics plyMetrics = new PlyMetrics(frontierSize);
+	this.plies.add(plyMetrics);
+	this.currentPly = plyMetrics;
+    }
+    
+    public void recordNodeCreated() {
+	this.nodesCreated.increment();
+	PlyMetrics ply = this.currentPly;
+	if (ply != null) {
+	    ply.nodesCreated.increment();
+	}
+    }
+    
+    /**
+     * Records that several constellations have been created at once, e.g. a
+     * whole ply of an external build.
+     */
+    public void recordNodesCreated(long count) {
+	this.nodesCreated.add(count);
+	PlyMetrics ply = this.currentPly;
+	if (ply != null) {
+	    ply.nodesCreated.add(count);
+	}
+    }
+    
+    public void recordTranspositionHit() {
+	this.transpositionHits.increment();
+	PlyMetrics ply = this.currentPly;
+	if (ply != null) {
+	    ply.transpositionHits.increment();
+	}
+    }
+    
+    public void recordEdgesAdded(int count) {
+	this.edgesAdded.add(count);
+    }
+    
+    /**
+     * @param followingCount
+     *        - the number of following constellations of the expanded
+     *        constellation
+     */
+    public void recordExpansion(int followingCount) {
+	this.nodesExpanded.increment();
+	PlyMetrics ply = this.currentPly;
+	if (ply != null) {
+	    ply.branching[Math.min(followingCount, BRANCHING_BUCKETS - 1)].increment();
+	}
+    }
+    
+    @Override
+    public long getNodesCreated() {
+	return this.nodesCreated.sum();
+    }
+    
+    @Override
+    public long getTranspositionHits() {
+	return this.transpositionHits.sum();
+    }
+    
+    @Override
+    public long getEdgesAdded() {
+	return this.edgesAdded.sum();
+    }
+    
+    @Override
+    public long getNodesExpanded() {
+	return this.nodesExpanded.sum();
+    }
+    
+    @Override
+    public long getNodesPerSecond() {
+	long nanos = Math.max(System.nanoTime() - this.startNanos, 1L);
+	return (long) (this.getNodesCreated() * 1e9 / nanos);
+    }
+    
+    @Override
+    public int getCurrentPly() {
+	return this.plies.size() - 1;
+    }
+    
+    @Override
+    public long[] getFrontierSizes() {
+	long[] frontierSizes = new long[this.plies.size()];
+	for (int ply = 0; ply < frontierSizes.length; ply++) {
+	    frontierSizes[ply] = this.plies.get(ply).frontierSize;
+	}
+	return frontierSizes;
+    }
+    
+    @Override
+    public long[] getNodesCreatedPerPly() {
+	long[] nodesCreated = new long[this.plies.size()];
+	for (int ply = 0; ply < nodesCreated.length; ply++) {
+	    nodesCreated[ply] = this.plies.get(ply).nodesCreated.sum();
+	}
+	return nodesCreated;
+    }
+    
+    @Override
+    public long[] getTranspositionHitsPerPly() {
+	long[] transpositionHits = new long[this.plies.size()];
+	for (int ply = 0; ply < transpositionHits.length; ply++) {
+	    transpositionHits[ply] = this.plies.get(ply).transpositionHits.sum();
+	}
+	return transpositionHits;
+    }
+    
+    @Override
+    public long[] getBranchingHistogram(int ply) {
+	long[] histogram = new long[BRANCHING_BUCKETS];
+	for (int bucket = 0; bucket < BRANCHING_BUCKETS; bucket++) {
+	    histogram[bucket] = this.plies.get(ply).branching[bucket].sum();
+	}
+	return histogram;
+    }
+    
+    @Override
+    public long getHeapBytesUsed() {
+	return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+    
+    @Override
+    public long getOffHeapBytesUsed() {
+	long bytes = 0L;
+	for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+	    bytes += Math.max(pool.getMemoryUsed(), 0L);
+	}
+	return bytes;
+    }
+    
+    /**
+     * Registers the metrics at the platform MBean server as
+     * {@code chessmap:type=BuildMetrics,name=<name>}.
+     * 
+     * @param name
+     *        - distinguishes several builds within one JVM
+     * @return the name of the registered MBean, needed to unregister it
+     * @throws JMException
+     *         if the name is invalid or already registered
+     */
+    public ObjectName register(String name) throws JMException {
+	MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+	ObjectName objectName = new ObjectName("chessmap:type=BuildMetrics,name=" + ObjectName.quote(name));
+	server.registerMBean(this, objectName);
+	return objectName;
+    }
+    
+    /**
+     * @return a single line with the totals, the frontier of the current ply
+     *         and the memory in use
+     */
+    @Override
+    public String toString() {
+	int ply = this.getCurrentPly();
+	return "ply " + ply
+	       + (ply < 0 ? "" : " (frontier " + this.plies.get(ply).frontierSize + ")")
+	       + ", nodes " + this.getNodesCreated()
+	       + ", transpositions " + this.getTranspositionHits()
+	       + ", edges " + this.getEdgesAdded()
+	       + ", " + this.getNodesPerSecond() + " nodes/s"
+	       + ", heap " + (this.getHeapBytesUsed() >> 20) + " MB"
+	       + ", off-heap " + (this.getOffHeapBytesUsed() >> 20) + " MB";
+    }
+}
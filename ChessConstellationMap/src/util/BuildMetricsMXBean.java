@@ -0,0 +1,79 @@
+package util;
+
+/**
+ * Management interface of {@link BuildMetrics}, registered by
+ * {@link BuildMetrics#register(String)} so that a running build can be
+ * watched with any JMX console (e.g. JConsole or VisualVM).<br/>
+ * 
+ * @author Andy
+ */
+public interface BuildMetricsMXBean {
+    
+    /**
+     * @return the number of constellations added to the idManager
+     */
+    public long getNodesCreated();
+    
+    /**
+     * @return the number of following constellations which have already been
+     *         known
+     */
+    public long getTranspositionHits();
+    
+    /**
+     * @return the number of relationships added to the idManager
+     */
+    public long getEdgesAdded();
+    
+    /**
+     * @return the number of constellations which have been expanded
+     */
+    public long getNodesExpanded();
+    
+    /**
+     * @return the average number of constellations created per second since
+     *         the build has started
+     */
+    public long getNodesPerSecond();
+    
+    /**
+     * @return the ply which is currently expanded, -1 before the build
+     */
+    public int getCurrentPly();
+    
+    /**
+     * @return the number of constellations of every ply which has been
+     *         started, indexed by the ply
+     */
+    public long[] getFrontierSizes();
+    
+    /**
+     * @return the number of constellations created while expanding each ply
+     */
+    public long[] getNodesCreatedPerPly();
+    
+    /**
+     * @return the number of transposition hits while expanding each ply
+     */
+    public long[] getTranspositionHitsPerPly();
+    
+    /**
+     * @param ply
+     *        - the ply of the expanded constellations
+     * @return entry i is the number of constellations of the ply with i
+     *         following constellations, the last entry counts all larger
+     *         numbers
+     */
+    public long[] getBranchingHistogram(int ply);
+    
+    /**
+     * @return the bytes of the heap which are in use
+     */
+    public long getHeapBytesUsed();
+    
+    /**
+     * @return the bytes of all direct and memory mapped buffers, e.g. of an
+     *         {@link OffHeapIndex} or a {@link ConstellationFile}
+     */
+    public long getOffHeapBytesUsed();
+}
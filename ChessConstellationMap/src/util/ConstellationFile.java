@@ -0,0 +1,370 @@
+package util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Read only view of a constellation map which has been written to a file.<br/>
+ * <br/>
+ * <b>Enhanced description:</b><br/>
+ * The file is mapped into memory ({@link FileChannel#map}) instead of being
+ * loaded onto the heap, so that maps which are larger than the heap can be
+ * queried. Only the pages which are actually read are loaded by the operating
+ * system.<br/>
+ * Layout of the file (big endian):<br/>
+ * <ul>
+ * <li><b>header</b> ({@link #HEADER_SIZE} bytes): magic number, version,
+ * number of nodes and relationships, capacity of the lookup table and a CRC32
+ * checksum of every section and of the header itself</li>
+ * <li><b>nodes</b> ({@link #NODE_SIZE} bytes per node): the four longs of the
+ * node's {@link PositionKey}, its hash, its state and its flags (bit 0 =
+ * complete, bit 1 = drawn)</li>
+ * <li><b>relationships</b>: the compressed sparse rows of the following and
+ * of the former constellations (offsets and targets, see
+ * {@link EdgeStore}), followed by the symmetry transform of every
+ * relationship (one byte each, see {@link Symmetry}) in the order of the
+ * following and of the former targets, padded to a multiple of 4 bytes</li>
+ * <li><b>lookup table</b>: open addressing table of node indices + 1 (0 =
+ * empty slot), the slot of an ID is derived from its hash, collisions are
+ * resolved by linear probing</li>
+ * </ul>
+ * 
+ * @author Andy
+ */
+public class ConstellationFile {
+    
+    private final static long MAGIC = 0x436F6E73744D6170L; // "ConstMap"
+    private final static int VERSION = 2;
+    
+    private final static int HEADER_SIZE = 64;
+    private final static int NODE_SIZE = 48;
+    private final static int COMPLETE = 1;
+    private final static int DRAWN = 2;
+    
+    /**
+     * Size of the parts a section is mapped in, since a single mapping can't
+     * exceed 2 GB. A multiple of {@link #NODE_SIZE} and 8, so that no value
+     * crosses the border of two parts.
+     */
+    private final static long CHUNK_SIZE = (long) NODE_SIZE << 24;
+    
+    private ConstellationFile(Path path) throws IOException {
+	try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+	    if (channel.size() < HEADER_SIZE) {
+		throw new IOException(path + " is no constellation file (too small)");
+	    }
+	    ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+	    if (header.getLong(0) != MAGIC || header.getInt(8) != VERSION) {
+		throw new IOException(path + " is no constellation file of version " + VERSION);
+	    }
+	    CRC32 headerCrc = new CRC32();
+	    headerCrc.update(header.duplicate().limit(HEADER_SIZE - 4));
+	    if ((int) headerCrc.getValue() != header.getInt(HEADER_SIZE - 4)) {
+		throw new IOException(path + " has a corrupt header");
+	    }
+	    
+	    this.nodeCount = header.getInt(12);
+	    this.edgeCount = header.getInt(16);
+	    this.tableCapacity = header.getInt(20);
+	    this.nodesCrc = header.getInt(24);
+	    this.edgesCrc = header.getInt(28);
+	    this.tableCrc = header.getInt(32);
+	    
+	    long offset = HEADER_SIZE;
+	    this.nodes = new Section(channel, offset, (long) this.nodeCount * NODE_SIZE);
+	    offset += this.nodes.length;
+	    this.followingOffsets = new Section(channel, offset, 4L * (this.nodeCount + 1));
+	    offset += this.followingOffsets.length;
+	    this.followingTargets = new Section(channel, offset, 4L * this.edgeCount);
+	    offset += this.followingTargets.length;
+	    this.formerOffsets = new Section(channel, offset, 4L * (this.nodeCount + 1));
+	    offset += this.formerOffsets.length;
+	    this.formerTargets = new Section(channel, offset, 4L * this.edgeCount);
+	    offset += this.formerTargets.length;
+	    this.followingTransforms = new Section(channel, offset, this.edgeCount);
+	    offset += this.followingTransforms.length;
+	    this.formerTransforms = new Section(channel, offset, this.edgeCount);
+	    offset += ConstellationFile.pad(2L * this.edgeCount) - this.followingTransforms.length;
+	    this.table = new Section(channel, offset, 4L * this.tableCapacity);
+	}
+    }
+    
+    private final int nodeCount, edgeCount, tableCapacity;
+    private final int nodesCrc, edgesCrc, tableCrc;
+    private final Section nodes, followingOffsets, followingTargets, formerOffsets, formerTargets, followingTransforms, formerTransforms,
+	    table;
+    
+    /**
+     * Maps the file into memory. Only the header is checked, see
+     * {@link #verifyChecksums()}.
+     * 
+     * @param path
+     *        - the file written by {@link #write(IdManager, Path)}
+     * @throws IOException
+     *         if the file can't be read or is no constellation file
+     */
+    public static ConstellationFile open(Path path) throws IOException {
+	return new ConstellationFile(path);
+    }
+    
+    /**
+     * Writes all constellations and relationships of the idManager into a
+     * file. The relationships must have been frozen (see
+     * {@link IdManager#freezeRelationships()}).
+     * 
+     * @param idManager
+     *        - the idManager of the map
+     * @param path
+     *        - the file, an existing file is overwritten
+     * @throws IOException
+     *         if the file can't be written
+     */
+    public static void write(IdManager idManager, Path path) throws IOException {
+	int nodeCount = idManager.getConstellationCount();
+	int edgeCount = 0;
+	int tableCapacity = Integer.highestOneBit(Math.max(nodeCount, 1)) << 2;
+	int[] table = new int[tableCapacity];
+	int nodesCrc, edgesCrc, tableCrc;
+	
+	try (CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16), new CRC32());
+		DataOutputStream out = new DataOutputStream(checked)) {
+	    out.write(new byte[HEADER_SIZE]);
+	    
+	    // 1. nodes
+	    checked.getChecksum().reset();
+	    for (int index = 0; index < nodeCount; index++) {
+		PositionKey id = idManager.getId(index);
+		for (int i = 0; i < 4; i++) {
+		    out.writeLong(id.getSquares(i));
+		}
+		out.writeLong(id.getHash());
+		out.writeInt(id.getState());
+		out.writeInt((idManager.isComplete(index) ? COMPLETE : 0) | (idManager.isDrawn(index) ? DRAWN : 0));
+		
+		int slot = ConstellationFile.getSlot(id, tableCapacity);
+		while (table[slot] != 0) {
+		    slot = (slot + 1) & (tableCapacity - 1);
+		}
+		table[slot] = index + 1;
+	    }
+	    out.flush();
+	    nodesCrc = (int) checked.getChecksum().getValue();
+	    
+	    // 2. relationships, following before former
+	    checked.getChecksum().reset();
+	    for (int direction = 0; direction < 2; direction++) {
+		int offset = 0;
+		out.writeInt(offset);
+		for (int index = 0; index < nodeCount; index++) {
+		    offset += direction == 0 ? idManager.getFollowingCount(index) : idManager.getFormerCount(index);
+		    out.writeInt(offset);
+		}
+		for (int index = 0; index < nodeCount; index++) {
+		    if (direction == 0) {
+			for (int i = 0; i < idManager.getFollowingCount(index); i++) {
+			    out.writeInt(idManager.getFollowingIndex(index, i));
+			}
+		    } else {
+			for (int i = 0; i < idManager.getFormerCount(index); i++) {
+			    out.writeInt(idManager.getFormerIndex(index, i));
+			}
+		    }
+		}
+		edgeCount = offset;
+	    }
+	    for (int direction = 0; direction < 2; direction++) {
+		for (int index = 0; index < nodeCount; index++) {
+		    if (direction == 0) {
+			for (int i = 0; i < idManager.getFollowingCount(index); i++) {
+			    out.writeByte(idManager.getFollowingTransform(index, i));
+			}
+		    } else {
+			for (int i = 0; i < idManager.getFormerCount(index); i++) {
+			    out.writeByte(idManager.getFormerTransform(index, i));
+			}
+		    }
+		}
+	    }
+	    out.write(new byte[(int) (ConstellationFile.pad(2L * edgeCount) - 2L * edgeCount)]);
+	    out.flush();
+	    edgesCrc = (int) checked.getChecksum().getValue();
+	    
+	    // 3. lookup table
+	    checked.getChecksum().reset();
+	    for (int slot = 0; slot < tableCapacity; slot++) {
+		out.writeInt(table[slot]);
+	    }
+	    out.flush();
+	    tableCrc = (int) checked.getChecksum().getValue();
+	}
+	
+	// 4. header
+	ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+	header.putLong(0, MAGIC).putInt(8, VERSION).putInt(12, nodeCount).putInt(16, edgeCount).putInt(20, tableCapacity);
+	header.putInt(24, nodesCrc).putInt(28, edgesCrc).putInt(32, tableCrc);
+	CRC32 headerCrc = new CRC32();
+	headerCrc.update(header.array(), 0, HEADER_SIZE - 4);
+	header.putInt(HEADER_SIZE - 4, (int) headerCrc.getValue());
+	try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+	    channel.write(header, 0);
+	}
+    }
+    
+    /**
+     * @return the length rounded up to a multiple of 4
+     */
+    private static long pad(long length) {
+	return (length + 3) & ~3L;
+    }
+    
+    private static int getSlot(PositionKey id, int tableCapacity) {
+	return id.hashCode() & (tableCapacity - 1);
+    }
+    
+    /**
+     * Reads all sections and compares their checksums with the ones in the
+     * header.
+     * 
+     * @throws IOException
+     *         if a section is corrupt
+     */
+    public void verifyChecksums() throws IOException {
+	CRC32 edges = new CRC32();
+	this.followingOffsets.update(edges);
+	this.followingTargets.update(edges);
+	this.formerOffsets.update(edges);
+	this.formerTargets.update(edges);
+	this.followingTransforms.update(edges);
+	this.formerTransforms.update(edges);
+	edges.update(new byte[(int) (ConstellationFile.pad(2L * this.edgeCount) - 2L * this.edgeCount)]);
+	
+	if (this.nodes.getChecksum() != this.nodesCrc || (int) edges.getValue() != this.edgesCrc || this.table.getChecksum() != this.tableCrc) {
+	    throw new IOException("The constellation file is corrupt");
+	}
+    }
+    
+    /**
+     * @return the index of the constellation with the ID, -1 if it is not
+     *         contained
+     */
+    public int getIndex(PositionKey id) {
+	int slot = ConstellationFile.getSlot(id, this.tableCapacity);
+	int entry;
+	while ((entry = this.table.getInt(4L * slot)) != 0) {
+	    if (this.nodes.getLong((long) (entry - 1) * NODE_SIZE + 32) == id.getHash() && id.equals(this.getId(entry - 1))) {
+		return entry - 1;
+	    }
+	    slot = (slot + 1) & (this.tableCapacity - 1);
+	}
+	return -1;
+    }
+    
+    public PositionKey getId(int index) {
+	long position = (long) index * NODE_SIZE;
+	return new PositionKey(this.nodes.getLong(position),
+			       this.nodes.getLong(position + 8),
+			       this.nodes.getLong(position + 16),
+			       this.nodes.getLong(position + 24),
+			       this.nodes.getInt(position + 40),
+			       this.nodes.getLong(position + 32));
+    }
+    
+    public Color getMovingPlayer(int index) {
+	return (this.nodes.getInt((long) index * NODE_SIZE + 40) & PositionKey.BLACK_TO_MOVE) != 0 ? Color.BLACK : Color.WHITE;
+    }
+    
+    public boolean isComplete(int index) {
+	return (this.nodes.getInt((long) index * NODE_SIZE + 44) & COMPLETE) != 0;
+    }
+    
+    public boolean isDrawn(int index) {
+	return (this.nodes.getInt((long) index * NODE_SIZE + 44) & DRAWN) != 0;
+    }
+    
+    public int getFollowingCount(int index) {
+	return this.followingOffsets.getInt(4L * (index + 1)) - this.followingOffsets.getInt(4L * index);
+    }
+    
+    public int getFollowingIndex(int index, int i) {
+	return this.followingTargets.getInt(4L * (this.followingOffsets.getInt(4L * index) + i));
+    }
+    
+    public int getFollowingTransform(int index, int i) {
+	return this.followingTransforms.getByte(this.followingOffsets.getInt(4L * index) + i);
+    }
+    
+    public int getFormerCount(int index) {
+	return this.formerOffsets.getInt(4L * (index + 1)) - this.formerOffsets.getInt(4L * index);
+    }
+    
+    public int getFormerIndex(int index, int i) {
+	return this.formerTargets.getInt(4L * (this.formerOffsets.getInt(4L * index) + i));
+    }
+    
+    public int getFormerTransform(int index, int i) {
+	return this.formerTransforms.getByte(this.formerOffsets.getInt(4L * index) + i);
+    }
+    
+    public int getNodeCount() {
+	return this.nodeCount;
+    }
+    
+    public int getEdgeCount() {
+	return this.edgeCount;
+    }
+    
+    /**
+     * A part of the file which is mapped in chunks of {@link #CHUNK_SIZE}
+     * bytes.
+     */
+    private static class Section {
+	
+	private Section(FileChannel channel, long offset, long length) throws IOException {
+	    if (offset + length > channel.size()) {
+		throw new IOException("The constellation file is truncated");
+	    }
+	    this.length = length;
+	    this.chunks = new MappedByteBuffer[(int) ((length + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+	    for (int i = 0; i < this.chunks.length; i++) {
+		long start = i * CHUNK_SIZE;
+		this.chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset + start, Math.min(CHUNK_SIZE, length - start));
+	    }
+	}
+	
+	private final long length;
+	private final MappedByteBuffer[] chunks;
+	
+	private byte getByte(long position) {
+	    return this.chunks[(int) (position / CHUNK_SIZE)].get((int) (position % CHUNK_SIZE));
+	}
+	
+	private int getInt(long position) {
+	    return this.chunks[(int) (position / CHUNK_SIZE)].getInt((int) (position % CHUNK_SIZE));
+	}
+	
+	private long getLong(long position) {
+	    return this.chunks[(int) (position / CHUNK_SIZE)].getLong((int) (position % CHUNK_SIZE));
+	}
+	
+	private void update(CRC32 crc) {
+	    for (MappedByteBuffer chunk : this.chunks) {
+		crc.update(chunk.duplicate());
+	    }
+	}
+	
+	private int getChecksum() {
+	    CRC32 crc = new CRC32();
+	    this.update(crc);
+	    return (int) crc.getValue();
+	}
+    }
+}
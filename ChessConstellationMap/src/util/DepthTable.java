@@ -0,0 +1,91 @@
+package util;
+
+/**
+ * Table of fixed size which remembers up to which depth constellations have
+ * been explored, e.g. by {@link core.ChessMap#explore(int, java.util.function.Consumer)}.
+ * <br/>
+ * <br/>
+ * <b>Enhanced description:</b><br/>
+ * Every entry is a single long: The hash of the constellation (see
+ * {@link Zobrist}) whose lowest {@link #DEPTH_BITS} bits are replaced by the
+ * explored depth + 1, so that 0 marks an empty slot. The slot of a
+ * constellation is selected by the upper bits of its hash and a new entry
+ * always replaces the old one, therefore the table never grows and its memory
+ * doesn't depend on the number of constellations. A constellation which has
+ * been forgotten is just explored again.<br/>
+ * Constellations are only told apart by their hash, so two constellations
+ * whose hashes only differ in the lowest bits are confused.<br/>
+ * Not thread safe.<br/>
+ * 
+ * @author Andy
+ */
+public final class DepthTable {
+    
+    private final static int DEPTH_BITS = 8;
+    private final static long DEPTH_MASK = (1L << DEPTH_BITS) - 1;
+    
+    /**
+     * The deepest depth which can be stored.
+     */
+    public final static int MAX_DEPTH = (int) DEPTH_MASK - 1;
+    
+    /**
+     * @param size
+     *        - the maximum number of entries, the table uses the largest power
+     *        of two which is not larger
+     */
+    public DepthTable(int size) {
+	if (size < 1) {
+	    throw new IllegalArgumentException("Invalid size of a DepthTable: " + size);
+	}
+	this.entries = new long[Integer.highestOneBit(size)];
+	this.shift = Long.numberOfLeadingZeros(this.entries.length - 1);
+    }
+    
+    private final long[] entries;
+    
+    /**
+     * Shifts a hash to the index of its slot.
+     */
+    private final int shift;
+    
+    private int getSlot(long hash) {
+	return this.entries.length == 1 ? 0 : (int) (hash >>> this.shift);
+    }
+    
+    /**
+     * @param hash
+     *        - the hash of a constellation
+     * @return the depth up to which the constellation has been explored, -1 if
+     *         it is not contained
+     */
+    public int getDepth(long hash) {
+	long entry = this.entries[this.getSlot(hash)];
+	if (entry == 0 || (entry & ~DEPTH_MASK) != (hash & ~DEPTH_MASK)) {
+	    return -1;
+	}
+	return (int) (entry & DEPTH_MASK) - 1;
+    }
+    
+    /**
+     * Remembers that a constellation has been explored up to a depth.
+     * 
+     * @param hash
+     *        - the hash of the constellation
+     * @param depth
+     *        - 0 to {@link #MAX_DEPTH}
+     */
+    public void put(long hash, int depth) {
+	if (depth < 0 || depth > MAX_DEPTH) {
+	    throw new IllegalArgumentException("Invalid depth: " + depth);
+	}
+	this.entries[this.getSlot(hash)] = (hash & ~DEPTH_MASK) | (depth + 1);
+    }
+    
+    /**
+     * @return the number of entries
+     */
+    public int size() {
+	return this.entries.length;
+    }
+}
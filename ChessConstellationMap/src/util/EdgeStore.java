@@ -0,0 +1,231 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Stores the relationships between constellations as pairs of node indices
+ * (see {@link IdManager#getIndex(PositionKey)}).<br/>
+ * <br/>
+ * <b>Enhanced description:</b><br/>
+ * While the map is built, every relationship is appended to one
+ * {@code long[]} (8 bytes per relationship). Once the map is built the store
+ * is frozen into the compressed sparse row layout, once for the following and
+ * once for the former constellations:<br/>
+ * <ul>
+ * <li><b>offsets</b>: {@code offsets[node]} to {@code offsets[node + 1] - 1}
+ * are the positions of the node's neighbours in the targets array</li>
+ * <li><b>targets</b>: the indices of the neighbours, grouped by node</li>
+ * </ul>
+ * This needs 8 bytes per relationship (4 bytes per direction) plus 8 bytes
+ * per node, regardless of how many neighbours a node has.<br/>
+ * If the map is reduced by symmetries, every relationship additionally
+ * carries the transform which maps the constellation reached by the move
+ * onto the stored following constellation (see {@link Symmetry}).<br/>
+ * 
+ * @author Andy
+ */
+public class EdgeStore {
+    
+    private final static int INITIAL_CAPACITY = 1 << 10;
+    
+    /**
+     * The relationships which have been added before the store was frozen,
+     * former index in the upper and following index in the lower 32 bits.
+     */
+    private long[] edges = new long[INITIAL_CAPACITY];
+    
+    /**
+     * The symmetry transforms of the relationships (see {@link Symmetry}),
+     * parallel to {@link #edges}. Only allocated once a relationship with a
+     * transform other than {@link Symmetry#IDENTITY} is added.
+     */
+    private byte[] transforms = null;
+    
+    private int edgeCount = 0;
+    
+    private int[] followingOffsets, followingTargets, formerOffsets, formerTargets;
+    
+    private byte[] followingTransforms, formerTransforms;
+    
+    private volatile boolean frozen = false;
+    
+    /**
+     * @param former
+     *        - the index of the former constellation
+     * @param following
+     *        - the index of the following constellation
+     * @throws IllegalStateException
+     *         if the store is already frozen
+     */
+    public synchronized void addEdge(int former, int following) throws IllegalStateException {
+	this.ensureCapacity(1);
+	this.edges[this.edgeCount++] = ((long) former << 32) | (following & 0xFFFFFFFFL);
+    }
+    
+    /**
+     * Adds the relationships of one former constellation at once, so that the
+     * store is only locked once per constellation.
+     * 
+     * @param former
+     *        - the index of the former constellation
+     * @param following
+     *        - the indices of the following constellations
+     * @param count
+     *        - the number of valid entries in {@code following}
+     * @throws IllegalStateException
+     *         if the store is already frozen
+     */
+    public void addEdges(int former, int[] following, int count) throws IllegalStateException {
+	this.addEdges(former, following, null, count);
+    }
+    
+    /**
+     * Adds the relationships of one former constellation at once together with
+     * their symmetry transforms.
+     * 
+     * @param former
+     *        - the index of the former constellation
+     * @param following
+     *        - the indices of the following constellations
+     * @param transforms
+     *        - the transforms of the relationships (see {@link Symmetry}),
+     *        null if all of them are {@link Symmetry#IDENTITY}
+     * @param count
+     *        - the number of valid entries in {@code following}
+     * @throws IllegalStateException
+     *         if the store is already frozen
+     */
+    public synchronized void addEdges(int former, int[] following, byte[] transforms, int count) throws IllegalStateException {
+	this.ensureCapacity(count);
+	if (transforms != null && this.transforms == null) {
+	    this.transforms = new byte[this.edges.length];
+	}
+	for (int i = 0; i < count; i++) {
+	    if (this.transforms != null) {
+		this.transforms[this.edgeCount] = transforms == null ? Symmetry.IDENTITY : transforms[i];
+	    }
+	    this.edges[this.edgeCount++] = ((long) former << 32) | (following[i] & 0xFFFFFFFFL);
+	}
+    }
+    
+    private void ensureCapacity(int additionalEdges) {
+	if (this.frozen) {
+	    throw new IllegalStateException("No relationships can be added to a frozen EdgeStore!");
+	}
+	if (this.edgeCount + additionalEdges > this.edges.length) {
+	    this.edges = Arrays.copyOf(this.edges, Math.max(this.edges.length << 1, this.edgeCount + additionalEdges));
+	    if (this.transforms != null) {
+		this.transforms = Arrays.copyOf(this.transforms, this.edges.length);
+	    }
+	}
+    }
+    
+    /**
+     * Converts the added relationships into the compressed sparse row layout
+     * and releases the buffer they were collected in. The order of the
+     * neighbours of a node is the order in which they were added.
+     * 
+     * @param nodeCount
+     *        - the number of nodes, all indices must be smaller
+     */
+    public synchronized void freeze(int nodeCount) {
+	if (this.frozen) {
+	    return;
+	}
+	
+	this.followingOffsets = new int[nodeCount + 1];
+	this.formerOffsets = new int[nodeCount + 1];
+	for (int i = 0; i < this.edgeCount; i++) {
+	    this.followingOffsets[(int) (this.edges[i] >>> 32) + 1]++;
+	    this.formerOffsets[(int) this.edges[i] + 1]++;
+	}
+	for (int node = 0; node < nodeCount; node++) {
+	    this.followingOffsets[node + 1] += this.followingOffsets[node];
+	    this.formerOffsets[node + 1] += this.formerOffsets[node];
+	}
+	
+	this.followingTargets = new int[this.edgeCount];
+	this.formerTargets = new int[this.edgeCount];
+	if (this.transforms != null) {
+	    this.followingTransforms = new byte[this.edgeCount];
+	    this.formerTransforms = new byte[this.edgeCount];
+	}
+	int[] followingPositions = Arrays.copyOf(this.followingOffsets, nodeCount);
+	int[] formerPositions = Arrays.copyOf(this.formerOffsets, nodeCount);
+	for (int i = 0; i < this.edgeCount; i++) {
+	    int former = (int) (this.edges[i] >>> 32);
+	    int following = (int) this.edges[i];
+	    if (this.transforms != null) {
+		this.followingTransforms[followingPositions[former]] = this.transforms[i];
+		this.formerTransforms[formerPositions[following]] = this.transforms[i];
+	    }
+	    this.followingTargets[followingPositions[former]++] = following;
+	    this.formerTargets[formerPositions[following]++] = former;
+	}
+	
+	this.edges = null;
+	this.transforms = null;
+	this.frozen = true;
+    }
+    
+    public boolean isFrozen() {
+	return this.frozen;
+    }
+    
+    /**
+     * @return the number of relationships
+     */
+    public int getEdgeCount() {
+	return this.edgeCount;
+    }
+    
+    public int getFollowingCount(int node) {
+	this.checkFrozen();
+	return this.followingOffsets[node + 1] - this.followingOffsets[node];
+    }
+    
+    /**
+     * @return the index of the i-th following constellation of the node
+     */
+    public int getFollowing(int node, int i) {
+	this.checkFrozen();
+	return this.followingTargets[this.followingOffsets[node] + i];
+    }
+    
+    /**
+     * @return the symmetry transform of the relationship to the i-th following
+     *         constellation of the node (see {@link Symmetry})
+     */
+    public int getFollowingTransform(int node, int i) {
+	this.checkFrozen();
+	return this.followingTransforms == null ? Symmetry.IDENTITY : this.followingTransforms[this.followingOffsets[node] + i];
+    }
+    
+    public int getFormerCount(int node) {
+	this.checkFrozen();
+	return this.formerOffsets[node + 1] - this.formerOffsets[node];
+    }
+    
+    /**
+     * @return the index of the i-th former constellation of the node
+     */
+    public int getFormer(int node, int i) {
+	this.checkFrozen();
+	return this.formerTargets[this.formerOffsets[node] + i];
+    }
+    
+    /**
+     * @return the symmetry transform of the relationship from the i-th former
+     *         constellation of the node (see {@link Symmetry})
+     */
+    public int getFormerTransform(int node, int i) {
+	this.checkFrozen();
+	return this.formerTransforms == null ? Symmetry.IDENTITY : this.formerTransforms[this.formerOffsets[node] + i];
+    }
+    
+    private void checkFrozen() {
+	if (!this.frozen) {
+	    throw new IllegalStateException("The relationships are only available once the EdgeStore is frozen!");
+	}
+    }
+}
@@ -0,0 +1,70 @@
+package util;
+
+/**
+ * Immutable stack of the hashes of the constellations along one path through
+ * the map, which is used to detect repetitions.<br/>
+ * <br/>
+ * <b>Enhanced description:</b><br/>
+ * Every constellation pushes the hash of its position (see
+ * {@link PositionKey#getRepetitionHash()}) onto the stack of the
+ * constellation it has been created from. The stacks of all constellations
+ * share their common part, therefore a push only allocates one entry no
+ * matter how long the path is.<br/>
+ * A position can't occur again once a pawn has moved or a piece has been
+ * captured, so the stack is cut at every such move (see {@link #EMPTY}). The
+ * halfmove clock ends the game after {@link PositionKey#HALFMOVE_CLOCK_LIMIT}
+ * plies without such a move, which bounds the size of a stack as well.<br/>
+ * 
+ * @author Andy
+ */
+public final class HashStack {
+    
+    /**
+     * The stack without any hashes.
+     */
+    public static final HashStack EMPTY = new HashStack(0L, null, 0);
+    
+    private HashStack(long hash, HashStack previous, int size) {
+	this.hash = hash;
+	this.previous = previous;
+	this.size = size;
+    }
+    
+    private final long hash;
+    
+    private final HashStack previous;
+    
+    private final int size;
+    
+    /**
+     * @param hash
+     *        - the hash of the next position on the path
+     * @return a new stack with the hash on top of this stack, this stack is not
+     *         changed
+     */
+    public HashStack push(long hash) {
+	return new HashStack(hash, this, this.size + 1);
+    }
+    
+    /**
+     * @param hash
+     *        - the hash of a position
+     * @return how often the position is contained in the stack
+     */
+    public int count(long hash) {
+	int count = 0;
+	for (HashStack entry = this; entry.size > 0; entry = entry.previous) {
+	    if (entry.hash == hash) {
+		count++;
+	    }
+	}
+	return count;
+    }
+    
+    /**
+     * @return the number of hashes on the stack
+     */
+    public int size() {
+	return this.size;
+    }
+}
@@ -1,35 +1,154 @@
 package util;
 
-import java.util.ArrayList;
-import java.util.Hashtable;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 import core.Constellation;
 import pieces.*;
 
 public class IdManager {
     
-    private final Hashtable<String, Constellation> constellationsTable = new Hashtable<String, Constellation>();;
-    private final Hashtable<String, ArrayList<String>> followingConstellationsTable = new Hashtable<String, ArrayList<String>>();
-    private final Hashtable<String, ArrayList<String>> formerConstellationsTable = new Hashtable<String, ArrayList<String>>();
+    public IdManager() {
+	this(1 << 16);
+    }
     
-    // Variables that code pieces on board.
-    private final String PWN = "P";
-    private final String ROK = "R";
-    private final String KNT = "H";
-    private final String BSH = "B";
-    private final String QUN = "Q";
-    private final String KNG = "K";
+    /**
+     * @param expectedConstellations
+     *        - the number of constellations the table is sized for up front,
+     *        so that it does not have to be rehashed while the map is built
+     */
+    public IdManager(int expectedConstellations) {
+	this(expectedConstellations, false);
+    }
     
     /**
-     * Adds a constellation only if it is not already contained.
+     * @param expectedConstellations
+     *        - the number of constellations the table is sized for up front,
+     *        so that it does not have to be rehashed while the map is built
+     * @param offHeapIndex
+     *        - {@code true} if the indices shall be looked up in an
+     *        {@link OffHeapIndex} instead of a {@link ConcurrentHashMap}, which
+     *        keeps tens of millions of entries out of the heap
+     */
+    public IdManager(int expectedConstellations, boolean offHeapIndex) {
+	if (offHeapIndex) {
+	    this.indexTable = null;
+	    this.offHeapIndex = new OffHeapIndex(expectedConstellations,
+						 Runtime.getRuntime().availableProcessors() << 2,
+						 OffHeapIndex.DEFAULT_LOAD_FACTOR,
+						 this.nodeTable::getId);
+	} else {
+	    this.indexTable = new ConcurrentHashMap<PositionKey, Integer>(expectedConstellations);
+	    this.offHeapIndex = null;
+	}
+	this.constellationFile = null;
+    }
+    
+    /**
+     * Creates a read only idManager which serves the constellations and
+     * relationships of a map that has been written to a file (see
+     * {@link ConstellationFile}) without loading them onto the heap.<br/>
+     * Constellations are restored from the file whenever they are requested,
+     * nothing can be added.
+     * 
+     * @param constellationFile
+     *        - the opened file
+     */
+    public IdManager(ConstellationFile constellationFile) {
+	this.indexTable = null;
+	this.offHeapIndex = null;
+	this.constellationFile = constellationFile;
+    }
+    
+    /**
+     * The indices of all known constellations by their IDs.<br/>
+     * A {@link ConcurrentHashMap} only locks the bin an ID is inserted into
+     * (reads don't lock at all), so several threads can look up and add
+     * constellations at the same time.
+     */
+    private final ConcurrentHashMap<PositionKey, Integer> indexTable;
+    
+    /**
+     * Replaces the {@link #indexTable} if the indices are kept outside of the
+     * heap, null otherwise.
+     */
+    private final OffHeapIndex offHeapIndex;
+    
+    /**
+     * The IDs, constellations and attributes of all known constellations by
+     * their indices, the reverse of {@link #indexTable}.
+     */
+    private final NodeTable nodeTable = new NodeTable();
+    
+    /**
+     * The relationships between the constellations, stored by their indices.
+     */
+    private final EdgeStore edgeStore = new EdgeStore();
+    
+    /**
+     * The file which serves all queries if this idManager is read only, null
+     * otherwise.
+     */
+    private final ConstellationFile constellationFile;
+    
+    /**
+     * Counts the added constellations, transpositions and relationships.
+     */
+    private final BuildMetrics metrics = new BuildMetrics();
+    
+    // Variables that code pieces on board (type bits of a PositionKey nibble).
+    public static final int PWN = 1;
+    public static final int ROK = 2;
+    public static final int KNT = 3;
+    public static final int BSH = 4;
+    public static final int QUN = 5;
+    public static final int KNG = 6;
+    
+    // Color bit of a PositionKey nibble.
+    public static final int BLACK_PIECE = 8;
+    
+    /**
+     * Adds a constellation only if it is not already contained.<br/>
+     * <br/>
+     * <b>Enhanced description:</b><br/>
+     * The check and the insertion are one atomic operation. If two threads add
+     * a constellation with the same ID at the same time, both get the same
+     * constellation returned and only that one is part of the map.<br/>
+     * The added constellation gets the next free index assigned before it
+     * becomes visible to other threads.<br/>
      * 
      * @param id
+     *        - the ID of the constellation
      * @param constellation
+     *        - the constellation to add
+     * @return the canonical constellation of the ID:<br/>
+     *         - {@code constellation} if it has been added<br/>
+     *         - the constellation which had been added before otherwise
+     */
+    public Constellation addConstellation(PositionKey id, Constellation constellation) {
+	this.checkWritable();
+	int index;
+	if (this.offHeapIndex != null) {
+	    index = this.offHeapIndex.putIfAbsent(id, () -> this.addNode(id, constellation));
+	} else {
+	    index = this.indexTable.computeIfAbsent(id, key -> this.addNode(key, constellation));
+	}
+	Constellation canonicalConstellation = this.nodeTable.getConstellation(index);
+	if (canonicalConstellation != constellation) {
+	    this.metrics.recordTranspositionHit();
+	}
+	return canonicalConstellation;
+    }
+    
+    /**
+     * @return the index of the new node
      */
-    public void addConstellation(String id, Constellation constellation) {
-	this.constellationsTable.putIfAbsent(id, constellation);
-	this.followingConstellationsTable.putIfAbsent(id, constellation.getFollowingConstellations());
-	this.formerConstellationsTable.putIfAbsent(id, constellation.getFormerConstellations());
+    private int addNode(PositionKey id, Constellation constellation) {
+	int index = this.nodeTable.add(id, constellation);
+	constellation.setIndex(index);
+	this.metrics.recordNodeCreated();
+	return index;
     }
     
     /**
@@ -38,130 +157,405 @@ public class IdManager {
      * @return - the constellation object which is associated with the id.<br/>
      *         - null if there is no such object.
      */
-    public Constellation getConstellation(String id) {
-	return this.constellationsTable.get(id);
+    public Constellation getConstellation(PositionKey id) {
+	int index = this.getIndex(id);
+	return index < 0 ? null : this.getConstellation(index);
+    }
+    
+    /**
+     * @param index
+     *        - the index of the constellation which is searched
+     * @return the constellation which has been assigned the index, restored
+     *         anew on every call if this idManager is read from a file<br/>
+     *         - null if it has been released (see
+     *         {@link #releaseConstellation(int)})
+     */
+    public Constellation getConstellation(int index) {
+	if (this.constellationFile != null) {
+	    return new Constellation(this, index);
+	}
+	return this.nodeTable.getConstellation(index);
+    }
+    
+    /**
+     * @return the index of the constellation, the constellations are numbered
+     *         densely in the order in which they are added starting with 0<br/>
+     *         -1 if there is no such constellation
+     */
+    public int getIndex(PositionKey id) {
+	if (this.constellationFile != null) {
+	    return this.constellationFile.getIndex(id);
+	}
+	if (this.offHeapIndex != null) {
+	    return this.offHeapIndex.get(id);
+	}
+	Integer index = this.indexTable.get(id);
+	return index == null ? -1 : index;
+    }
+    
+    /**
+     * @return the ID of the constellation with the index, the reverse of
+     *         {@link #getIndex(PositionKey)}
+     */
+    public PositionKey getId(int index) {
+	if (this.constellationFile != null) {
+	    return this.constellationFile.getId(index);
+	}
+	return this.nodeTable.getId(index);
+    }
+    
+    /**
+     * @return the player who has to move in the constellation with the index
+     */
+    public Color getMovingPlayer(int index) {
+	if (this.constellationFile != null) {
+	    return this.constellationFile.getMovingPlayer(index);
+	}
+	return this.nodeTable.getMovingPlayer(index);
+    }
+    
+    /**
+     * @return {@code true} if all following constellations of the
+     *         constellation with the index have been added
+     */
+    public boolean isComplete(int index) {
+	if (this.constellationFile != null) {
+	    return this.constellationFile.isComplete(index);
+	}
+	return this.nodeTable.isComplete(index);
+    }
+    
+    /**
+     * @return {@code true} if the constellation with the index is drawn by a
+     *         repetition or by the fifty-move rule (see
+     *         {@link Constellation#isDrawn()}), such a constellation has no
+     *         following constellations
+     */
+    public boolean isDrawn(int index) {
+	if (this.constellationFile != null) {
+	    return this.constellationFile.isDrawn(index);
+	}
+	return this.nodeTable.isDrawn(index);
+    }
+    
+    /**
+     * Marks the constellation with the index as complete, see
+     * {@link Constellation#markAsComplete()}.
+     */
+    public void markAsComplete(int index) {
+	this.checkWritable();
+	this.nodeTable.markAsComplete(index);
+    }
+    
+    /**
+     * Forgets the constellation with the index, only its ID, moving player and
+     * completion remain known. Afterwards {@link #getConstellation(int)}
+     * returns null for the index.
+     */
+    public void releaseConstellation(int index) {
+	this.checkWritable();
+	this.nodeTable.releaseConstellation(index);
+    }
+    
+    /**
+     * @return {@code true} if a constellation with the ID has been added
+     */
+    public boolean containsConstellation(PositionKey id) {
+	return this.getIndex(id) >= 0;
+    }
+    
+    /**
+     * @return the number of constellations added so far
+     */
+    public int getConstellationCount() {
+	if (this.constellationFile != null) {
+	    return this.constellationFile.getNodeCount();
+	}
+	return this.nodeTable.size();
     }
     
     /**
+     * Generates the ID of a constellation by scanning all tiles of its board.
+     * Boards maintain their ID incrementally (see {@link core.Board#getId()}),
+     * so this is only necessary for boardArrays without a board.<br/>
+     * 
      * @param boardArray
      *        - the current chess board in form of an array
      * @param movingPlayer
      *        - the color of currently moving player
      * @exception IllegalArgumentException
      *            thrown if assigned parameter isn't instance of a valid type
-     * @return <b>String</b> - the ID uses the following pattern for the
-     *         information of a chess piece:<br/>
-     *         It starts with a character to indicate which player's turn it is
-     *         (Black | White), value-range: "B", "W"<br/>
-     *         <i>XYCP</i><br/>
+     * @return <b>PositionKey</b> - the ID packs the information of every tile
+     *         into one nibble:<br/>
+     *         <i>CPPP</i><br/>
      *         <ul>
-     *         <li><b>X</b>: value of the row-position (1-8), value-range: 0-7</li>
-     *         <li><b>Y</b>: value of the column-position (A-H), value-range:
-     *         0-7</li>
-     *         <li><b>C</b>: value of the piece's color (Black | White),
-     *         value-range: "B", "W"</li>
-     *         <li><b>P</b>: value of the piece's type = {<br/>
-     *         Pawn = 'P',<br/>
-     *         Rook = 'R',<br/>
-     *         Knight(Horse) = 'H',<br/>
-     *         Bishop = 'B',<br/>
-     *         Queen = 'Q',<br/>
-     *         King = 'K'}</li>
+     *         <li><b>C</b>: value of the piece's color, value-range: 0 (White),
+     *         1 ({@link #BLACK_PIECE})</li>
+     *         <li><b>PPP</b>: value of the piece's type = {<br/>
+     *         Empty tile = 0,<br/>
+     *         Pawn = {@link #PWN},<br/>
+     *         Rook = {@link #ROK},<br/>
+     *         Knight(Horse) = {@link #KNT},<br/>
+     *         Bishop = {@link #BSH},<br/>
+     *         Queen = {@link #QUN},<br/>
+     *         King = {@link #KNG}}</li>
      *         </ul>
-     *         The pattern repeats for all available pieces on the board.<br/>
+     *         The nibbles of two rows are packed into one long (see
+     *         {@link PositionKey}), which player's turn it is is kept in the
+     *         key's state bits.<br/>
      */
-    public String generateId(ChessPiece[][] boardArray, Color movingPlayer) throws IllegalArgumentException {
+    public PositionKey generateId(ChessPiece[][] boardArray, Color movingPlayer) throws IllegalArgumentException {
 	// 1. determine which player has to move, add to ID
-	String id = this.convertColorToChar(movingPlayer);
+	return this.generateId(boardArray, this.convertColorToBit(movingPlayer));
+    }
+    
+    /**
+     * Generates the ID of a constellation with a complete game state, see
+     * {@link #generateId(ChessPiece[][], Color)}.
+     * 
+     * @param boardArray
+     *        - the board of the constellation
+     * @param state
+     *        - the game state word, see
+     *        {@link PositionKey#createState(Color, int, int, int, boolean)}
+     * @return the ID of the constellation
+     */
+    public PositionKey generateId(ChessPiece[][] boardArray, int state) {
+	long hash = Zobrist.getStateKey(state);
 	
-	// 2. search through all tiles if there is a piece placed
+	// 2. search through all tiles if there is a piece placed, two rows per
+	// long
+	long[] squares = new long[4];
 	for (int row = 0; row < 8; row++) {
 	    for (int col = 0; col < 8; col++) {
 		if (boardArray[row][col] != null) {
-		    String type = checkPieceType(boardArray[row][col]);
-		    String color = convertColorToChar(boardArray[row][col].getColor());
+		    int code = boardArray[row][col].getCode();
+		    int square = (row << 3) + col;
 		    
 		    // 3. if you find a piece, add it's code to your ID.
-		    id += Integer.toString(row) + Integer.toString(col) + color + type;
+		    squares[square >> 4] |= (long) code << ((square & 15) << 2);
+		    hash ^= Zobrist.getPieceSquareKey(code, square);
 		}
 	    }
 	}
 	
-	// System.out.println("IdManager::generateIdForMapGeneration > return id: "
-	// + id);
-	
-	return id;
+	return new PositionKey(squares[0], squares[1], squares[2], squares[3], state, hash);
     }
     
     /**
      * Adds a relationship between two constellations.<br/>
-     * This means that the ID of the former constellation is added to the list
-     * of IDs of the following constellation and vice versa.<br/>
-     * These list have to be known to the constellation but should be attributes
-     * of the IdManager class and manager by the IdManager class<br/>
+     * This means that the following constellation becomes one of the
+     * following constellations of the former constellation and vice versa.
+     * <br/>
+     * Both constellations must have been added before, the relationships can
+     * only be read once they have been frozen (see
+     * {@link #freezeRelationships()}).<br/>
      * 
      * @param idFormerConstellation
      *        - the ID of the former constellation
      * @param idFollowingConstellation
      *        - the ID of the following constellation
+     * @throws IllegalArgumentException
+     *         if one of the constellations is unknown
+     */
+    public void addRelationship(PositionKey idFormerConstellation, PositionKey idFollowingConstellation) throws IllegalArgumentException {
+	int formerIndex = this.getIndex(idFormerConstellation);
+	int followingIndex = this.getIndex(idFollowingConstellation);
+	if (formerIndex < 0 || followingIndex < 0) {
+	    throw new IllegalArgumentException("Both constellations must be added before their relationship.");
+	}
+	
+	this.checkWritable();
+	this.edgeStore.addEdge(formerIndex, followingIndex);
+	this.metrics.recordEdgesAdded(1);
+    }
+    
+    /**
+     * Adds the relationships between a former constellation and several
+     * following constellations at once (see
+     * {@link #addRelationship(PositionKey, PositionKey)}).
+     * 
+     * @param formerIndex
+     *        - the index of the former constellation
+     * @param followingIndices
+     *        - the indices of the following constellations
+     * @param count
+     *        - the number of valid entries in {@code followingIndices}
+     */
+    public void addRelationships(int formerIndex, int[] followingIndices, int count) {
+	this.addRelationships(formerIndex, followingIndices, null, count);
+    }
+    
+    /**
+     * Adds the relationships between a former constellation and several
+     * following constellations which have been reduced by symmetries.
+     * 
+     * @param formerIndex
+     *        - the index of the former constellation
+     * @param followingIndices
+     *        - the indices of the following constellations
+     * @param transforms
+     *        - the transform which maps the constellation reached by each move
+     *        onto the following constellation (see {@link Symmetry}), null if
+     *        none of them is transformed
+     * @param count
+     *        - the number of valid entries in {@code followingIndices}
+     */
+    public void addRelationships(int formerIndex, int[] followingIndices, byte[] transforms, int count) {
+	this.checkWritable();
+	this.edgeStore.addEdges(formerIndex, followingIndices, transforms, count);
+	this.metrics.recordEdgesAdded(count);
+    }
+    
+    /**
+     * @return the counters of this idManager, which are also updated by the
+     *         {@link core.ChessMap} which builds it
+     */
+    public BuildMetrics getMetrics() {
+	return this.metrics;
+    }
+    
+    /**
+     * Converts the relationships into their compact, read only form. Has to be
+     * called once all constellations and relationships have been added.
+     */
+    public void freezeRelationships() {
+	this.checkWritable();
+	this.edgeStore.freeze(this.getConstellationCount());
+    }
+    
+    /**
+     * @return the IDs of the constellations which follow out of the
+     *         constellation with the index, a read only view
+     */
+    public List<PositionKey> getFollowingConstellations(int index) {
+	return new AbstractList<PositionKey>() {
+	    
+	    @Override
+	    public PositionKey get(int i) {
+		return IdManager.this.getId(IdManager.this.getFollowingIndex(index, i));
+	    }
+	    
+	    @Override
+	    public int size() {
+		return IdManager.this.getFollowingCount(index);
+	    }
+	};
+    }
+    
+    /**
+     * @return the IDs of the constellations out of which the constellation
+     *         with the index can follow, a read only view
      */
-    public void addRelationship(String idFormerConstellation, String idFollowingConstellation) {
-	// TODO method implementation
-	// TODO attributes to store the relationships within IdManager
+    public List<PositionKey> getFormerConstellations(int index) {
+	return new AbstractList<PositionKey>() {
+	    
+	    @Override
+	    public PositionKey get(int i) {
+		return IdManager.this.getId(IdManager.this.getFormerIndex(index, i));
+	    }
+	    
+	    @Override
+	    public int size() {
+		return IdManager.this.getFormerCount(index);
+	    }
+	};
+    }
+    
+    /**
+     * @return the number of constellations which follow out of the
+     *         constellation with the index
+     */
+    public int getFollowingCount(int index) {
+	if (this.constellationFile != null) {
+	    return this.constellationFile.getFollowingCount(index);
+	}
+	return this.edgeStore.getFollowingCount(index);
+    }
+    
+    /**
+     * @return the index of the i-th following constellation of the
+     *         constellation with the index
+     */
+    public int getFollowingIndex(int index, int i) {
+	if (this.constellationFile != null) {
+	    return this.constellationFile.getFollowingIndex(index, i);
+	}
+	return this.edgeStore.getFollowing(index, i);
+    }
+    
+    /**
+     * @return the symmetry transform of the relationship to the i-th following
+     *         constellation (see {@link Symmetry})
+     */
+    public int getFollowingTransform(int index, int i) {
+	if (this.constellationFile != null) {
+	    return this.constellationFile.getFollowingTransform(index, i);
+	}
+	return this.edgeStore.getFollowingTransform(index, i);
+    }
+    
+    /**
+     * @return the number of constellations out of which the constellation with
+     *         the index can follow
+     */
+    public int getFormerCount(int index) {
+	if (this.constellationFile != null) {
+	    return this.constellationFile.getFormerCount(index);
+	}
+	return this.edgeStore.getFormerCount(index);
     }
     
     /**
-     * This method converts the assigned {@link Color} into a String:
-     * Color.WHITE -> "W" | Color.BLACK -> "B"
+     * @return the index of the i-th former constellation of the constellation
+     *         with the index
+     */
+    public int getFormerIndex(int index, int i) {
+	if (this.constellationFile != null) {
+	    return this.constellationFile.getFormerIndex(index, i);
+	}
+	return this.edgeStore.getFormer(index, i);
+    }
+    
+    /**
+     * @return the symmetry transform of the relationship from the i-th former
+     *         constellation (see {@link Symmetry})
+     */
+    public int getFormerTransform(int index, int i) {
+	if (this.constellationFile != null) {
+	    return this.constellationFile.getFormerTransform(index, i);
+	}
+	return this.edgeStore.getFormerTransform(index, i);
+    }
+    
+    /**
+     * @throws UnsupportedOperationException
+     *         if this idManager is read from a file
+     */
+    private void checkWritable() throws UnsupportedOperationException {
+	if (this.constellationFile != null) {
+	    throw new UnsupportedOperationException("An idManager which is read from a file can't be modified!");
+	}
+    }
+    
+    /**
+     * This method converts the assigned {@link Color} into a bit: Color.WHITE
+     * -> 0 | Color.BLACK -> {@link PositionKey#BLACK_TO_MOVE}
      * 
      * @param c
      *        - assigned color
-     * @return <b>String</b> - Color.WHITE -> "W" || Color.BLACK -> "B"
+     * @return <b>int</b> - Color.WHITE -> 0 || Color.BLACK -> 1
      * @throws IllegalArgumentException
      *         thrown if assigned parameter is no valid color (either WHITE or
      *         BLACK)
      */
-    private String convertColorToChar(Color c) throws IllegalArgumentException {
+    private int convertColorToBit(Color c) throws IllegalArgumentException {
 	if (c == Color.WHITE) {
-	    return "W";
+	    return 0;
 	} else if (c == Color.BLACK) {
-	    return "B";
+	    return PositionKey.BLACK_TO_MOVE;
 	} else {
 	    throw new IllegalArgumentException("Invalid color assigned.");
 	}
     }
-    
-    /**
-     * @param chessPiece
-     *        - chessPiece that has to be examined according to it's type
-     * @exception IllegalArgumentException
-     *            thrown if assigned parameter isn't instance of type
-     *            <ul>
-     *            <li>{@link Bishop}</li>
-     *            <li>{@link King}</li>
-     *            <li>{@link Horse}</li>
-     *            <li>{@link Pawn}</li>
-     *            <li>{@link Queen}</li>
-     *            <li>{@link Rook}</li>
-     *            </ul>
-     * @return <b>char</b> - character-value according to the kind of
-     *         chessPiece, see current mapping in field-section.
-     */
-    private String checkPieceType(ChessPiece chessPiece) throws IllegalArgumentException {
-	if (chessPiece instanceof Pawn) {
-	    return PWN;
-	} else if (chessPiece instanceof Rook) {
-	    return ROK;
-	} else if (chessPiece instanceof Horse) {
-	    return KNT;
-	} else if (chessPiece instanceof Bishop) {
-	    return BSH;
-	} else if (chessPiece instanceof Queen) {
-	    return QUN;
-	} else if (chessPiece instanceof King) {
-	    return KNG;
-	} else {
-	    throw new IllegalArgumentException("Assigned chess piece is no instance of an available piece-class.");
-	}
-    }
 }
@@ -0,0 +1,76 @@
+package util;
+
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prints the {@link BuildMetrics} of a build periodically, together with the
+ * number of constellations created per second since the former report.<br/>
+ * The reports are printed by a daemon thread, therefore a reporter which
+ * isn't closed doesn't keep the JVM alive.<br/>
+ * 
+ * @author Andy
+ */
+public class MetricsReporter implements Closeable {
+    
+    /**
+     * Starts reporting right away.
+     * 
+     * @param metrics
+     *        - the metrics to report
+     * @param out
+     *        - the stream the reports are printed to
+     * @param period
+     *        - the time between two reports
+     * @param unit
+     *        - the unit of the period
+     */
+    public MetricsReporter(BuildMetrics metrics, PrintStream out, long period, TimeUnit unit) {
+	this.metrics = metrics;
+	this.out = out;
+	this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+	    Thread thread = new Thread(runnable, "metrics-reporter");
+	    thread.setDaemon(true);
+	    return thread;
+	});
+	this.executor.scheduleAtFixedRate(this::report, period, period, unit);
+    }
+    
+    private final BuildMetrics metrics;
+    private final PrintStream out;
+    private final ScheduledExecutorService executor;
+    
+    private long lastNodes = 0L;
+    private long lastNanos = System.nanoTime();
+    
+    /**
+     * Prints one report. Only called by the thread of the {@link #executor}
+     * and by {@link #close()} after it has been shut down.
+     */
+    private void report() {
+	long nodes = this.metrics.getNodesCreated();
+	long nanos = System.nanoTime();
+	long rate = (long) ((nodes - this.lastNodes) * 1e9 / Math.max(nanos - this.lastNanos, 1L));
+	this.lastNodes = nodes;
+	this.lastNanos = nanos;
+	
+	this.out.println("[metrics] " + this.metrics + ", current " + rate + " nodes/s");
+    }
+    
+    /**
+     * Stops reporting and prints a last report.
+     */
+    @Override
+    public void close() {
+	this.executor.shutdown();
+	try {
+	    this.executor.awaitTermination(1, TimeUnit.SECONDS);
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	}
+	this.report();
+    }
+}
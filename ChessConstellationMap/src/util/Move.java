@@ -1,145 +1,118 @@
 package util;
 
-import java.util.ArrayList;
-
 /**
- * Class for handling all the possible moves of a chess piece in a specific tile
- * represented by {@link #fromPos}.<br/>
- * Does not verify the validity of the moves, only save and manage distinct
- * values of possible moves.<br/>
+ * Encodes a move of a chess piece into 16 bits (a {@code short}).<br/>
+ * Does not verify the validity of the moves, only packs and unpacks them.<br/>
  * Also does not calculate any possible moves. This is done in the specific
  * ChessPiece object.<br/>
+ * <br/>
+ * <b>Enhanced description:</b><br/>
+ * A move formerly was an object holding a {@code fromPos} array and a list of
+ * destination arrays (roughly 100 bytes per destination). Packed moves are
+ * stored in a {@link MoveList} instead, which only needs 2 bytes per move.
+ * <br/>
+ * Layout of a move:<br/>
+ * <ul>
+ * <li><b>bits 0-5</b>: the tile the piece is moved from (row * 8 + col)</li>
+ * <li><b>bits 6-11</b>: the tile the piece is moved to (row * 8 + col)</li>
+ * <li><b>bits 12-13</b>: the piece a pawn is promoted to, see
+ * {@link #getPromotionType(short)}</li>
+ * <li><b>bits 14-15</b>: the kind of the move ({@link #NORMAL},
+ * {@link #PROMOTION}, {@link #EN_PASSANT}, {@link #CASTLING})</li>
+ * </ul>
  * 
  * @author Andy
  */
-public class Move {
+public abstract class Move {
+    
+    public static final int NORMAL = 0;
+    public static final int PROMOTION = 1;
+    public static final int EN_PASSANT = 2;
+    public static final int CASTLING = 3;
+    
+    private static final int TO_SHIFT = 6, PROMOTION_SHIFT = 12, FLAG_SHIFT = 14;
     
     /**
-     * A move can only exist with a specified tile to which the possible moves
-     * are assigned ({@link #fromPos}). Therefore fromPos is declared as final
-     * and the constructor only accepts one fromPos array.<br/>
-     * There is also another constructor which accepts the array coordinates for
-     * the fromPos array as int values.<br/>
-     * 
-     * @param fromPos
-     *        - The position of the chess piece on the boardArray. Array with a
-     *        length of 2. Created as a new object to prevent overwriting the
-     *        transferred array and accidentally altering the fromPos of this
-     *        Move object.
-     * @throws IllegalArgumentException
-     *         if the transferred {@link #fromPos} has a length other than 2.
+     * The types a pawn can be promoted to, indexed by bits 12-13 of a move.
      */
-    public Move(int fromPos[]) throws IllegalArgumentException {
-	if (fromPos.length != 2) {
-	    throw new IllegalArgumentException("fromPos must be an array with the length of 2!");
-	}
-	
-	this.fromPos[0] = fromPos[0];
-	this.fromPos[1] = fromPos[1];
-    }
+    private static final int[] PROMOTION_TYPES = { IdManager.KNT, IdManager.BSH, IdManager.ROK, IdManager.QUN };
     
     /**
-     * A move can only exist with a specified tile to which the possible moves
-     * are assigned ({@link #fromPos}). Therefore fromPos is declared as final
-     * and the constructor only accepts one fromPos array.<br/>
-     * However it might be useful to transfer the coordinates of the fromPos
-     * array as plain int values. Therefore this constructor exists.<br/>
-     * 
-     * @param fromPosRow
-     *        - The first coordinate of the fromPos array hence the line number
-     *        of the chess board which tile has to be specified as the one
-     *        containing the chess piece that shall be moved.<br/>
-     * @param fromPosCol
-     *        - The second coordinate of the fromPos array equivalent to the
-     *        parameter {@code fromPosLine}.
+     * @param fromSquare
+     *        - the tile the piece is moved from (row * 8 + col)
+     * @param toSquare
+     *        - the tile the piece is moved to (row * 8 + col)
+     * @return a {@link #NORMAL} move
      */
-    public Move(int fromPosRow, int fromPosCol) {
-	this.fromPos[0] = fromPosRow;
-	this.fromPos[1] = fromPosCol;
+    public static short encode(int fromSquare, int toSquare) {
+	return (short) (fromSquare | (toSquare << TO_SHIFT));
     }
     
     /**
-     * The coordinates of the tile which contains the chess piece which possible
-     * moves are saved within this Move object.
+     * @param fromSquare
+     *        - the tile the piece is moved from (row * 8 + col)
+     * @param toSquare
+     *        - the tile the piece is moved to (row * 8 + col)
+     * @param flag
+     *        - the kind of the move, e.g. {@link #CASTLING}
+     * @param promotionType
+     *        - the type a pawn is promoted to (see {@link IdManager}), only
+     *        evaluated for {@link #PROMOTION}s
+     * @return the packed move
      */
-    private final int[] fromPos = new int[2];
-    /**
-     * A list of destinations the chess piece which is specified in
-     * {@link #fromPos} can move to.<br/>
-     * A destination is an array with a length of 2.
-     */
-    private final ArrayList<int[]> destinations = new ArrayList<int[]>();
+    public static short encode(int fromSquare, int toSquare, int flag, int promotionType) {
+	int promotion = 0;
+	if (flag == PROMOTION) {
+	    while (PROMOTION_TYPES[promotion] != promotionType) {
+		if (++promotion == PROMOTION_TYPES.length) {
+		    throw new IllegalArgumentException("A pawn can't be promoted to type " + promotionType);
+		}
+	    }
+	}
+	return (short) (fromSquare | (toSquare << TO_SHIFT) | (promotion << PROMOTION_SHIFT) | (flag << FLAG_SHIFT));
+    }
     
-    /**
-     * Calls {@link #addDestination(int[])} with row and column as values in the
-     * array.
-     * 
-     * @param row
-     *        - The first coordinate of the destination that shall be added.
-     * @param col
-     *        - The second coordinate of the destination that shall be added.
-     */
-    public void addDestination(int row, int col) {
-	int[] destination = { row, col };
-	this.addDestination(destination);
+    public static int getFromSquare(short move) {
+	return move & 0x3F;
+    }
+    
+    public static int getToSquare(short move) {
+	return (move >>> TO_SHIFT) & 0x3F;
     }
     
     /**
-     * Adds a destination to {@link #destinations}.<br/>
-     * Shall assert that all destinations are distinct values.<br/>
-     * Does nothing if the destination that shall be added is already contained.<br/>
-     * 
-     * @param destination
-     *        : Array with a size of 2 containing the row and the column
-     *        coordinate of a chess board array..
+     * @return {@link #NORMAL}, {@link #PROMOTION}, {@link #EN_PASSANT} or
+     *         {@link #CASTLING}
      */
-    public void addDestination(int[] destination) {
-	if (destination.length != 2) {
-	    throw new IllegalArgumentException("ERROR: fromPos must be an array with the length of 2!");
-	}
-	
-	// Throw exception if destination is already contained
-	if (this.destinations.contains(destination)) {
-	    throw new IllegalArgumentException("Destination already contained within this move!");
-	}
-	
-	this.destinations.add(destination);
-	
+    public static int getFlag(short move) {
+	return (move >>> FLAG_SHIFT) & 0x3;
     }
     
     /**
-     * @return: The first element in the {@link #destinations} list. Will return
-     *          null if there is no such element.
+     * @return the type (see {@link IdManager}) a pawn is promoted to, only
+     *         meaningful if the flag of the move is {@link #PROMOTION}
      */
-    public int[] getNextDestination() {
-	if (!(this.destinations.isEmpty())) {
-	    return this.destinations.get(0);
-	}
-	return null;
+    public static int getPromotionType(short move) {
+	return PROMOTION_TYPES[(move >>> PROMOTION_SHIFT) & 0x3];
     }
     
     /**
-     * Removes the first element in the {@link #destinations} list.<br/>
-     * 
-     * @param destinationToRemove
-     *        - Asserts that the destination that will be removed has been
-     *        retrieved first.
+     * @return the move in coordinate notation, e.g. "e2e4" or "a7a8q"
      */
-    public void removeDestination(int[] destinationToRemove) throws IllegalArgumentException {
-	if ((destinationToRemove.length != 2)) {
-	    throw new IllegalArgumentException("Transferred array has wrong length!");
-	}
-	
-	if (!(this.destinations.get(0)[0] == destinationToRemove[0] && this.destinations.get(0)[1] == destinationToRemove[1])) {
-	    throw new IllegalArgumentException("Transferred array has different values than the first destination array");
-	}
-	
-	if (!(this.destinations.isEmpty())) {
-	    this.destinations.remove(0);
+    public static String toString(short move) {
+	StringBuilder builder = new StringBuilder(5);
+	builder.append(Move.toSquareName(Move.getFromSquare(move)));
+	builder.append(Move.toSquareName(Move.getToSquare(move)));
+	if (Move.getFlag(move) == PROMOTION) {
+	    builder.append("nbrq".charAt((move >>> PROMOTION_SHIFT) & 0x3));
 	}
+	return builder.toString();
     }
     
-    public int[] getFromPos() {
-	return this.fromPos;
+    /**
+     * @return the name of a tile, e.g. "e2" for [1][4]
+     */
+    public static String toSquareName(int square) {
+	return "" + (char) ('a' + (square & 7)) + (char) ('1' + (square >> 3));
     }
 }
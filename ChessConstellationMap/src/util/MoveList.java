@@ -0,0 +1,129 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Reusable list of packed moves (see {@link Move}) backed by a
+ * {@code short[]}.<br/>
+ * <br/>
+ * <b>Enhanced description:</b><br/>
+ * Moves are appended in O(1) (amortized) and consumed in the order in which
+ * they were added by moving a cursor ({@link #getNext()} and
+ * {@link #removeNext()}), so that removing the next logical move does not
+ * have to shift the list. {@link #clear()} resets the list without releasing
+ * the array, so that a list can be reused for every position.<br/>
+ * 
+ * @author Andy
+ */
+public class MoveList {
+    
+    public MoveList() {
+	this(32);
+    }
+    
+    /**
+     * @param initialCapacity
+     *        - the number of moves that fit into the list before it has to
+     *        grow
+     */
+    public MoveList(int initialCapacity) {
+	this.moves = new short[Math.max(initialCapacity, 1)];
+    }
+    
+    private short[] moves;
+    
+    /**
+     * The number of moves added since the last {@link #clear()}.
+     */
+    private int size = 0;
+    
+    /**
+     * The index of the next move that has not been consumed yet.
+     */
+    private int cursor = 0;
+    
+    public void add(short move) {
+	if (this.size == this.moves.length) {
+	    this.moves = Arrays.copyOf(this.moves, this.moves.length << 1);
+	}
+	this.moves[this.size++] = move;
+    }
+    
+    /**
+     * @return {@code true} if there is at least one move left behind the
+     *         cursor
+     */
+    public boolean hasNext() {
+	return this.cursor < this.size;
+    }
+    
+    /**
+     * @return the next logical move, which is the first move that has not been
+     *         removed yet
+     * @throws IllegalStateException
+     *         if all moves have been removed
+     */
+    public short getNext() {
+	if (this.cursor >= this.size) {
+	    throw new IllegalStateException("There is no move left in this list!");
+	}
+	return this.moves[this.cursor];
+    }
+    
+    /**
+     * Removes the next logical move by advancing the cursor.
+     */
+    public void removeNext() {
+	if (this.cursor >= this.size) {
+	    throw new IllegalStateException("There is no move left in this list!");
+	}
+	this.cursor++;
+    }
+    
+    /**
+     * @param index
+     *        - 0 to {@link #size()} - 1, independent of the cursor
+     */
+    public short get(int index) {
+	if (index >= this.size) {
+	    throw new IndexOutOfBoundsException("Index " + index + " exceeds size " + this.size);
+	}
+	return this.moves[index];
+    }
+    
+    /**
+     * Swaps two moves, used to order the moves before they are consumed.
+     */
+    public void swap(int index, int otherIndex) {
+	short move = this.moves[index];
+	this.moves[index] = this.moves[otherIndex];
+	this.moves[otherIndex] = move;
+    }
+    
+    /**
+     * @return the number of moves added since the last {@link #clear()},
+     *         including the removed ones
+     */
+    public int size() {
+	return this.size;
+    }
+    
+    /**
+     * @return the number of moves that have not been removed yet
+     */
+    public int remaining() {
+	return this.size - this.cursor;
+    }
+    
+    public boolean isEmpty() {
+	return this.cursor == this.size;
+    }
+    
+    /**
+     * Empties the list while keeping its capacity.
+     */
+    public void clear() {
+	this.size = 0;
+	this.cursor = 0;
+    }
+}
@@ -0,0 +1,111 @@
+package util;
+
+import core.Constellation;
+
+/**
+ * Maps the dense node indices of the constellations (0, 1, 2, ... in the
+ * order in which they are added) to their IDs and attributes.<br/>
+ * <br/>
+ * <b>Enhanced description:</b><br/>
+ * The attributes are kept in parallel arrays indexed by the node index
+ * instead of in the constellations, so that the map can be traversed by
+ * index without looking up a constellation per hop. The arrays are split
+ * into pages of {@link #PAGE_SIZE} entries which are allocated on demand,
+ * therefore the table never has to copy its entries when it grows and entries
+ * don't move while other threads read them.<br/>
+ * Nodes are only appended under the lock of the table. An entry must only be
+ * read after its index has been published, e.g. through
+ * {@link IdManager#getIndex(PositionKey)}.<br/>
+ * 
+ * @author Andy
+ */
+public class NodeTable {
+    
+    private final static int PAGE_SHIFT = 16;
+    private final static int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private final static int PAGE_MASK = PAGE_SIZE - 1;
+    private final static int MAX_PAGES = 1 << (31 - PAGE_SHIFT);
+    
+    // Bits of a node's flags.
+    private final static byte COMPLETE = 1;
+    private final static byte BLACK_TO_MOVE = 2;
+    private final static byte DRAWN = 4;
+    
+    private final PositionKey[][] idPages = new PositionKey[MAX_PAGES][];
+    private final Constellation[][] constellationPages = new Constellation[MAX_PAGES][];
+    private final byte[][] flagPages = new byte[MAX_PAGES][];
+    
+    private int size = 0;
+    
+    /**
+     * Appends a node.
+     * 
+     * @param id
+     *        - the ID of the constellation
+     * @param constellation
+     *        - the constellation itself
+     * @return the index of the new node
+     */
+    public synchronized int add(PositionKey id, Constellation constellation) {
+	int index = this.size;
+	int page = index >>> PAGE_SHIFT;
+	if (page == MAX_PAGES) {
+	    throw new IllegalStateException("The NodeTable is full!");
+	}
+	if (this.idPages[page] == null) {
+	    this.idPages[page] = new PositionKey[PAGE_SIZE];
+	    this.constellationPages[page] = new Constellation[PAGE_SIZE];
+	    this.flagPages[page] = new byte[PAGE_SIZE];
+	}
+	
+	this.idPages[page][index & PAGE_MASK] = id;
+	this.constellationPages[page][index & PAGE_MASK] = constellation;
+	this.flagPages[page][index & PAGE_MASK] = (byte) ((id.getMovingPlayer() == Color.BLACK ? BLACK_TO_MOVE : 0)
+							  | (constellation.isDrawn() ? DRAWN : 0));
+	
+	this.size++;
+	return index;
+    }
+    
+    /**
+     * @return the number of nodes
+     */
+    public synchronized int size() {
+	return this.size;
+    }
+    
+    public PositionKey getId(int index) {
+	return this.idPages[index >>> PAGE_SHIFT][index & PAGE_MASK];
+    }
+    
+    public Constellation getConstellation(int index) {
+	return this.constellationPages[index >>> PAGE_SHIFT][index & PAGE_MASK];
+    }
+    
+    /**
+     * Drops the reference to the constellation of the node, its ID and flags
+     * are kept.
+     */
+    public void releaseConstellation(int index) {
+	this.constellationPages[index >>> PAGE_SHIFT][index & PAGE_MASK] = null;
+    }
+    
+    public Color getMovingPlayer(int index) {
+	return (this.flagPages[index >>> PAGE_SHIFT][index & PAGE_MASK] & BLACK_TO_MOVE) != 0 ? Color.BLACK : Color.WHITE;
+    }
+    
+    public boolean isComplete(int index) {
+	return (this.flagPages[index >>> PAGE_SHIFT][index & PAGE_MASK] & COMPLETE) != 0;
+    }
+    
+    public boolean isDrawn(int index) {
+	return (this.flagPages[index >>> PAGE_SHIFT][index & PAGE_MASK] & DRAWN) != 0;
+    }
+    
+    /**
+     * Only to be called by the thread which expands the node.
+     */
+    public void markAsComplete(int index) {
+	this.flagPages[index >>> PAGE_SHIFT][index & PAGE_MASK] |= COMPLETE;
+    }
+}
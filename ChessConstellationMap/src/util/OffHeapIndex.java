@@ -0,0 +1,213 @@
+package util;
+
+import java.nio.ByteBuffer;
+import java.util.function.IntFunction;
+import java.util.function.IntSupplier;
+
+/**
+ * Maps the IDs of the constellations to their indices (see
+ * {@link IdManager#getIndex(PositionKey)}) outside of the heap.<br/>
+ * <br/>
+ * <b>Enhanced description:</b><br/>
+ * The index is an open addressing hash table with linear probing which is
+ * stored in direct {@link ByteBuffer}s, so that the garbage collector neither
+ * has to trace nor to copy its entries. A slot needs {@link #SLOT_SIZE}
+ * bytes: the 64-bit hash of the ID (see {@link PositionKey#getHash()}) and
+ * the index + 1 (0 = empty slot). Since different IDs can have the same hash,
+ * the ID of a matching slot is resolved by its index and compared with the
+ * searched one, therefore the table never merges two constellations.<br/>
+ * The table is split into segments by the upper bits of the hash. Every
+ * segment has its own lock and is resized on its own once its load factor is
+ * exceeded, so that a resize only blocks the threads which access the same
+ * segment and only copies a fraction of the table.<br/>
+ * 
+ * @author Andy
+ */
+public class OffHeapIndex {
+    
+    public final static float DEFAULT_LOAD_FACTOR = 0.5f;
+    
+    private final static int SLOT_SIZE = 16;
+    private final static int INDEX_OFFSET = 8;
+    
+    /**
+     * The maximum number of slots of a segment, so that it fits into one
+     * {@link ByteBuffer}.
+     */
+    private final static int MAX_SEGMENT_CAPACITY = 1 << 26;
+    
+    /**
+     * @param expectedEntries
+     *        - the number of entries the table is sized for up front
+     * @param segmentCount
+     *        - the number of independently locked segments, rounded up to a
+     *        power of two
+     * @param loadFactor
+     *        - the ratio of used to available slots above which a segment is
+     *        resized (0 - 1 exclusive)
+     * @param idResolver
+     *        - resolves the ID of an index that has been added
+     */
+    public OffHeapIndex(int expectedEntries, int segmentCount, float loadFactor, IntFunction<PositionKey> idResolver) {
+	if (!(loadFactor > 0f && loadFactor < 1f) || segmentCount < 1) {
+	    throw new IllegalArgumentException("Invalid segmentCount " + segmentCount + " or loadFactor " + loadFactor);
+	}
+	int segmentBits = 32 - Integer.numberOfLeadingZeros(segmentCount - 1);
+	this.segmentShift = 64 - segmentBits;
+	this.loadFactor = loadFactor;
+	this.idResolver = idResolver;
+	
+	// The next power of two which holds the entries below the load factor
+	long segmentEntries = (long) Math.ceil(expectedEntries / loadFactor) >> segmentBits;
+	int segmentCapacity = segmentEntries > 16 ? (int) Math.min(MAX_SEGMENT_CAPACITY, Long.highestOneBit(segmentEntries - 1) << 1) : 16;
+	this.segments = new Segment[1 << segmentBits];
+	for (int i = 0; i < this.segments.length; i++) {
+	    this.segments[i] = new Segment(segmentCapacity);
+	}
+    }
+    
+    private final Segment[] segments;
+    
+    /**
+     * 64 - the number of hash bits which select the segment.
+     */
+    private final int segmentShift;
+    
+    private final float loadFactor;
+    
+    private final IntFunction<PositionKey> idResolver;
+    
+    private Segment getSegment(long hash) {
+	return this.segments.length == 1 ? this.segments[0] : this.segments[(int) (hash >>> this.segmentShift)];
+    }
+    
+    /**
+     * @return the index of the ID, -1 if it has not been added
+     */
+    public int get(PositionKey id) {
+	Segment segment = this.getSegment(id.getHash());
+	synchronized (segment) {
+	    return segment.find(id) - 1;
+	}
+    }
+    
+    /**
+     * Adds the ID only if it is not already contained. The check, the creation
+     * of the index and the insertion are one atomic operation.
+     * 
+     * @param id
+     *        - the ID to add
+     * @param indexSupplier
+     *        - creates the index of the ID if it is not contained yet, called
+     *        at most once
+     * @return the index of the ID
+     */
+    public int putIfAbsent(PositionKey id, IntSupplier indexSupplier) {
+	Segment segment = this.getSegment(id.getHash());
+	synchronized (segment) {
+	    int entry = segment.find(id);
+	    if (entry != 0) {
+		return entry - 1;
+	    }
+	    
+	    int index = indexSupplier.getAsInt();
+	    segment.insert(id.getHash(), index + 1);
+	    return index;
+	}
+    }
+    
+    /**
+     * @return the number of IDs
+     */
+    public int size() {
+	int size = 0;
+	for (Segment segment : this.segments) {
+	    synchronized (segment) {
+		size += segment.size;
+	    }
+	}
+	return size;
+    }
+    
+    /**
+     * @return the number of bytes allocated outside of the heap
+     */
+    public long getAllocatedBytes() {
+	long bytes = 0;
+	for (Segment segment : this.segments) {
+	    synchronized (segment) {
+		bytes += segment.slots.capacity();
+	    }
+	}
+	return bytes;
+    }
+    
+    /**
+     * A part of the table, all methods must be called while holding its lock.
+     */
+    private class Segment {
+	
+	private Segment(int capacity) {
+	    this.allocate(capacity);
+	}
+	
+	private ByteBuffer slots;
+	private int mask, size, threshold;
+	
+	private void allocate(int capacity) {
+	    assert capacity <= MAX_SEGMENT_CAPACITY;
+	    this.slots = ByteBuffer.allocateDirect(capacity * SLOT_SIZE);
+	    this.mask = capacity - 1;
+	    this.threshold = (int) (capacity * OffHeapIndex.this.loadFactor);
+	}
+	
+	/**
+	 * @return the entry (index + 1) of the ID, 0 if it is not contained
+	 */
+	private int find(PositionKey id) {
+	    long hash = id.getHash();
+	    for (int slot = (int) hash & this.mask;; slot = (slot + 1) & this.mask) {
+		int entry = this.slots.getInt(slot * SLOT_SIZE + INDEX_OFFSET);
+		if (entry == 0) {
+		    return 0;
+		}
+		if (this.slots.getLong(slot * SLOT_SIZE) == hash && id.equals(OffHeapIndex.this.idResolver.apply(entry - 1))) {
+		    return entry;
+		}
+	    }
+	}
+	
+	private void insert(long hash, int entry) {
+	    if (this.size >= this.threshold) {
+		this.resize();
+	    }
+	    this.put(hash, entry);
+	    this.size++;
+	}
+	
+	private void put(long hash, int entry) {
+	    int slot = (int) hash & this.mask;
+	    while (this.slots.getInt(slot * SLOT_SIZE + INDEX_OFFSET) != 0) {
+		slot = (slot + 1) & this.mask;
+	    }
+	    this.slots.putLong(slot * SLOT_SIZE, hash);
+	    this.slots.putInt(slot * SLOT_SIZE + INDEX_OFFSET, entry);
+	}
+	
+	private void resize() {
+	    int capacity = this.mask + 1;
+	    if (capacity >= MAX_SEGMENT_CAPACITY) {
+		throw new IllegalStateException("A segment of the OffHeapIndex is full, use more segments!");
+	    }
+	    
+	    ByteBuffer oldSlots = this.slots;
+	    this.allocate(capacity << 1);
+	    for (int slot = 0; slot < capacity; slot++) {
+		int entry = oldSlots.getInt(slot * SLOT_SIZE + INDEX_OFFSET);
+		if (entry != 0) {
+		    this.put(oldSlots.getLong(slot * SLOT_SIZE), entry);
+		}
+	    }
+	}
+    }
+}
@@ -0,0 +1,269 @@
+package util;
+
+/**
+ * Fixed-width binary identifier of a constellation.<br/>
+ * <br/>
+ * <b>Enhanced description:</b><br/>
+ * The placement of the pieces is packed into four longs with one nibble per
+ * tile, so that every long holds two rows of the boardArray (16 tiles). The
+ * tile at [row][col] (square {@code row * 8 + col}) is stored in
+ * {@code squares[row / 2]} at the bit offset {@code ((row % 2) * 8 + col) * 4}.
+ * <br/>
+ * A nibble has the following layout:<br/>
+ * <ul>
+ * <li><b>bits 0-2</b>: the piece's type (see {@link IdManager}), 0 for an
+ * empty tile</li>
+ * <li><b>bit 3</b>: the piece's color (0 = White, 1 = Black)</li>
+ * </ul>
+ * Everything else which decides about the legal moves of a constellation is
+ * packed into the game state word {@link #state}:<br/>
+ * <ul>
+ * <li><b>bit 0</b>: {@link #BLACK_TO_MOVE}</li>
+ * <li><b>bits 1-4</b>: the castling rights (see
+ * {@link core.Board#WHITE_KINGSIDE})</li>
+ * <li><b>bits 5-8</b>: the column of the en passant tile + 1, 0 if none</li>
+ * <li><b>bits 9-15</b>: the halfmove clock (plies since the last capture or
+ * pawn move), at most {@link #HALFMOVE_CLOCK_LIMIT}</li>
+ * <li><b>bit 16</b>: {@link #REPETITION}</li>
+ * </ul>
+ * Therefore two constellations with the same pieces are only merged if they
+ * continue the same way. Additionally every key carries the Zobrist hash of
+ * the constellation (see {@link Zobrist}) which is used as its hash code,
+ * while {@link #equals(Object)} still compares the full key, so that hash
+ * collisions can't merge different constellations.<br/>
+ * <br/>
+ * Compared to the former String id (about 130 characters) a key only needs a
+ * few dozen bytes, and neither hashing nor comparing it allocates any
+ * objects.<br/>
+ * 
+ * @author Andy
+ */
+public final class PositionKey {
+    
+    /**
+     * Bit of {@link #state} which is set if Black is the moving player.
+     */
+    public static final int BLACK_TO_MOVE = 1;
+    
+    public static final int CASTLING_SHIFT = 1, EN_PASSANT_SHIFT = 5, HALFMOVE_CLOCK_SHIFT = 9;
+    
+    public static final int CASTLING_MASK = 0xF << CASTLING_SHIFT;
+    public static final int EN_PASSANT_MASK = 0xF << EN_PASSANT_SHIFT;
+    public static final int HALFMOVE_CLOCK_MASK = 0x7F << HALFMOVE_CLOCK_SHIFT;
+    
+    /**
+     * Bit of {@link #state} which is set if the position has already occurred
+     * before on the path to the constellation. A position which occurs for
+     * the third time is drawn (see {@link util.IdManager#isDrawn(int)}).
+     */
+    public static final int REPETITION = 1 << 16;
+    
+    /**
+     * The largest halfmove clock which is distinguished. After 100 plies
+     * without a capture or a pawn move the game is drawn (fifty-move rule),
+     * therefore larger values don't change anything.
+     */
+    public static final int HALFMOVE_CLOCK_LIMIT = 100;
+    
+    /**
+     * @param squares0
+     *        - nibbles of the rows 0 and 1
+     * @param squares1
+     *        - nibbles of the rows 2 and 3
+     * @param squares2
+     *        - nibbles of the rows 4 and 5
+     * @param squares3
+     *        - nibbles of the rows 6 and 7
+     * @param state
+     *        - the state bits of the constellation, e.g.
+     *        {@link #BLACK_TO_MOVE}
+     * @param hash
+     *        - the Zobrist hash of the constellation
+     */
+    public PositionKey(long squares0, long squares1, long squares2, long squares3, int state, long hash) {
+	this.squares0 = squares0;
+	this.squares1 = squares1;
+	this.squares2 = squares2;
+	this.squares3 = squares3;
+	this.state = state;
+	this.hash = hash;
+    }
+    
+    /**
+     * The packed tiles of the board, one nibble per tile.
+     */
+    private final long squares0, squares1, squares2, squares3;
+    
+    /**
+     * Everything besides the piece placement that distinguishes two
+     * constellations (the game state word).
+     */
+    private final int state;
+    
+    /**
+     * The 64-bit Zobrist hash of the constellation.
+     */
+    private final long hash;
+    
+    /**
+     * @param index
+     *        - 0-3
+     * @return the long which contains the tiles of the rows 2 * index and 2 *
+     *         index + 1
+     */
+    public long getSquares(int index) {
+	switch (index) {
+	    case 0:
+		return this.squares0;
+	    case 1:
+		return this.squares1;
+	    case 2:
+		return this.squares2;
+	    default:
+		return this.squares3;
+	}
+    }
+    
+    /**
+     * @param square
+     *        - the tile (row * 8 + col)
+     * @return the nibble of the tile, 0 if the tile is empty
+     */
+    public int getNibble(int square) {
+	return (int) (this.getSquares(square >> 4) >>> ((square & 15) << 2)) & 0xF;
+    }
+    
+    /**
+     * @param row
+     *        - row of the tile (0-7)
+     * @param col
+     *        - column of the tile (0-7)
+     * @return the nibble of the tile, 0 if the tile is empty
+     */
+    public int getNibble(int row, int col) {
+	return this.getNibble((row << 3) + col);
+    }
+    
+    /**
+     * @return {@link #hash}
+     */
+    public long getHash() {
+	return this.hash;
+    }
+    
+    /**
+     * @return {@link #state}
+     */
+    public int getState() {
+	return this.state;
+    }
+    
+    /**
+     * @return the moving player encoded in {@link #state}
+     */
+    public Color getMovingPlayer() {
+	return (this.state & BLACK_TO_MOVE) != 0 ? Color.BLACK : Color.WHITE;
+    }
+    
+    /**
+     * @return the castling rights encoded in {@link #state}, see
+     *         {@link core.Board#WHITE_KINGSIDE}
+     */
+    public int getCastlingRights() {
+	return (this.state & CASTLING_MASK) >>> CASTLING_SHIFT;
+    }
+    
+    /**
+     * @return the column of the en passant tile encoded in {@link #state}, -1
+     *         if there is none
+     */
+    public int getEnPassantFile() {
+	return ((this.state & EN_PASSANT_MASK) >>> EN_PASSANT_SHIFT) - 1;
+    }
+    
+    /**
+     * @return the halfmove clock encoded in {@link #state}
+     */
+    public int getHalfmoveClock() {
+	return (this.state & HALFMOVE_CLOCK_MASK) >>> HALFMOVE_CLOCK_SHIFT;
+    }
+    
+    /**
+     * @return {@code true} if {@link #REPETITION} is set
+     */
+    public boolean isRepetition() {
+	return (this.state & REPETITION) != 0;
+    }
+    
+    /**
+     * @return the hash of the position regardless of its halfmove clock and
+     *         repetition marker, see
+     *         {@link Zobrist#getRepetitionHash(long, int)}
+     */
+    public long getRepetitionHash() {
+	return Zobrist.getRepetitionHash(this.hash, this.state);
+    }
+    
+    /**
+     * @param movingPlayer
+     *        - the player who has to move
+     * @param castlingRights
+     *        - see {@link core.Board#WHITE_KINGSIDE}
+     * @param enPassantFile
+     *        - the column of the en passant tile, -1 if none
+     * @param halfmoveClock
+     *        - the plies since the last capture or pawn move, values above
+     *        {@link #HALFMOVE_CLOCK_LIMIT} are cut off
+     * @param repetition
+     *        - {@code true} if the constellation has occurred before
+     * @return the game state word of a constellation
+     */
+    public static int createState(Color movingPlayer, int castlingRights, int enPassantFile, int halfmoveClock, boolean repetition) {
+	return (movingPlayer == Color.BLACK ? BLACK_TO_MOVE : 0)
+	       | (castlingRights << CASTLING_SHIFT)
+	       | ((enPassantFile + 1) << EN_PASSANT_SHIFT)
+	       | (Math.min(halfmoveClock, HALFMOVE_CLOCK_LIMIT) << HALFMOVE_CLOCK_SHIFT)
+	       | (repetition ? REPETITION : 0);
+    }
+    
+    @Override
+    public int hashCode() {
+	return (int) (this.hash ^ (this.hash >>> 32));
+    }
+    
+    @Override
+    public boolean equals(Object obj) {
+	if (this == obj) {
+	    return true;
+	}
+	if (!(obj instanceof PositionKey)) {
+	    return false;
+	}
+	PositionKey other = (PositionKey) obj;
+	return this.hash == other.hash
+	       && this.squares0 == other.squares0
+	       && this.squares1 == other.squares1
+	       && this.squares2 == other.squares2
+	       && this.squares3 == other.squares3
+	       && this.state == other.state;
+    }
+    
+    /**
+     * @return the moving player ("W" | "B") followed by the 64 nibbles in hex
+     *         and, if there is any other state, "/" and the state in hex.
+     */
+    @Override
+    public String toString() {
+	StringBuilder builder = new StringBuilder(65);
+	builder.append(this.getMovingPlayer() == Color.WHITE ? 'W' : 'B');
+	for (int row = 0; row < 8; row++) {
+	    for (int col = 0; col < 8; col++) {
+		builder.append(Character.forDigit(this.getNibble(row, col), 16));
+	    }
+	}
+	if ((this.state & ~BLACK_TO_MOVE) != 0) {
+	    builder.append('/').append(Integer.toHexString(this.state));
+	}
+	return builder.toString();
+    }
+}
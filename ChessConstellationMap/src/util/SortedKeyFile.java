@@ -0,0 +1,217 @@
+package util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Reads and writes files which contain IDs (see {@link PositionKey}) in
+ * ascending order without duplicates.<br/>
+ * <br/>
+ * <b>Enhanced description:</b><br/>
+ * Sorted files are the building blocks of the external memory build of the
+ * map (see {@link core.ChessMap#buildExternal(Path, int)}): IDs are
+ * collected in memory, sorted and written as a run. All runs of a ply are
+ * merged into one file while the IDs which are contained in former plies are
+ * skipped, so that duplicates are removed without keeping the IDs of the map
+ * in memory.<br/>
+ * An ID needs {@link #RECORD_SIZE} bytes: its four longs, its hash and its
+ * state.<br/>
+ * 
+ * @author Andy
+ */
+public abstract class SortedKeyFile {
+    
+    public final static int RECORD_SIZE = 44;
+    
+    private final static int BUFFER_SIZE = 1 << 16;
+    
+    /**
+     * The order of the IDs within a file: by the four longs of the tiles, then
+     * by the state.
+     */
+    public final static Comparator<PositionKey> ORDER = (id, other) -> {
+	for (int i = 0; i < 4; i++) {
+	    int comparison = Long.compare(id.getSquares(i), other.getSquares(i));
+	    if (comparison != 0) {
+		return comparison;
+	    }
+	}
+	return Integer.compare(id.getState(), other.getState());
+    };
+    
+    /**
+     * Writes IDs which are already sorted by {@link #ORDER}, skipping
+     * duplicates.
+     * 
+     * @param ids
+     *        - the sorted IDs
+     * @param count
+     *        - the number of valid entries in {@code ids}
+     * @param path
+     *        - the file, an existing file is overwritten
+     * @return the number of IDs written
+     * @throws IOException
+     *         if the file can't be written
+     */
+    public static long write(PositionKey[] ids, int count, Path path) throws IOException {
+	long written = 0;
+	try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE))) {
+	    for (int i = 0; i < count; i++) {
+		if (i == 0 || !ids[i].equals(ids[i - 1])) {
+		    SortedKeyFile.write(out, ids[i]);
+		    written++;
+		}
+	    }
+	}
+	return written;
+    }
+    
+    private static void write(DataOutputStream out, PositionKey id) throws IOException {
+	for (int i = 0; i < 4; i++) {
+	    out.writeLong(id.getSquares(i));
+	}
+	out.writeLong(id.getHash());
+	out.writeInt(id.getState());
+    }
+    
+    /**
+     * Merges sorted files into one, every ID is written once unless it is
+     * contained in one of the excluded files.
+     * 
+     * @param runs
+     *        - the sorted files to merge
+     * @param excluded
+     *        - sorted files whose IDs must not be written
+     * @param path
+     *        - the merged file, an existing file is overwritten
+     * @return the number of IDs written
+     * @throws IOException
+     *         if a file can't be read or written
+     */
+    public static long merge(List<Path> runs, List<Path> excluded, Path path) throws IOException {
+	PriorityQueue<Reader> queue = new PriorityQueue<Reader>(Math.max(runs.size(), 1), (reader, other) -> ORDER.compare(reader.peek(), other.peek()));
+	Reader[] exclusions = new Reader[excluded.size()];
+	long written = 0;
+	
+	try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE))) {
+	    for (Path run : runs) {
+		Reader reader = new Reader(run);
+		if (reader.peek() != null) {
+		    queue.add(reader);
+		} else {
+		    reader.close();
+		}
+	    }
+	    for (int i = 0; i < exclusions.length; i++) {
+		exclusions[i] = new Reader(excluded.get(i));
+	    }
+	    
+	    PositionKey last = null;
+	    while (!queue.isEmpty()) {
+		Reader reader = queue.poll();
+		PositionKey id = reader.next();
+		if (reader.peek() != null) {
+		    queue.add(reader);
+		} else {
+		    reader.close();
+		}
+		
+		if (id.equals(last) || SortedKeyFile.isContained(id, exclusions)) {
+		    continue;
+		}
+		SortedKeyFile.write(out, id);
+		last = id;
+		written++;
+	    }
+	} finally {
+	    for (Reader reader : queue) {
+		reader.close();
+	    }
+	    for (Reader reader : exclusions) {
+		if (reader != null) {
+		    reader.close();
+		}
+	    }
+	}
+	return written;
+    }
+    
+    /**
+     * Advances the readers up to the ID, which works since the IDs are
+     * checked in ascending order.
+     */
+    private static boolean isContained(PositionKey id, Reader[] readers) throws IOException {
+	for (Reader reader : readers) {
+	    while (reader.peek() != null && ORDER.compare(reader.peek(), id) < 0) {
+		reader.next();
+	    }
+	    if (id.equals(reader.peek())) {
+		return true;
+	    }
+	}
+	return false;
+    }
+    
+    /**
+     * Reads the IDs of a sorted file one after another.
+     */
+    public static class Reader implements Closeable {
+	
+	public Reader(Path path) throws IOException {
+	    this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE));
+	    this.next = this.read();
+	}
+	
+	private final DataInputStream in;
+	
+	private PositionKey next;
+	
+	private PositionKey read() throws IOException {
+	    long squares0;
+	    try {
+		squares0 = this.in.readLong();
+	    } catch (EOFException e) {
+		return null;
+	    }
+	    long squares1 = this.in.readLong();
+	    long squares2 = this.in.readLong();
+	    long squares3 = this.in.readLong();
+	    long hash = this.in.readLong();
+	    return new PositionKey(squares0, squares1, squares2, squares3, this.in.readInt(), hash);
+	}
+	
+	/**
+	 * @return the next ID without consuming it, null at the end of the
+	 *         file
+	 */
+	public PositionKey peek() {
+	    return this.next;
+	}
+	
+	/**
+	 * @return the next ID, null at the end of the file
+	 */
+	public PositionKey next() throws IOException {
+	    PositionKey id = this.next;
+	    if (id != null) {
+		this.next = this.read();
+	    }
+	    return id;
+	}
+	
+	@Override
+	public void close() throws IOException {
+	    this.in.close();
+	}
+    }
+}
@@ -0,0 +1,158 @@
+package util;
+
+/**
+ * Maps a constellation onto the canonical member of its symmetry class, so
+ * that symmetric constellations are only added to the map once.<br/>
+ * <br/>
+ * <b>Enhanced description:</b><br/>
+ * The board has eight symmetries (the dihedral group of the square), each
+ * one is identified by a transform 0-7 (see {@link #transformSquare(int, int)}).
+ * Which of them preserve the rules depends on the constellation:<br/>
+ * <ul>
+ * <li>Mirroring the files ({@link #MIRROR_FILES}) is valid as long as no
+ * castling rights are left.</li>
+ * <li>All eight transforms are valid if there are no pawns either, since only
+ * pawns and castling depend on the direction of the board.</li>
+ * </ul>
+ * Constellations with castling rights or an en passant tile are never
+ * transformed, the other fields of the state (see {@link PositionKey}) don't
+ * depend on the direction of the board and are kept. The canonical ID is the
+ * smallest ID of the class by {@link SortedKeyFile#ORDER}.<br/>
+ * 
+ * @author Andy
+ */
+public abstract class Symmetry {
+    
+    public final static int IDENTITY = 0;
+    public final static int MIRROR_FILES = 1;
+    public final static int MIRROR_RANKS = 2;
+    public final static int ROTATE_180 = 3;
+    public final static int TRANSPOSE = 4;
+    public final static int ANTI_TRANSPOSE = 5;
+    public final static int ROTATE_90 = 6;
+    public final static int ROTATE_270 = 7;
+    
+    /**
+     * [transform][square] = the square the tile is moved to
+     */
+    private final static int[][] squareMaps = new int[8][64];
+    
+    static {
+	for (int square = 0; square < 64; square++) {
+	    int row = square >> 3, col = square & 7;
+	    squareMaps[IDENTITY][square] = square;
+	    squareMaps[MIRROR_FILES][square] = (row << 3) + 7 - col;
+	    squareMaps[MIRROR_RANKS][square] = ((7 - row) << 3) + col;
+	    squareMaps[ROTATE_180][square] = ((7 - row) << 3) + 7 - col;
+	    squareMaps[TRANSPOSE][square] = (col << 3) + row;
+	    squareMaps[ANTI_TRANSPOSE][square] = ((7 - col) << 3) + 7 - row;
+	    squareMaps[ROTATE_90][square] = (col << 3) + 7 - row;
+	    squareMaps[ROTATE_270][square] = ((7 - col) << 3) + row;
+	}
+    }
+    
+    /**
+     * @param transform
+     *        - 0-7, e.g. {@link #MIRROR_FILES}
+     * @param square
+     *        - the tile (row * 8 + col)
+     * @return the tile the transform moves the tile to
+     */
+    public static int transformSquare(int transform, int square) {
+	return squareMaps[transform][square];
+    }
+    
+    /**
+     * @return the transform which reverts the transform
+     */
+    public static int inverse(int transform) {
+	switch (transform) {
+	    case ROTATE_90:
+		return ROTATE_270;
+	    case ROTATE_270:
+		return ROTATE_90;
+	    default:
+		return transform;
+	}
+    }
+    
+    /**
+     * @return the ID of the transformed constellation, including its hash
+     */
+    public static PositionKey transform(PositionKey id, int transform) {
+	long[] squares = new long[4];
+	Symmetry.transformSquares(id, transform, squares);
+	return Symmetry.createId(squares, id.getState());
+    }
+    
+    /**
+     * @return the transform which maps the constellation onto the canonical
+     *         member of its symmetry class, {@link #IDENTITY} if the
+     *         constellation must not be transformed
+     */
+    public static int getCanonicalTransform(PositionKey id) {
+	// Castling rights and en passant tiles aren't symmetric
+	if ((id.getState() & (PositionKey.CASTLING_MASK | PositionKey.EN_PASSANT_MASK)) != 0) {
+	    return IDENTITY;
+	}
+	
+	int transformCount = Symmetry.hasPawns(id) ? 2 : 8;
+	long[] best = { id.getSquares(0), id.getSquares(1), id.getSquares(2), id.getSquares(3) };
+	long[] squares = new long[4];
+	int bestTransform = IDENTITY;
+	for (int transform = 1; transform < transformCount; transform++) {
+	    Symmetry.transformSquares(id, transform, squares);
+	    if (Symmetry.compare(squares, best) < 0) {
+		System.arraycopy(squares, 0, best, 0, 4);
+		bestTransform = transform;
+	    }
+	}
+	return bestTransform;
+    }
+    
+    /**
+     * @return the canonical ID of the constellation's symmetry class
+     */
+    public static PositionKey canonicalize(PositionKey id) {
+	int transform = Symmetry.getCanonicalTransform(id);
+	return transform == IDENTITY ? id : Symmetry.transform(id, transform);
+    }
+    
+    private static boolean hasPawns(PositionKey id) {
+	for (int square = 0; square < 64; square++) {
+	    if ((id.getNibble(square) & 7) == IdManager.PWN) {
+		return true;
+	    }
+	}
+	return false;
+    }
+    
+    private static void transformSquares(PositionKey id, int transform, long[] squares) {
+	squares[0] = squares[1] = squares[2] = squares[3] = 0L;
+	for (int square = 0; square < 64; square++) {
+	    int target = squareMaps[transform][square];
+	    squares[target >> 4] |= (long) id.getNibble(square) << ((target & 15) << 2);
+	}
+    }
+    
+    /**
+     * The same order as {@link SortedKeyFile#ORDER} for IDs with equal state.
+     */
+    private static int compare(long[] squares, long[] other) {
+	for (int i = 0; i < 4; i++) {
+	    int comparison = Long.compare(squares[i], other[i]);
+	    if (comparison != 0) {
+		return comparison;
+	    }
+	}
+	return 0;
+    }
+    
+    private static PositionKey createId(long[] squares, int state) {
+	long hash = Zobrist.getStateKey(state);
+	for (int square = 0; square < 64; square++) {
+	    hash ^= Zobrist.getPieceSquareKey((int) (squares[square >> 4] >>> ((square & 15) << 2)) & 0xF, square);
+	}
+	return new PositionKey(squares[0], squares[1], squares[2], squares[3], state, hash);
+    }
+}
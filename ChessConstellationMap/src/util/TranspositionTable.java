@@ -0,0 +1,213 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Transposition table of fixed size for searches over constellations, which
+ * can be shared by several threads without locking.<br/>
+ * <br/>
+ * <b>Enhanced description:</b><br/>
+ * The table is a single long array which is allocated once by the
+ * constructor, neither probing nor storing allocates anything, therefore the
+ * table doesn't cause any garbage collection no matter how long a search
+ * runs.<br/>
+ * The array is divided into a power of two of buckets, the bucket of a
+ * constellation is selected by the upper bits of its hash (see
+ * {@link Zobrist}). Every bucket holds two entries of 16 bytes:<br/>
+ * <ul>
+ * <li><b>depth-preferred</b>: only replaced by a search of the same or a
+ * greater depth, by the same constellation or once it is left over from a
+ * former search (see {@link #newSearch()})</li>
+ * <li><b>always-replace</b>: takes every entry which the depth-preferred
+ * entry rejects</li>
+ * </ul>
+ * An entry consists of a data word and of a key word. Layout of the data
+ * word:<br/>
+ * <ul>
+ * <li><b>bits 0-15</b>: the best move (see {@link Move}), 0 if none</li>
+ * <li><b>bits 16-31</b>: the score (signed)</li>
+ * <li><b>bits 32-39</b>: the depth</li>
+ * <li><b>bits 40-41</b>: the bound ({@link #UPPER}, {@link #LOWER} or
+ * {@link #EXACT})</li>
+ * <li><b>bits 42-47</b>: the search which has stored the entry</li>
+ * </ul>
+ * The key word is the hash of the constellation XOR the data word. An entry
+ * only matches a hash if both words XOR to the hash, so an entry which is
+ * torn apart by two threads writing at the same time is not confused with a
+ * valid one, it is just missed.<br/>
+ * 
+ * @author Andy
+ */
+public final class TranspositionTable {
+    
+    /**
+     * Bounds of a score: The score is at most ({@link #UPPER}), at least
+     * ({@link #LOWER}) or exactly ({@link #EXACT}) the value of the
+     * constellation.
+     */
+    public static final int UPPER = 1, LOWER = 2, EXACT = 3;
+    
+    /**
+     * The deepest depth which can be stored.
+     */
+    public static final int MAX_DEPTH = 0xFF;
+    
+    /**
+     * The size of a bucket in bytes.
+     */
+    public static final int BUCKET_SIZE = 32;
+    
+    private static final int SCORE_SHIFT = 16, DEPTH_SHIFT = 32, BOUND_SHIFT = 40, SEARCH_SHIFT = 42;
+    private static final int SEARCH_MASK = 0x3F;
+    
+    /**
+     * @param bytes
+     *        - the memory of the table, the table uses the largest power of two
+     *        of buckets which fits into it (at least one)
+     */
+    public TranspositionTable(long bytes) {
+	long buckets = Long.highestOneBit(Math.max(bytes / BUCKET_SIZE, 1));
+	if (buckets > 1 << 28) {
+	    throw new IllegalArgumentException("A TranspositionTable can't be larger than " + ((long) BUCKET_SIZE << 28) + " bytes");
+	}
+	this.entries = new long[(int) buckets * 4];
+	this.shift = Long.numberOfLeadingZeros(buckets - 1);
+    }
+    
+    /**
+     * The buckets, four longs each: key and data word of the depth-preferred
+     * entry, key and data word of the always-replace entry.
+     */
+    private final long[] entries;
+    
+    /**
+     * Shifts a hash to the index of its bucket.
+     */
+    private final int shift;
+    
+    private volatile int search = 0;
+    
+    private int getBucket(long hash) {
+	return this.shift == 64 ? 0 : (int) (hash >>> this.shift) << 2;
+    }
+    
+    /**
+     * Starts a new search: The entries of former searches remain valid, but
+     * the depth-preferred entries may be replaced by shallower ones.
+     */
+    public void newSearch() {
+	this.search = (this.search + 1) & SEARCH_MASK;
+    }
+    
+    /**
+     * @param hash
+     *        - the hash of a constellation
+     * @return the data word of the constellation's entry, 0 if the table
+     *         doesn't contain the constellation
+     */
+    public long probe(long hash) {
+	int bucket = this.getBucket(hash);
+	for (int entry = bucket; entry < bucket + 4; entry += 2) {
+	    long data = this.entries[entry + 1];
+	    if ((this.entries[entry] ^ data) == hash && data != 0) {
+		return data;
+	    }
+	}
+	return 0L;
+    }
+    
+    /**
+     * Stores the result of a search of a constellation.
+     * 
+     * @param hash
+     *        - the hash of the constellation
+     * @param depth
+     *        - the depth of the search, 0 to {@link #MAX_DEPTH}
+     * @param bound
+     *        - {@link #UPPER}, {@link #LOWER} or {@link #EXACT}
+     * @param score
+     *        - the score, fits into a {@code short}
+     * @param move
+     *        - the best move, 0 if none is known; the former move of the
+     *        constellation is kept in this case
+     */
+    public void store(long hash, int depth, int bound, int score, short move) {
+	if (depth < 0 || depth > MAX_DEPTH || bound < UPPER || bound > EXACT || score != (short) score) {
+	    throw new IllegalArgumentException("Invalid entry: depth = " + depth + ", bound = " + bound + ", score = " + score);
+	}
+	int bucket = this.getBucket(hash);
+	int search = this.search;
+	
+	long preferredData = this.entries[bucket + 1];
+	boolean samePosition = (this.entries[bucket] ^ preferredData) == hash;
+	int entry = bucket + 2;
+	if (preferredData == 0
+	    || samePosition
+	    || TranspositionTable.getDepth(preferredData) <= depth
+	    || ((preferredData >>> SEARCH_SHIFT) & SEARCH_MASK) != search) {
+	    entry = bucket;
+	}
+	
+	if (move == 0) {
+	    long formerData = entry == bucket ? preferredData : this.entries[entry + 1];
+	    if (samePosition || (this.entries[entry] ^ formerData) == hash) {
+		move = TranspositionTable.getMove(formerData);
+	    }
+	}
+	long data = (move & 0xFFFFL)
+		    | ((score & 0xFFFFL) << SCORE_SHIFT)
+		    | ((long) depth << DEPTH_SHIFT)
+		    | ((long) bound << BOUND_SHIFT)
+		    | ((long) search << SEARCH_SHIFT);
+	this.entries[entry] = hash ^ data;
+	this.entries[entry + 1] = data;
+    }
+    
+    /**
+     * Empties the table.
+     */
+    public void clear() {
+	Arrays.fill(this.entries, 0L);
+    }
+    
+    /**
+     * @return the memory of the table in bytes
+     */
+    public long getSize() {
+	return (long) this.entries.length * 8;
+    }
+    
+    /**
+     * @param data
+     *        - a data word returned by {@link #probe(long)}
+     * @return the best move, 0 if none
+     */
+    public static short getMove(long data) {
+	return (short) data;
+    }
+    
+    /**
+     * @param data
+     *        - a data word returned by {@link #probe(long)}
+     */
+    public static int getScore(long data) {
+	return (short) (data >>> SCORE_SHIFT);
+    }
+    
+    /**
+     * @param data
+     *        - a data word returned by {@link #probe(long)}
+     */
+    public static int getDepth(long data) {
+	return (int) (data >>> DEPTH_SHIFT) & MAX_DEPTH;
+    }
+    
+    /**
+     * @param data
+     *        - a data word returned by {@link #probe(long)}
+     * @return {@link #UPPER}, {@link #LOWER} or {@link #EXACT}
+     */
+    public static int getBound(long data) {
+	return (int) (data >>> BOUND_SHIFT) & 0x3;
+    }
+}
@@ -0,0 +1,103 @@
+package util;
+
+import java.util.SplittableRandom;
+
+/**
+ * Contains the random keys used to compute the 64-bit Zobrist hash of a
+ * {@link PositionKey}.<br/>
+ * <br/>
+ * <b>Enhanced description:</b><br/>
+ * The hash of a constellation is the XOR of the key of every piece on its tile
+ * and of the key of its game state word (see {@link #getStateKey(int)}). Since
+ * XOR is its own inverse the hash of a following constellation can be derived
+ * from the hash of the former one in O(1) by XOR-ing out the moved (and the
+ * captured) piece and XOR-ing in the moved piece on its destination.<br/>
+ * Keys are defined for tiles in White's point of view, which is the
+ * orientation of every boardArray.<br/>
+ * The seed is fixed so that hashes are reproducible between runs.<br/>
+ * 
+ * @author Andy
+ */
+public abstract class Zobrist {
+    
+    private final static long SEED = 0x43686573734D6170L;
+    
+    /**
+     * Keys indexed by [nibble][row * 8 + col].
+     */
+    private final static long[][] pieceSquareKeys = new long[16][64];
+    
+    private final static long blackToMoveKey;
+    
+    /**
+     * Keys of the fields of the game state word (see {@link PositionKey}),
+     * indexed by the value of the field. The key of value 0 is 0, so that
+     * a constellation without castling rights, en passant tile and halfmove
+     * clock has the same hash as before these fields existed.
+     */
+    private final static long[] castlingKeys = new long[16];
+    private final static long[] enPassantKeys = new long[16];
+    private final static long[] halfmoveClockKeys = new long[128];
+    private final static long repetitionKey;
+    
+    static {
+	SplittableRandom random = new SplittableRandom(Zobrist.SEED);
+	
+	for (int nibble = 0; nibble < 16; nibble++) {
+	    for (int square = 0; square < 64; square++) {
+		// Nibble 0 (empty tile) must not change the hash.
+		Zobrist.pieceSquareKeys[nibble][square] = nibble == 0 ? 0L : random.nextLong();
+	    }
+	}
+	blackToMoveKey = random.nextLong();
+	for (long[] keys : new long[][] { castlingKeys, enPassantKeys, halfmoveClockKeys }) {
+	    for (int value = 1; value < keys.length; value++) {
+		keys[value] = random.nextLong();
+	    }
+	}
+	repetitionKey = random.nextLong();
+    }
+    
+    /**
+     * @param nibble
+     *        - the code of the piece (see {@link IdManager})
+     * @param square
+     *        - the tile in White's point of view (row * 8 + col)
+     * @return the key of the piece on the tile
+     */
+    public static long getPieceSquareKey(int nibble, int square) {
+	return Zobrist.pieceSquareKeys[nibble][square];
+    }
+    
+    public static long getBlackToMoveKey() {
+	return Zobrist.blackToMoveKey;
+    }
+    
+    /**
+     * @param state
+     *        - a game state word (see {@link PositionKey})
+     * @return the XOR of the keys of all fields of the state
+     */
+    public static long getStateKey(int state) {
+	return ((state & PositionKey.BLACK_TO_MOVE) != 0 ? Zobrist.blackToMoveKey : 0L)
+	       ^ Zobrist.castlingKeys[(state & PositionKey.CASTLING_MASK) >>> PositionKey.CASTLING_SHIFT]
+	       ^ Zobrist.enPassantKeys[(state & PositionKey.EN_PASSANT_MASK) >>> PositionKey.EN_PASSANT_SHIFT]
+	       ^ Zobrist.halfmoveClockKeys[(state & PositionKey.HALFMOVE_CLOCK_MASK) >>> PositionKey.HALFMOVE_CLOCK_SHIFT]
+	       ^ ((state & PositionKey.REPETITION) != 0 ? Zobrist.repetitionKey : 0L);
+    }
+    
+    /**
+     * @param hash
+     *        - the hash of a constellation
+     * @param state
+     *        - the game state word of the constellation
+     * @return the hash without the keys of the halfmove clock and the
+     *         repetition marker, i.e. the hash of everything which decides
+     *         whether a position is repeated
+     */
+    public static long getRepetitionHash(long hash, int state) {
+	return hash
+	       ^ Zobrist.halfmoveClockKeys[(state & PositionKey.HALFMOVE_CLOCK_MASK) >>> PositionKey.HALFMOVE_CLOCK_SHIFT]
+	       ^ ((state & PositionKey.REPETITION) != 0 ? Zobrist.repetitionKey : 0L);
+    }
+}